@@ -19,6 +19,8 @@ public class EngineManagerProperties {
     private WebSocketConfig websocket = new WebSocketConfig();
     private SessionConfig session = new SessionConfig();
     private MessageConfig message = new MessageConfig();
+    private MailboxConfig mailbox = new MailboxConfig();
+    private RelayConfig relay = new RelayConfig();
     
     @Data
     public static class WebSocketConfig {
@@ -40,6 +42,27 @@ public class EngineManagerProperties {
     public static class MessageConfig {
         private long maxSize = 10485760; // 最大消息大小（10MB）
         private long timeout = 30000; // 消息处理超时（毫秒）
+        private int framePoolSize = 64; // 仿真步数据帧对象池容量
+        private boolean binaryEnabled = true; // 是否允许引擎在握手时协商二进制协议
+    }
+    
+    @Data
+    public static class MailboxConfig {
+        private int capacity = 4096; // 单个会话邮箱容量（消息数），达到后暂停读取引擎连接，消费到一半时恢复
+        private int workerThreads = 0; // 工作线程数，0 表示 CPU 核心数
+        private int drainBatch = 64; // 每次调度最多连续处理的消息数
+    }
+    
+    @Data
+    public static class RelayConfig {
+        private boolean coalesceByDefault = false; // 前端未声明时是否默认合并转发
+        private long flushWindow = 16; // 合并转发时间窗口（毫秒）
+        private int maxBatchChars = 1048576; // 单个合并帧最大字符数，超过立即刷新
+        private long sendBudgetBytes = 4194304; // 单个前端连接发送队列预算（按字符数估算），超出时丢弃较早的仿真步/事件帧
+        private long controlBudgetBytes = 1048576; // 单个前端连接未发送控制消息的上限（按字符数估算），超出时关闭该连接
+        private int senderThreads = 2; // 前端发送线程数
+        private double deltaPositionEpsilon = 0.5; // 增量模式下位置变化阈值（米），未超过时不发送
+        private double deltaSpeedEpsilon = 0.1; // 增量模式下速度变化阈值（米/秒）
+        private int deltaKeyframeInterval = 50; // 增量模式下关键帧间隔（仿真步），0 表示只在连接时发送
     }
 }
-
@@ -0,0 +1,68 @@
+package com.traffic.sim.plugin.engine.manager.controller;
+
+import com.traffic.sim.common.response.ApiResponse;
+import com.traffic.sim.plugin.engine.manager.service.EngineIngestMetrics;
+import com.traffic.sim.plugin.engine.manager.service.SessionMailboxDispatcher;
+import com.traffic.sim.plugin.engine.manager.websocket.FrontendWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 引擎消息处理指标控制器
+ *
+ * @author traffic-sim
+ */
+@RestController
+@RequestMapping("/engine/metrics")
+@RequiredArgsConstructor
+public class EngineMetricsController {
+
+    private final SessionMailboxDispatcher mailboxDispatcher;
+    private final EngineIngestMetrics ingestMetrics;
+    private final FrontendWebSocketHandler frontendWebSocketHandler;
+
+    /**
+     * 所有会话邮箱的队列深度与消费延迟
+     */
+    @GetMapping("/mailboxes")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMailboxMetrics() {
+        return ResponseEntity.ok(ApiResponse.success(mailboxDispatcher.getMetrics()));
+    }
+
+    /**
+     * 单个会话邮箱的队列深度与消费延迟
+     */
+    @GetMapping("/mailboxes/{sessionId}")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMailboxMetrics(@PathVariable String sessionId) {
+        Map<String, Object> metrics = mailboxDispatcher.getMetrics(sessionId);
+        if (metrics == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("Mailbox not found for session: " + sessionId));
+        }
+        return ResponseEntity.ok(ApiResponse.success(metrics));
+    }
+
+    /**
+     * 引擎消息接收统计（单事件消息与批量消息的帧数、事件数及平均耗时）
+     */
+    @GetMapping("/ingest")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getIngestMetrics() {
+        return ResponseEntity.ok(ApiResponse.success(ingestMetrics.snapshot()));
+    }
+
+    /**
+     * 前端发送队列统计（积压、丢弃与发送延迟）
+     */
+    @GetMapping("/frontend")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getFrontendMetrics() {
+        return ResponseEntity.ok(ApiResponse.success(frontendWebSocketHandler.getSendQueueMetrics()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import lombok.Data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 二进制引擎消息帧
+ * 握手协商启用二进制协议后，veh_run/produce_veh/sim_one_step 以小端序定长格式发送：
+ * <pre>
+ * 帧头（24 字节）
+ *   0  u16 magic（0x5453）
+ *   2  u8  version（1）
+ *   3  u8  kind（1=veh_run, 2=produce_veh, 3=sim_one_step）
+ *   4  u16 flags（bit0: result 为数组，bit1: 车辆帧之后紧跟 sim_one_step）
+ *   6  u16 保留
+ *   8  i32 step（step_num / over_step）
+ *   12 i32 count（车辆记录数）
+ *   16 i64 time（毫秒时间戳）
+ * 车辆记录（每条 36 字节）
+ *   0  i32 id
+ *   4  i32 link_id
+ *   8  i32 lane_id
+ *   12 i32 cell_id
+ *   16 f32 x
+ *   20 f32 y
+ *   24 f32 cur_spd（produce_veh 为 speed）
+ *   28 f32 last_spd
+ *   32 u16 flags（bit0: in_network, bit1: in_cross, bit2: last_spd 有效）
+ *   34 u16 保留
+ * </pre>
+ *
+ * @author traffic-sim
+ */
+@Data
+public class BinaryEngineFrame {
+
+    public static final String PROTOCOL = "binary";
+    public static final int VERSION = 1;
+    public static final int MAGIC = 0x5453;
+    public static final int HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = 36;
+
+    public static final int KIND_VEH_RUN = 1;
+    public static final int KIND_PRODUCE_VEH = 2;
+    public static final int KIND_SIM_ONE_STEP = 3;
+
+    public static final int FLAG_LIST = 1;
+    /** 车辆帧携带步结束标记，处理完车辆记录后按 step 结束当前仿真步 */
+    public static final int FLAG_STEP_END = 1 << 1;
+
+    public static final int RECORD_IN_NETWORK = 1;
+    public static final int RECORD_IN_CROSS = 1 << 1;
+    public static final int RECORD_HAS_LAST_SPD = 1 << 2;
+
+    private int version;
+    private int kind;
+    private boolean vehicleList;
+    private boolean stepEnd;
+    private long step;
+    private int count;
+    private long time;
+
+    /** 车辆记录区（小端序，position 指向第一条记录） */
+    private ByteBuffer records;
+
+    /**
+     * 对应的 data.pos
+     */
+    public String getPos() {
+        return switch (kind) {
+            case KIND_VEH_RUN -> EngineFrame.POS_VEH_RUN;
+            case KIND_PRODUCE_VEH -> EngineFrame.POS_PRODUCE_VEH;
+            case KIND_SIM_ONE_STEP -> EngineFrame.POS_SIM_ONE_STEP;
+            default -> null;
+        };
+    }
+
+    public boolean isVehicleEvent() {
+        return kind == KIND_VEH_RUN || kind == KIND_PRODUCE_VEH;
+    }
+}
@@ -0,0 +1,102 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.traffic.sim.common.model.StepFrame;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 二进制引擎消息解码器
+ * 车辆记录不经过中间对象，直接写入当前仿真步的列式数据帧
+ *
+ * @author traffic-sim
+ */
+@Component
+public class EngineBinaryDecoder {
+
+    /**
+     * 解码帧头
+     *
+     * @param payload 二进制消息负载
+     * @return 帧头及记录区
+     */
+    public BinaryEngineFrame decodeHeader(ByteBuffer payload) throws IOException {
+        ByteBuffer buffer = payload.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < BinaryEngineFrame.HEADER_SIZE) {
+            throw new IOException("Binary engine frame too short: " + buffer.remaining());
+        }
+        int start = buffer.position();
+        int magic = buffer.getShort(start) & 0xFFFF;
+        if (magic != BinaryEngineFrame.MAGIC) {
+            throw new IOException("Invalid binary engine frame magic: 0x" + Integer.toHexString(magic));
+        }
+
+        BinaryEngineFrame frame = new BinaryEngineFrame();
+        frame.setVersion(buffer.get(start + 2) & 0xFF);
+        if (frame.getVersion() != BinaryEngineFrame.VERSION) {
+            throw new IOException("Unsupported binary engine frame version: " + frame.getVersion());
+        }
+        frame.setKind(buffer.get(start + 3) & 0xFF);
+        int flags = buffer.getShort(start + 4) & 0xFFFF;
+        frame.setVehicleList((flags & BinaryEngineFrame.FLAG_LIST) != 0);
+        frame.setStepEnd((flags & BinaryEngineFrame.FLAG_STEP_END) != 0);
+        frame.setStep(buffer.getInt(start + 8));
+        frame.setCount(buffer.getInt(start + 12));
+        frame.setTime(buffer.getLong(start + 16));
+
+        long expected = BinaryEngineFrame.HEADER_SIZE + (long) frame.getCount() * BinaryEngineFrame.RECORD_SIZE;
+        if (frame.getCount() < 0 || buffer.remaining() < expected) {
+            throw new IOException("Binary engine frame truncated: count=" + frame.getCount()
+                    + ", bytes=" + buffer.remaining());
+        }
+        buffer.position(start + BinaryEngineFrame.HEADER_SIZE);
+        frame.setRecords(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+        return frame;
+    }
+
+    /**
+     * 将车辆记录合并到数据帧，合并规则与 JSON 消息一致
+     *
+     * @param frame 二进制帧
+     * @param stepFrame 当前仿真步数据帧
+     * @param rows 输出每条记录所在的行号，长度不小于 count
+     */
+    public void decodeVehicles(BinaryEngineFrame frame, StepFrame stepFrame, int[] rows) {
+        ByteBuffer records = frame.getRecords();
+        boolean produce = frame.getKind() == BinaryEngineFrame.KIND_PRODUCE_VEH;
+        boolean list = frame.isVehicleList();
+        int speedFlag = produce ? StepFrame.HAS_SPEED : StepFrame.HAS_CUR_SPD;
+
+        for (int i = 0, offset = 0; i < frame.getCount(); i++, offset += BinaryEngineFrame.RECORD_SIZE) {
+            int row = stepFrame.upsert(records.getInt(offset));
+            if (list) {
+                stepFrame.clearRow(row);
+            }
+            stepFrame.setLinkId(row, records.getInt(offset + 4));
+            stepFrame.setLaneId(row, records.getInt(offset + 8));
+            stepFrame.setCellId(row, records.getInt(offset + 12));
+            stepFrame.setX(row, records.getFloat(offset + 16));
+            stepFrame.setY(row, records.getFloat(offset + 20));
+            float speed = records.getFloat(offset + 24);
+            stepFrame.setSpeed(row, speed, speedFlag);
+
+            int flags = records.getShort(offset + 32) & 0xFFFF;
+            if (!produce) {
+                stepFrame.setInNetwork(row, (flags & BinaryEngineFrame.RECORD_IN_NETWORK) != 0);
+                stepFrame.setInCross(row, (flags & BinaryEngineFrame.RECORD_IN_CROSS) != 0);
+            }
+            if ((flags & BinaryEngineFrame.RECORD_HAS_LAST_SPD) != 0) {
+                float lastSpeed = records.getFloat(offset + 28);
+                stepFrame.setLastSpeed(row, lastSpeed);
+                // 与 JSON 消息一致：记录同时带有当前速度与 last_spd 时按两者之差计算加速度
+                stepFrame.setAcceleration(row, speed - lastSpeed);
+            } else if (produce || list) {
+                // 没有 last_spd 的 produce_veh 消息：首次出现，默认加速度为0
+                stepFrame.setAcceleration(row, 0.0);
+            }
+            rows[i] = row;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 引擎消息帧（流式解析结果）
+ * 只包含路由所需的 type/ope/data.pos，以及车辆/信号灯消息的已解码负载
+ *
+ * @author traffic-sim
+ */
+@Data
+public class EngineFrame {
+
+    public static final String POS_VEH_RUN = "veh_run";
+    public static final String POS_PRODUCE_VEH = "produce_veh";
+    public static final String POS_CONTROLLER_RUN = "controller_run";
+    public static final String POS_SIM_ONE_STEP = "sim_one_step";
+    /** 批量消息：data.events 中每个元素与单条消息的 data 结构相同 */
+    public static final String POS_BATCH = "batch";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** 消息类型：frontend/eng/backend */
+    private String type;
+
+    /** 操作类型 */
+    private String ope;
+
+    /** 时间戳 */
+    private Long time;
+
+    /** data.pos */
+    private String pos;
+
+    /** 车辆记录（仅 veh_run/produce_veh） */
+    private List<VehicleRecord> vehicles;
+
+    /** result 是否为数组形式 */
+    private boolean vehicleList;
+
+    /** 信号灯数据（仅 controller_run 且 result 为对象） */
+    private Map<String, Object> signal;
+
+    /** 批量消息中的事件（仅 pos=batch） */
+    private List<EngineFrame> events;
+
+    /** 批量消息的原始文本，单个事件的 data 为其中 [rawStart, rawEnd) 区间 */
+    private String rawSource;
+    private int rawStart;
+    private int rawEnd;
+
+    /**
+     * 是否为车辆消息
+     */
+    public boolean isVehicleEvent() {
+        return isVehiclePos(pos);
+    }
+
+    /**
+     * 是否为批量消息
+     */
+    public boolean isBatch() {
+        return POS_BATCH.equals(pos) && events != null;
+    }
+
+    /**
+     * 批量消息中的单个事件还原为单条消息文本（用于原样转发给前端）
+     * type/ope 按 JSON 字符串转义写出，缺失时省略；data 直接引用批量消息中的原始区间，不再单独复制
+     */
+    public String toSingleMessage() throws IOException {
+        StringWriter writer = new StringWriter(rawEnd - rawStart + 64);
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(writer)) {
+            gen.writeStartObject();
+            if (type != null) {
+                gen.writeStringField("type", type);
+            }
+            if (ope != null) {
+                gen.writeStringField("ope", ope);
+            }
+            if (time != null) {
+                gen.writeNumberField("time", time);
+            }
+            gen.writeFieldName("data");
+            gen.writeRawValue(rawSource, rawStart, rawEnd - rawStart);
+            gen.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    public static boolean isVehiclePos(String pos) {
+        return POS_VEH_RUN.equals(pos) || POS_PRODUCE_VEH.equals(pos);
+    }
+}
@@ -0,0 +1,264 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 引擎消息流式解析器
+ * 基于 Jackson JsonParser 逐 token 读取 type/ope/data.pos，不构建完整的 Map 树；
+ * veh_run/produce_veh 的 result 直接解码为 {@link VehicleRecord}
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+public class EngineFrameParser {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 解析引擎消息
+     *
+     * @param payload 原始 JSON 文本
+     * @return 消息帧
+     */
+    public EngineFrame parse(String payload) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            return parse(parser, payload);
+        }
+    }
+
+    private EngineFrame parse(JsonParser parser, String payload) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Engine message is not a JSON object");
+        }
+
+        EngineFrame frame = new EngineFrame();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "type" -> frame.setType(parser.getValueAsString());
+                case "ope" -> frame.setOpe(parser.getValueAsString());
+                case "time" -> {
+                    if (token.isNumeric()) {
+                        frame.setTime(parser.getLongValue());
+                    }
+                }
+                case "data" -> {
+                    if (token == JsonToken.START_OBJECT) {
+                        parseData(parser, frame, payload);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (frame.getEvents() != null) {
+            for (EngineFrame event : frame.getEvents()) {
+                event.setType(frame.getType());
+                event.setOpe(frame.getOpe());
+                event.setTime(frame.getTime());
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * 解析 data 对象
+     * 如果 result 出现在 pos 之前，先缓存为 token 序列，确定 pos 后再解码
+     */
+    private void parseData(JsonParser parser, EngineFrame frame, String payload) throws IOException {
+        TokenBuffer pendingResult = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("pos".equals(field)) {
+                frame.setPos(parser.getValueAsString());
+            } else if ("result".equals(field)) {
+                if (frame.getPos() != null) {
+                    readResult(parser, frame);
+                } else {
+                    pendingResult = new TokenBuffer(parser);
+                    pendingResult.copyCurrentStructure(parser);
+                }
+            } else if ("events".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                frame.setEvents(readEvents(parser, payload));
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (pendingResult != null && frame.getPos() != null) {
+            try (JsonParser buffered = pendingResult.asParser()) {
+                buffered.nextToken();
+                readResult(buffered, frame);
+            }
+        }
+    }
+
+    /**
+     * 解码批量消息的 events 数组（当前 token 为 START_ARRAY）
+     * 每个元素与单条消息的 data 结构相同，同时记录其在原始文本中的区间以便原样转发
+     */
+    private List<EngineFrame> readEvents(JsonParser parser, String payload) throws IOException {
+        List<EngineFrame> events = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            EngineFrame event = new EngineFrame();
+            event.setRawSource(payload);
+            event.setRawStart((int) parser.currentTokenLocation().getCharOffset());
+            parseData(parser, event, payload);
+            event.setRawEnd((int) parser.currentLocation().getCharOffset());
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * 解码 result（当前 token 为 result 的值）
+     */
+    private void readResult(JsonParser parser, EngineFrame frame) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (frame.isVehicleEvent()) {
+            List<VehicleRecord> vehicles = new ArrayList<>();
+            if (token == JsonToken.START_OBJECT) {
+                addIfValid(vehicles, readVehicle(parser));
+            } else if (token == JsonToken.START_ARRAY) {
+                frame.setVehicleList(true);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        addIfValid(vehicles, readVehicle(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            frame.setVehicles(vehicles);
+        } else if (EngineFrame.POS_CONTROLLER_RUN.equals(frame.getPos()) && token == JsonToken.START_OBJECT) {
+            frame.setSignal(objectMapper.readValue(parser, MAP_TYPE));
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private void addIfValid(List<VehicleRecord> vehicles, VehicleRecord vehicle) {
+        if (vehicle != null) {
+            vehicles.add(vehicle);
+        }
+    }
+
+    /**
+     * 解码单个车辆对象（当前 token 为 START_OBJECT）
+     *
+     * @return 车辆记录，缺少数字 id 时返回 null
+     */
+    private VehicleRecord readVehicle(JsonParser parser) throws IOException {
+        VehicleRecord vehicle = new VehicleRecord();
+        boolean hasId = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            boolean numeric = token.isNumeric();
+            switch (field) {
+                case "id" -> {
+                    if (numeric) {
+                        vehicle.setId(parser.getIntValue());
+                        hasId = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "link_id" -> readInt(parser, vehicle, field, VehicleRecord.HAS_LINK);
+                case "lane_id" -> readInt(parser, vehicle, field, VehicleRecord.HAS_LANE);
+                case "cell_id" -> readInt(parser, vehicle, field, VehicleRecord.HAS_CELL);
+                case "x" -> readDouble(parser, vehicle, field, VehicleRecord.HAS_X);
+                case "y" -> readDouble(parser, vehicle, field, VehicleRecord.HAS_Y);
+                case "cur_spd" -> readDouble(parser, vehicle, field, VehicleRecord.HAS_CUR_SPD);
+                case "last_spd" -> readDouble(parser, vehicle, field, VehicleRecord.HAS_LAST_SPD);
+                case "speed" -> readDouble(parser, vehicle, field, VehicleRecord.HAS_SPEED);
+                case "in_network" -> readBoolean(parser, vehicle, field, VehicleRecord.HAS_IN_NETWORK);
+                case "in_cross" -> readBoolean(parser, vehicle, field, VehicleRecord.HAS_IN_CROSS);
+                case "router" -> {
+                    if (token == JsonToken.VALUE_STRING) {
+                        vehicle.setRouter(parser.getText());
+                    } else {
+                        vehicle.putExtra(field, objectMapper.readValue(parser, Object.class));
+                    }
+                }
+                default -> vehicle.putExtra(field, objectMapper.readValue(parser, Object.class));
+            }
+        }
+
+        if (!hasId) {
+            log.debug("Skipping vehicle without numeric id");
+            return null;
+        }
+        return vehicle;
+    }
+
+    private void readInt(JsonParser parser, VehicleRecord vehicle, String field, int flag) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            vehicle.putExtra(field, objectMapper.readValue(parser, Object.class));
+            return;
+        }
+        int value = parser.getIntValue();
+        switch (flag) {
+            case VehicleRecord.HAS_LINK -> vehicle.setLinkId(value);
+            case VehicleRecord.HAS_LANE -> vehicle.setLaneId(value);
+            default -> vehicle.setCellId(value);
+        }
+        vehicle.mark(flag);
+    }
+
+    private void readDouble(JsonParser parser, VehicleRecord vehicle, String field, int flag) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            vehicle.putExtra(field, objectMapper.readValue(parser, Object.class));
+            return;
+        }
+        double value = parser.getDoubleValue();
+        switch (flag) {
+            case VehicleRecord.HAS_X -> vehicle.setX(value);
+            case VehicleRecord.HAS_Y -> vehicle.setY(value);
+            case VehicleRecord.HAS_CUR_SPD -> vehicle.setCurSpd(value);
+            case VehicleRecord.HAS_LAST_SPD -> vehicle.setLastSpd(value);
+            default -> vehicle.setSpeed(value);
+        }
+        vehicle.mark(flag);
+    }
+
+    private void readBoolean(JsonParser parser, VehicleRecord vehicle, String field, int flag) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE) {
+            vehicle.putExtra(field, objectMapper.readValue(parser, Object.class));
+            return;
+        }
+        boolean value = token == JsonToken.VALUE_TRUE;
+        if (flag == VehicleRecord.HAS_IN_NETWORK) {
+            vehicle.setInNetwork(value);
+        } else {
+            vehicle.setInCross(value);
+        }
+        vehicle.mark(flag);
+    }
+}
@@ -0,0 +1,168 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.traffic.sim.common.model.StepFrame;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 引擎消息 JSON 写出器
+ * 从列式数据帧直接生成与引擎原始格式一致的 simdata 消息（供前端使用），不经过 Map
+ *
+ * @author traffic-sim
+ */
+@Component
+public class EngineFrameWriter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * 生成单辆车的车辆消息（result 为对象）
+     *
+     * @param pos veh_run/produce_veh
+     * @param step 仿真步数
+     * @param time 时间戳
+     * @param frame 数据帧
+     * @param row 车辆所在行
+     */
+    public String writeVehicleEvent(String pos, long step, long time, StepFrame frame, int row) throws IOException {
+        SegmentedStringWriter writer = new SegmentedStringWriter(new BufferRecycler());
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            writeSimdataStart(gen, pos, step, time);
+            gen.writeFieldName("result");
+            writeVehicle(gen, frame, row);
+            writeSimdataEnd(gen);
+        }
+        return writer.getAndClear();
+    }
+
+    /**
+     * 生成多辆车的车辆消息（result 为数组）
+     *
+     * @param rows 车辆所在行
+     * @param count 有效行数
+     */
+    public String writeVehicleList(String pos, long step, long time, StepFrame frame, int[] rows, int count) throws IOException {
+        SegmentedStringWriter writer = new SegmentedStringWriter(new BufferRecycler());
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            writeSimdataStart(gen, pos, step, time);
+            gen.writeArrayFieldStart("result");
+            for (int i = 0; i < count; i++) {
+                writeVehicle(gen, frame, rows[i]);
+            }
+            gen.writeEndArray();
+            writeSimdataEnd(gen);
+        }
+        return writer.getAndClear();
+    }
+
+    /**
+     * 按引擎原始字段名写出一辆车（只写出实际出现过的字段）
+     */
+    public void writeVehicle(JsonGenerator gen, StepFrame frame, int row) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", frame.getIds()[row]);
+        if (frame.has(row, StepFrame.HAS_IN_NETWORK)) {
+            gen.writeBooleanField("in_network", frame.has(row, StepFrame.IN_NETWORK));
+        }
+        if (frame.has(row, StepFrame.HAS_IN_CROSS)) {
+            gen.writeBooleanField("in_cross", frame.has(row, StepFrame.IN_CROSS));
+        }
+        if (frame.has(row, StepFrame.HAS_LINK)) {
+            gen.writeNumberField("link_id", frame.getLinkIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LANE)) {
+            gen.writeNumberField("lane_id", frame.getLaneIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_CELL)) {
+            gen.writeNumberField("cell_id", frame.getCellIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_X)) {
+            writeDecimalField(gen, "x", frame.getX()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_Y)) {
+            writeDecimalField(gen, "y", frame.getY()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_CUR_SPD)) {
+            writeDecimalField(gen, "cur_spd", frame.getSpeed()[row]);
+        } else if (frame.has(row, StepFrame.HAS_SPEED)) {
+            writeDecimalField(gen, "speed", frame.getSpeed()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LAST_SPD)) {
+            writeDecimalField(gen, "last_spd", frame.getLastSpeed()[row]);
+        }
+        String router = frame.getRouters()[row];
+        if (router != null) {
+            gen.writeStringField("router", router);
+        }
+        Map<String, Object> extras = frame.getExtras(row);
+        if (extras != null) {
+            for (Map.Entry<String, Object> entry : extras.entrySet()) {
+                gen.writeFieldName(entry.getKey());
+                writeValue(gen, entry.getValue());
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * 写出小数字段：数据帧的 float 列按单精度最短表示输出（与引擎原始文本一致），避免出现 1570.52001953125 这样的尾数
+     */
+    private void writeDecimalField(JsonGenerator gen, String name, float value) throws IOException {
+        gen.writeNumberField(name, value);
+    }
+
+    private void writeSimdataStart(JsonGenerator gen, String pos, long step, long time) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", "frontend");
+        gen.writeStringField("ope", "simdata");
+        gen.writeNumberField("time", time);
+        gen.writeObjectFieldStart("data");
+        gen.writeStringField("pos", pos);
+        gen.writeNumberField("step_num", step);
+    }
+
+    private void writeSimdataEnd(JsonGenerator gen) throws IOException {
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+
+    /**
+     * 写出未识别字段的值（来自 JSON 解析，只可能是基本类型、Map 或 List）
+     */
+    static void writeValue(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String text) {
+            gen.writeString(text);
+        } else if (value instanceof Boolean bool) {
+            gen.writeBoolean(bool);
+        } else if (value instanceof Integer number) {
+            gen.writeNumber(number);
+        } else if (value instanceof Long number) {
+            gen.writeNumber(number);
+        } else if (value instanceof Number number) {
+            gen.writeNumber(number.doubleValue());
+        } else if (value instanceof Map<?, ?> map) {
+            gen.writeStartObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                gen.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(gen, entry.getValue());
+            }
+            gen.writeEndObject();
+        } else if (value instanceof Iterable<?> items) {
+            gen.writeStartArray();
+            for (Object item : items) {
+                writeValue(gen, item);
+            }
+            gen.writeEndArray();
+        } else {
+            gen.writeString(value.toString());
+        }
+    }
+}
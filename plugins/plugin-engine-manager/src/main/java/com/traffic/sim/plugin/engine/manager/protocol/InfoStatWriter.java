@@ -0,0 +1,110 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.traffic.sim.common.model.StatisticsData;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * infoStat JSON 写出器
+ * 从 StatisticsData 直接流式写出 sim_one_step 消息中的 infoStat 片段（字段与前端约定一致，缺失值写 0），
+ * 不构建中间 Map；写出缓冲按线程复用。生成的片段以原始 JSON 拼入出站消息，持久化时再由后台线程解析
+ *
+ * @author traffic-sim
+ */
+@Component
+public class InfoStatWriter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /** 每个线程复用的字符缓冲 */
+    private final ThreadLocal<BufferRecycler> recyclers = ThreadLocal.withInitial(BufferRecycler::new);
+
+    /**
+     * 写出 infoStat 对象
+     *
+     * @param statistics 当前步统计数据
+     * @return infoStat JSON
+     */
+    public String write(StatisticsData statistics) throws IOException {
+        SegmentedStringWriter writer = new SegmentedStringWriter(recyclers.get());
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            gen.writeStartObject();
+
+            // 基本统计信息
+            writeDouble(gen, "speed_min", statistics.getMinSpeed());
+            writeDouble(gen, "speed_max", statistics.getMaxSpeed());
+            writeDouble(gen, "speed_ave", statistics.getAverageSpeed());
+            writeDouble(gen, "acc_min", statistics.getMinAcceleration());
+            writeDouble(gen, "acc_max", statistics.getMaxAcceleration());
+            writeDouble(gen, "acc_ave", statistics.getAverageAcceleration());
+            writeInt(gen, "car_number", statistics.getVehicleCount());
+            writeInt(gen, "car_in", statistics.getVehiclesIn());
+            writeInt(gen, "car_out", statistics.getVehiclesOut());
+            writeInt(gen, "low_speed", statistics.getLowSpeedCount());
+            writeDouble(gen, "jam_index", statistics.getCongestionIndex());
+
+            // 滚动窗口流量与当前步分位数
+            writeMap(gen, "flow_rolling", statistics.getRollingFlow());
+            writeMap(gen, "percentiles", statistics.getPercentiles());
+            writeMap(gen, "signal_phase", statistics.getSignalPhases());
+
+            // 全局统计信息
+            gen.writeObjectFieldStart("global");
+            writeInt(gen, "cars_in", statistics.getTotalVehiclesIn());
+            writeInt(gen, "cars_out", statistics.getTotalVehiclesOut());
+            writeDouble(gen, "queue_length_min", statistics.getMinQueueLength());
+            writeDouble(gen, "queue_length_max", statistics.getMaxQueueLength());
+            writeDouble(gen, "queue_length_ave", statistics.getAverageQueueLength());
+            writeDouble(gen, "queue_time_min", statistics.getMinQueueTime());
+            writeDouble(gen, "queue_time_max", statistics.getMaxQueueTime());
+            writeDouble(gen, "queue_time_ave", statistics.getAverageQueueTime());
+            writeInt(gen, "stop_max", statistics.getMaxStopCount());
+            writeInt(gen, "stop_min", statistics.getMinStopCount());
+            writeDouble(gen, "stop_ave", statistics.getAverageStopCount());
+            writeDouble(gen, "delay_max", statistics.getMaxDelay());
+            writeDouble(gen, "delay_min", statistics.getMinDelay());
+            writeDouble(gen, "delay_ave", statistics.getAverageDelay());
+            writeMap(gen, "queue_details", statistics.getQueueDetails());
+            writeMap(gen, "percentiles", statistics.getCumulativePercentiles());
+
+            // 交叉口流量
+            gen.writeObjectFieldStart("cross_flow");
+            writeDouble(gen, "flow_ave", statistics.getAverageCrossFlow());
+            gen.writeEndObject();
+
+            // 道路流量
+            gen.writeObjectFieldStart("flow");
+            writeDouble(gen, "flow_RD_ave", statistics.getAverageRoadFlow());
+            writeDouble(gen, "flow_LA_ave", statistics.getAverageLaneFlow());
+            gen.writeEndObject();
+
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+        return writer.getAndClear();
+    }
+
+    private static void writeDouble(JsonGenerator gen, String name, Double value) throws IOException {
+        gen.writeNumberField(name, value != null ? value : 0.0);
+    }
+
+    private static void writeInt(JsonGenerator gen, String name, Integer value) throws IOException {
+        gen.writeNumberField(name, value != null ? value : 0);
+    }
+
+    /**
+     * 写出嵌套统计（为 null 时不输出该字段）
+     */
+    private static void writeMap(JsonGenerator gen, String name, Map<String, Object> value) throws IOException {
+        if (value != null) {
+            gen.writeFieldName(name);
+            EngineFrameWriter.writeValue(gen, value);
+        }
+    }
+}
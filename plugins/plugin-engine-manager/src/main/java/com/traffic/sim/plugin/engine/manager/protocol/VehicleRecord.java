@@ -0,0 +1,96 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.traffic.sim.common.model.StepFrame;
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 引擎车辆记录
+ * veh_run / produce_veh 消息中 result 的强类型表示，字段直接由流式解析器写入
+ *
+ * @author traffic-sim
+ */
+@Data
+public class VehicleRecord {
+
+    /** 字段存在标志位（与 StepFrame 一致，用于还原原始消息中实际出现过的字段） */
+    public static final int HAS_LINK = StepFrame.HAS_LINK;
+    public static final int HAS_LANE = StepFrame.HAS_LANE;
+    public static final int HAS_CELL = StepFrame.HAS_CELL;
+    public static final int HAS_X = StepFrame.HAS_X;
+    public static final int HAS_Y = StepFrame.HAS_Y;
+    public static final int HAS_CUR_SPD = StepFrame.HAS_CUR_SPD;
+    public static final int HAS_LAST_SPD = StepFrame.HAS_LAST_SPD;
+    public static final int HAS_SPEED = StepFrame.HAS_SPEED;
+    public static final int HAS_IN_NETWORK = StepFrame.HAS_IN_NETWORK;
+    public static final int HAS_IN_CROSS = StepFrame.HAS_IN_CROSS;
+
+    private int id;
+    private int linkId;
+    private int laneId;
+    private int cellId;
+    private double x;
+    private double y;
+
+    /** veh_run 中的 cur_spd */
+    private double curSpd;
+
+    /** veh_run 中的 last_spd */
+    private double lastSpd;
+
+    /** produce_veh 中的 speed */
+    private double speed;
+
+    private boolean inNetwork;
+    private boolean inCross;
+
+    /** produce_veh 中的路径 */
+    private String router;
+
+    /** 已出现字段的标志位 */
+    private int present;
+
+    /** 未识别的其他字段（通常为 null） */
+    private Map<String, Object> extras;
+
+    public boolean has(int flag) {
+        return (present & flag) != 0;
+    }
+
+    public void mark(int flag) {
+        present |= flag;
+    }
+
+    /**
+     * 是否存在速度（优先 cur_spd，其次 speed）
+     */
+    public boolean hasAnySpeed() {
+        return has(HAS_CUR_SPD) || has(HAS_SPEED);
+    }
+
+    /**
+     * 当前速度（优先 cur_spd，其次 speed）
+     */
+    public double currentSpeed() {
+        return has(HAS_CUR_SPD) ? curSpd : speed;
+    }
+
+    /**
+     * 是否可以计算加速度（cur_spd 与 last_spd 同时存在）
+     */
+    public boolean hasAcceleration() {
+        return has(HAS_CUR_SPD) && has(HAS_LAST_SPD);
+    }
+
+    /**
+     * 添加未识别字段
+     */
+    public void putExtra(String key, Object value) {
+        if (extras == null) {
+            extras = new LinkedHashMap<>();
+        }
+        extras.put(key, value);
+    }
+}
@@ -0,0 +1,83 @@
+package com.traffic.sim.plugin.engine.manager.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 引擎消息接收指标
+ * 区分单事件消息与批量消息，统计每帧、每事件的处理耗时，用于比较批量封装的收益
+ *
+ * @author traffic-sim
+ */
+@Component
+public class EngineIngestMetrics {
+
+    private final FrameCounter single = new FrameCounter();
+    private final FrameCounter batch = new FrameCounter();
+    private final LongAdder binaryFrames = new LongAdder();
+
+    /**
+     * 记录一条单事件消息
+     *
+     * @param nanos 处理耗时（纳秒）
+     */
+    public void recordSingle(long nanos) {
+        single.record(1, nanos);
+    }
+
+    /**
+     * 记录一条批量消息
+     *
+     * @param events 事件数量
+     * @param nanos 处理耗时（纳秒）
+     */
+    public void recordBatch(int events, long nanos) {
+        batch.record(events, nanos);
+    }
+
+    /**
+     * 记录一条二进制消息（同时计入批量或单事件统计）
+     */
+    public void recordBinary() {
+        binaryFrames.increment();
+    }
+
+    /**
+     * 指标快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("single", single.snapshot());
+        metrics.put("batch", batch.snapshot());
+        metrics.put("binaryFrames", binaryFrames.sum());
+        return metrics;
+    }
+
+    private static class FrameCounter {
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder events = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void record(int eventCount, long elapsed) {
+            frames.increment();
+            events.add(eventCount);
+            nanos.add(elapsed);
+        }
+
+        Map<String, Object> snapshot() {
+            long frameCount = frames.sum();
+            long eventCount = events.sum();
+            long totalNanos = nanos.sum();
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("frames", frameCount);
+            metrics.put("events", eventCount);
+            metrics.put("eventsPerFrame", frameCount > 0 ? (double) eventCount / frameCount : 0.0);
+            metrics.put("avgMicrosPerFrame", frameCount > 0 ? totalNanos / 1000.0 / frameCount : 0.0);
+            metrics.put("avgMicrosPerEvent", eventCount > 0 ? totalNanos / 1000.0 / eventCount : 0.0);
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.traffic.sim.plugin.engine.manager.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 会话消息邮箱
+ * 有界无锁多生产者单消费者队列：任意线程投递，同一时刻最多只有一个工作线程消费，
+ * 保证同一会话内的消息按投递顺序处理，不同会话之间并行。
+ * 投递从不阻塞也从不丢弃消息：队列达到容量时由调用方暂停读取连接，消费回落到容量一半时恢复
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+public class SessionMailbox {
+
+    @Getter
+    private final String sessionId;
+    private final int capacity;
+    private final int drainBatch;
+    private final Executor executor;
+
+    private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    /** 是否已提交消费任务 */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    /** 因队列达到容量而暂停读取的次数 */
+    private final AtomicLong suspensions = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    /** 投递到处理完成的累计耗时（纳秒） */
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+
+    /** 读取暂停期间登记的恢复动作，队列回落到低水位时执行一次 */
+    private final AtomicReference<Runnable> resumeAction = new AtomicReference<>();
+
+    public SessionMailbox(String sessionId, int capacity, int drainBatch, Executor executor) {
+        this.sessionId = sessionId;
+        this.capacity = capacity;
+        this.drainBatch = drainBatch;
+        this.executor = executor;
+    }
+
+    /**
+     * 投递任务（不阻塞调用线程，任务总是入队）
+     *
+     * @param task 任务
+     * @return 队列是否仍低于容量；返回 false 时调用方应暂停读取该会话的连接并调用 {@link #suspendUntilDrained}
+     */
+    public boolean offer(Runnable task) {
+        int current = depth.incrementAndGet();
+        updateMaxDepth(current);
+        queue.offer(new Envelope(task, System.nanoTime()));
+        enqueued.incrementAndGet();
+        schedule();
+        return current < capacity;
+    }
+
+    /**
+     * 登记读取暂停后的恢复动作：工作线程把队列消费到容量一半以下时执行一次。
+     * 登记时队列已经回落则立即在调用线程执行
+     *
+     * @param resume 恢复读取连接的动作
+     */
+    public void suspendUntilDrained(Runnable resume) {
+        suspensions.incrementAndGet();
+        resumeAction.set(resume);
+        if (depth.get() <= resumeDepth()) {
+            resume();
+        }
+    }
+
+    /**
+     * 当前队列深度
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * 队列是否已清空且没有正在运行的消费任务
+     */
+    public boolean isIdle() {
+        return depth.get() == 0 && !scheduled.get();
+    }
+
+    /**
+     * 指标快照
+     */
+    public Map<String, Object> snapshot() {
+        long done = processed.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessionId", sessionId);
+        metrics.put("queueDepth", depth.get());
+        metrics.put("maxQueueDepth", maxDepth.get());
+        metrics.put("capacity", capacity);
+        metrics.put("enqueued", enqueued.get());
+        metrics.put("processed", done);
+        metrics.put("readSuspended", resumeAction.get() != null);
+        metrics.put("readSuspensions", suspensions.get());
+        metrics.put("failed", failed.get());
+        metrics.put("drainLatencyLastMs", toMillis(lastLatencyNanos));
+        metrics.put("drainLatencyAvgMs", done > 0 ? toMillis(totalLatencyNanos.get() / done) : 0.0);
+        metrics.put("drainLatencyMaxMs", toMillis(maxLatencyNanos.get()));
+        return metrics;
+    }
+
+    private int resumeDepth() {
+        return capacity / 2;
+    }
+
+    private void resume() {
+        Runnable resume = resumeAction.getAndSet(null);
+        if (resume == null) {
+            return;
+        }
+        try {
+            resume.run();
+        } catch (Throwable e) {
+            log.warn("Failed to resume reading for session: {}", sessionId, e);
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * 消费任务：每次最多处理 drainBatch 条，避免单个会话长期占用工作线程
+     */
+    private void drain() {
+        try {
+            for (int i = 0; i < drainBatch; i++) {
+                Envelope envelope = queue.poll();
+                if (envelope == null) {
+                    break;
+                }
+                if (depth.decrementAndGet() <= resumeDepth() && resumeAction.get() != null) {
+                    resume();
+                }
+                try {
+                    envelope.task.run();
+                } catch (Throwable e) {
+                    failed.incrementAndGet();
+                    log.error("Mailbox task failed for session: {}", sessionId, e);
+                }
+                recordLatency(System.nanoTime() - envelope.enqueuedAt);
+                processed.incrementAndGet();
+            }
+        } finally {
+            scheduled.set(false);
+            // 释放标志后仍有消息（或有生产者在释放前投递）时重新调度
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void recordLatency(long latency) {
+        lastLatencyNanos = latency;
+        totalLatencyNanos.addAndGet(latency);
+        long max;
+        while (latency > (max = maxLatencyNanos.get())) {
+            if (maxLatencyNanos.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
+
+    private void updateMaxDepth(int value) {
+        int max;
+        while (value > (max = maxDepth.get())) {
+            if (maxDepth.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private record Envelope(Runnable task, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.traffic.sim.plugin.engine.manager.service;
+
+import com.traffic.sim.plugin.engine.manager.config.EngineManagerProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话邮箱调度器
+ * 引擎消息不在 WebSocket 容器线程中处理，而是投递到各会话的邮箱，由共享工作线程池按会话顺序消费
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+public class SessionMailboxDispatcher {
+
+    private final EngineManagerProperties.MailboxConfig config;
+    private final ExecutorService workers;
+    private final Map<String, SessionMailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public SessionMailboxDispatcher(EngineManagerProperties properties) {
+        this.config = properties.getMailbox();
+        int threads = config.getWorkerThreads() > 0
+                ? config.getWorkerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "engine-mailbox-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Initialized engine mailbox dispatcher with workerThreads={}, capacity={}, drainBatch={}",
+                threads, config.getCapacity(), config.getDrainBatch());
+    }
+
+    /**
+     * 投递会话消息处理任务
+     *
+     * @param sessionId 会话ID
+     * @param task 处理任务
+     * @return 邮箱是否仍低于容量（任务总会入队；返回 false 时调用方应暂停读取并调用 {@link #suspendUntilDrained}）
+     */
+    public boolean submit(String sessionId, Runnable task) {
+        return mailbox(sessionId).offer(task);
+    }
+
+    /**
+     * 会话连接已暂停读取：邮箱消费到容量一半以下时由工作线程执行恢复动作
+     *
+     * @param sessionId 会话ID
+     * @param resume 恢复读取连接的动作
+     */
+    public void suspendUntilDrained(String sessionId, Runnable resume) {
+        mailbox(sessionId).suspendUntilDrained(resume);
+    }
+
+    /**
+     * 投递会话的最后一个任务（排在已投递消息之后执行），处理完成后移除邮箱
+     *
+     * @param sessionId 会话ID
+     * @param task 关闭处理任务
+     */
+    public void close(String sessionId, Runnable task) {
+        SessionMailbox mailbox = mailbox(sessionId);
+        mailbox.offer(() -> {
+            try {
+                task.run();
+            } finally {
+                mailboxes.remove(sessionId, mailbox);
+            }
+        });
+    }
+
+    /**
+     * 所有会话邮箱的指标
+     */
+    public Map<String, Object> getMetrics() {
+        List<Map<String, Object>> sessions = new ArrayList<>();
+        int totalDepth = 0;
+        for (SessionMailbox mailbox : mailboxes.values()) {
+            totalDepth += mailbox.getDepth();
+            sessions.add(mailbox.snapshot());
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeMailboxes", sessions.size());
+        metrics.put("totalQueueDepth", totalDepth);
+        metrics.put("sessions", sessions);
+        return metrics;
+    }
+
+    /**
+     * 单个会话邮箱的指标
+     *
+     * @return 指标，会话不存在时返回 null
+     */
+    public Map<String, Object> getMetrics(String sessionId) {
+        SessionMailbox mailbox = mailboxes.get(sessionId);
+        return mailbox != null ? mailbox.snapshot() : null;
+    }
+
+    private SessionMailbox mailbox(String sessionId) {
+        return mailboxes.computeIfAbsent(sessionId, id ->
+                new SessionMailbox(id, config.getCapacity(), config.getDrainBatch(), workers));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
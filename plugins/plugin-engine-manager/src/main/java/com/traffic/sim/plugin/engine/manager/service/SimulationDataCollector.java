@@ -1,10 +1,16 @@
 package com.traffic.sim.plugin.engine.manager.service;
 
+import com.traffic.sim.common.model.StepFrame;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineFrame;
+import com.traffic.sim.plugin.engine.manager.protocol.VehicleRecord;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,6 +23,7 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class SimulationDataCollector {
     
     /**
@@ -29,9 +36,11 @@ public class SimulationDataCollector {
     /**
      * 存储每个会话当前正在收集的仿真步数据
      * Key: sessionId
-     * Value: 当前步的数据收集器
+     * Value: 当前步的列式数据帧
      */
-    private final Map<String, CurrentStepCollector> currentStepMap = new ConcurrentHashMap<>();
+    private final Map<String, StepFrame> currentStepMap = new ConcurrentHashMap<>();
+    
+    private final StepFramePool framePool;
     
     /**
      * 添加仿真步数据（当仿真步结束时调用）
@@ -57,7 +66,10 @@ public class SimulationDataCollector {
      */
     public List<StepData> getAndClearSessionData(String sessionId) {
         List<StepData> data = sessionDataMap.remove(sessionId);
-        currentStepMap.remove(sessionId);
+        StepFrame current = currentStepMap.remove(sessionId);
+        if (current != null) {
+            framePool.release(current);
+        }
         return data != null ? data : new ArrayList<>();
     }
     
@@ -73,83 +85,231 @@ public class SimulationDataCollector {
     }
     
     /**
-     * 添加消息到当前仿真步
+     * 添加车辆消息到当前仿真步，按车辆ID原地合并到列式数据帧
+     * 
+     * @param sessionId 会话ID
+     * @param pos 消息位置（veh_run/produce_veh）
+     * @param vehicles 已解码的车辆记录
+     * @param vehicleList result 是否为数组形式
+     */
+    public void addVehiclesToCurrentStep(String sessionId, String pos, List<VehicleRecord> vehicles, boolean vehicleList) {
+        StepFrame frame = getOrCreateCurrentStep(sessionId);
+        boolean produce = EngineFrame.POS_PRODUCE_VEH.equals(pos);
+        for (VehicleRecord record : vehicles) {
+            applyVehicle(frame, record, produce, vehicleList);
+        }
+    }
+    
+    /**
+     * 添加信号灯数据到当前仿真步
      * 
      * @param sessionId 会话ID
-     * @param messageType 消息类型
-     * @param messageData 消息数据
+     * @param signal controller_run 消息的 result
      */
-    public void addMessageToCurrentStep(String sessionId, String messageType, Map<String, Object> messageData) {
-        CurrentStepCollector collector = currentStepMap.computeIfAbsent(sessionId, k -> new CurrentStepCollector());
-        collector.addMessage(messageType, messageData);
+    public void addSignalToCurrentStep(String sessionId, Map<String, Object> signal) {
+        getOrCreateCurrentStep(sessionId).getSignals().add(signal);
     }
     
     /**
-     * 获取当前仿真步的收集器（不移除）
+     * 获取或创建当前仿真步的数据帧
      * 
      * @param sessionId 会话ID
-     * @return 当前步收集器
+     * @return 当前步数据帧
      */
-    public CurrentStepCollector getCurrentStepCollector(String sessionId) {
-        return currentStepMap.get(sessionId);
+    public StepFrame getOrCreateCurrentStep(String sessionId) {
+        return currentStepMap.computeIfAbsent(sessionId, k -> {
+            StepFrame frame = framePool.acquire();
+            frame.setSessionId(k);
+            return frame;
+        });
     }
     
     /**
-     * 完成当前仿真步的收集，返回收集的数据
+     * 完成当前仿真步的收集，取出当前步数据帧
+     * 调用方读取完毕后必须通过 {@link #releaseFrame(StepFrame)} 归还
      * 
      * @param sessionId 会话ID
      * @param step 仿真步数
-     * @return 当前步收集的所有数据
+     * @return 当前步数据帧
      */
-    public CurrentStepCollector finishCurrentStep(String sessionId, Long step) {
-        CurrentStepCollector collector = currentStepMap.remove(sessionId);
-        if (collector != null) {
-            collector.setStep(step);
-            collector.setTimestamp(System.currentTimeMillis());
+    public StepFrame finishCurrentStep(String sessionId, Long step) {
+        StepFrame frame = currentStepMap.remove(sessionId);
+        if (frame == null) {
+            frame = framePool.acquire();
+            frame.setSessionId(sessionId);
         }
-        return collector;
+        frame.setStep(step);
+        frame.setTimestamp(System.currentTimeMillis());
+        return frame;
     }
     
     /**
-     * 仿真步数据
+     * 把数据帧转换为不可变快照（用于持久化与回放）
+     * 
+     * @param frame 已完成收集的数据帧
+     * @return 仿真步快照
      */
-    @Data
-    public static class StepData {
-        private final Long step;
-        private final Long timestamp;
-        private final Map<String, Object> simData;
-        private final Map<String, Object> statsData;
+    public StepSnapshot snapshot(StepFrame frame) {
+        return new StepSnapshot(frame.getStep(), frame.getTimestamp(), frame.getSize(), frame.getSignals().size(),
+                buildCompleteStepData(frame.getStep(), frame));
     }
     
     /**
-     * 当前仿真步数据收集器
+     * 归还数据帧
      */
-    @Data
-    public static class CurrentStepCollector {
-        private Long step;
-        private Long timestamp;
-        private final List<MessageData> messages = new ArrayList<>();
-        
-        public void addMessage(String type, Map<String, Object> data) {
-            messages.add(new MessageData(type, System.currentTimeMillis(), data));
+    public void releaseFrame(StepFrame frame) {
+        framePool.release(frame);
+    }
+    
+    /**
+     * 将一条车辆记录合并到数据帧
+     * 单条消息：只覆盖本条出现的字段，无法计算加速度的 veh_run 保留已有加速度；
+     * 数组消息：整行替换
+     */
+    private void applyVehicle(StepFrame frame, VehicleRecord record, boolean produce, boolean vehicleList) {
+        int row = frame.upsert(record.getId());
+        if (vehicleList) {
+            frame.clearRow(row);
         }
         
-        /**
-         * 获取所有消息的数据部分（不包含元数据）
-         */
-        public List<Map<String, Object>> getMessages() {
-            List<Map<String, Object>> result = new ArrayList<>();
-            for (MessageData msg : messages) {
-                result.add(msg.getData());
-            }
-            return result;
+        if (record.has(VehicleRecord.HAS_LINK)) {
+            frame.setLinkId(row, record.getLinkId());
+        }
+        if (record.has(VehicleRecord.HAS_LANE)) {
+            frame.setLaneId(row, record.getLaneId());
+        }
+        if (record.has(VehicleRecord.HAS_CELL)) {
+            frame.setCellId(row, record.getCellId());
+        }
+        if (record.has(VehicleRecord.HAS_X)) {
+            frame.setX(row, record.getX());
+        }
+        if (record.has(VehicleRecord.HAS_Y)) {
+            frame.setY(row, record.getY());
+        }
+        if (record.has(VehicleRecord.HAS_CUR_SPD)) {
+            frame.setSpeed(row, record.getCurSpd(), StepFrame.HAS_CUR_SPD);
+        } else if (record.has(VehicleRecord.HAS_SPEED)) {
+            frame.setSpeed(row, record.getSpeed(), StepFrame.HAS_SPEED);
+        }
+        if (record.has(VehicleRecord.HAS_LAST_SPD)) {
+            frame.setLastSpeed(row, record.getLastSpd());
         }
+        if (record.has(VehicleRecord.HAS_IN_NETWORK)) {
+            frame.setInNetwork(row, record.isInNetwork());
+        }
+        if (record.has(VehicleRecord.HAS_IN_CROSS)) {
+            frame.setInCross(row, record.isInCross());
+        }
+        if (record.getRouter() != null) {
+            frame.setRouter(row, record.getRouter());
+        }
+        frame.putExtras(row, record.getExtras());
         
-        @Data
-        public static class MessageData {
-            private final String type;
-            private final Long timestamp;
-            private final Map<String, Object> data;
+        // 计算加速度：(cur_spd - last_spd) / time_step，假设 time_step = 1 秒
+        if (record.hasAcceleration()) {
+            frame.setAcceleration(row, record.getCurSpd() - record.getLastSpd());
+        } else if (produce || vehicleList) {
+            // produce_veh 消息：首次出现，默认加速度为0
+            frame.setAcceleration(row, 0.0);
+        }
+    }
+    
+    /**
+     * 从当前步数据帧构建完整的仿真步数据（每辆车一条，字段名与引擎原始消息一致）
+     */
+    private Map<String, Object> buildCompleteStepData(Long step, StepFrame frame) {
+        Map<String, Object> completeData = new HashMap<>();
+        completeData.put("step", step);
+        completeData.put("over_step:", step);
+    
+        int size = frame.getSize();
+        List<Map<String, Object>> vehicles = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            vehicles.add(Collections.unmodifiableMap(buildVehicleData(frame, row)));
         }
+    
+        completeData.put("vehicles", Collections.unmodifiableList(vehicles));
+        completeData.put("signals", List.copyOf(frame.getSignals()));
+    
+        log.debug("Built complete step data: step={}, unique_vehicles={}, signals={}",
+                step, size, frame.getSignals().size());
+    
+        return Collections.unmodifiableMap(completeData);
+    }
+    
+    /**
+     * 将数据帧中的一行还原为车辆 Map
+     */
+    private Map<String, Object> buildVehicleData(StepFrame frame, int row) {
+        Map<String, Object> vehicle = new HashMap<>();
+    
+        // 先保留所有原始数据
+        Map<String, Object> extras = frame.getExtras(row);
+        if (extras != null) {
+            vehicle.putAll(extras);
+        }
+        vehicle.put("id", frame.getIds()[row]);
+        if (frame.has(row, StepFrame.HAS_IN_NETWORK)) {
+            vehicle.put("in_network", frame.has(row, StepFrame.IN_NETWORK));
+        }
+        if (frame.has(row, StepFrame.HAS_IN_CROSS)) {
+            vehicle.put("in_cross", frame.has(row, StepFrame.IN_CROSS));
+        }
+        if (frame.has(row, StepFrame.HAS_LINK)) {
+            vehicle.put("link_id", frame.getLinkIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LANE)) {
+            vehicle.put("lane_id", frame.getLaneIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_CELL)) {
+            vehicle.put("cell_id", frame.getCellIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_CUR_SPD)) {
+            vehicle.put("cur_spd", frame.getSpeed()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LAST_SPD)) {
+            vehicle.put("last_spd", frame.getLastSpeed()[row]);
+        }
+        String router = frame.getRouters()[row];
+        if (router != null) {
+            vehicle.put("router", router);
+        }
+    
+        // 优先使用 cur_spd，如果没有则使用 speed
+        vehicle.put("speed", frame.hasSpeed(row) ? frame.getSpeed()[row] : null);
+        if (frame.has(row, StepFrame.HAS_ACCELERATION)) {
+            vehicle.put("acceleration", frame.getAcceleration()[row]);
+        }
+        vehicle.put("x", frame.has(row, StepFrame.HAS_X) ? frame.getX()[row] : null);
+        vehicle.put("y", frame.has(row, StepFrame.HAS_Y) ? frame.getY()[row] : null);
+        vehicle.put("roadId", frame.has(row, StepFrame.HAS_LINK) ? frame.getLinkIds()[row] : null);
+        vehicle.put("laneId", frame.has(row, StepFrame.HAS_LANE) ? frame.getLaneIds()[row] : null);
+        return vehicle;
+    }
+    
+    /**
+     * 仿真步快照（不可变，统计、持久化共用同一份数据）
+     */
+    @Data
+    public static class StepSnapshot {
+        private final Long step;
+        private final Long timestamp;
+        private final int vehicleCount;
+        private final int signalCount;
+        /** step/over_step:/vehicles/signals，与引擎原始字段名一致 */
+        private final Map<String, Object> data;
+    }
+    
+    /**
+     * 仿真步数据
+     */
+    @Data
+    public static class StepData {
+        private final Long step;
+        private final Long timestamp;
+        private final Map<String, Object> simData;
+        /** 统计数据（实时路径为 infoStat 直接编码的 RawBsonDocument，由 MongoDB 驱动原样写出） */
+        private final Map<String, ?> statsData;
     }
 }
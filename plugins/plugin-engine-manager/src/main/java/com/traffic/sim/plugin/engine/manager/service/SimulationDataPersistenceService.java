@@ -2,6 +2,7 @@ package com.traffic.sim.plugin.engine.manager.service;
 
 import com.traffic.sim.plugin.engine.manager.service.SimulationDataCollector.StepData;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.RawBsonDocument;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -103,6 +104,28 @@ public class SimulationDataPersistenceService {
         return CompletableFuture.supplyAsync(() -> saveStepData(simulationTaskId, userId, taskId, stepData));
     }
 
+    /**
+     * 异步保存单个仿真步数据，统计数据为 infoStat JSON
+     * 在持久化线程池中把 JSON 直接编码为 BSON（RawBsonDocument），不构建中间文档树，不占用仿真消息线程
+     *
+     * @param simulationTaskId 仿真任务ID
+     * @param userId 用户ID
+     * @param taskId 任务ID（来自simulation_task表）
+     * @param step 仿真步数
+     * @param timestamp 时间戳
+     * @param simData 仿真步快照数据
+     * @param statsJson infoStat JSON，可为 null
+     * @return 是否保存成功
+     */
+    @Async("simulationDataExecutor")
+    public CompletableFuture<Boolean> saveStepDataAsync(String simulationTaskId, String userId, String taskId,
+                                                        Long step, Long timestamp, Map<String, Object> simData,
+                                                        String statsJson) {
+        RawBsonDocument stats = statsJson != null ? RawBsonDocument.parse(statsJson) : null;
+        return CompletableFuture.completedFuture(saveStepData(simulationTaskId, userId, taskId,
+                new StepData(step, timestamp, simData, stats)));
+    }
+
     /**
      * 同步保存单个仿真步数据（追加到现有文档，带用户ID和任务ID）
      *
@@ -0,0 +1,63 @@
+package com.traffic.sim.plugin.engine.manager.service;
+
+import com.traffic.sim.common.model.StepFrame;
+import com.traffic.sim.plugin.engine.manager.config.EngineManagerProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 仿真步数据帧对象池
+ * 仿真步结束后归还的帧被重置并复用，数组容量随会话车辆规模保留下来
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+public class StepFramePool {
+
+    private final ConcurrentLinkedQueue<StepFrame> idleFrames = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdle;
+
+    public StepFramePool(EngineManagerProperties properties) {
+        this.maxIdle = properties.getMessage().getFramePoolSize();
+    }
+
+    /**
+     * 获取一个空帧
+     */
+    public StepFrame acquire() {
+        StepFrame frame = idleFrames.poll();
+        if (frame != null) {
+            idleCount.decrementAndGet();
+            return frame;
+        }
+        return new StepFrame();
+    }
+
+    /**
+     * 归还帧（超出池容量时丢弃）
+     */
+    public void release(StepFrame frame) {
+        if (frame == null) {
+            return;
+        }
+        frame.reset();
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idleFrames.offer(frame);
+        } else {
+            idleCount.decrementAndGet();
+            log.debug("Step frame pool is full, dropping frame with capacity {}", frame.capacity());
+        }
+    }
+
+    /**
+     * 当前空闲帧数量
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
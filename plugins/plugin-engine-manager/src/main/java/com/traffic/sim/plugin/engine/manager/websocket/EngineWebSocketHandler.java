@@ -1,24 +1,40 @@
 package com.traffic.sim.plugin.engine.manager.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.traffic.sim.common.model.SimInfo;
 import com.traffic.sim.common.model.StatisticsData;
+import com.traffic.sim.common.model.StepFrame;
 import com.traffic.sim.common.model.WebSocketInfo;
 import com.traffic.sim.common.service.SessionService;
 import com.traffic.sim.common.service.StatisticsService;
+import com.traffic.sim.plugin.engine.manager.config.EngineManagerProperties;
+import com.traffic.sim.plugin.engine.manager.protocol.BinaryEngineFrame;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineBinaryDecoder;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineFrame;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineFrameParser;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineFrameWriter;
+import com.traffic.sim.plugin.engine.manager.protocol.InfoStatWriter;
 import com.traffic.sim.plugin.engine.manager.service.SimulationDataCollector;
+import com.traffic.sim.plugin.engine.manager.service.EngineIngestMetrics;
+import com.traffic.sim.plugin.engine.manager.service.SessionMailboxDispatcher;
 import com.traffic.sim.plugin.engine.manager.service.SimulationDataPersistenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.websocket.WsSession;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,9 +50,19 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class EngineWebSocketHandler implements WebSocketHandler {
 
+    /** WebSocket 会话属性：是否已协商二进制协议 */
+    private static final String ATTR_BINARY_PROTOCOL = "engine.binaryProtocol";
+
     private final SessionService sessionService;
     private final SimulationDataCollector dataCollector;
     private final SimulationDataPersistenceService dataPersistenceService;
+    private final EngineFrameParser frameParser;
+    private final SessionMailboxDispatcher mailboxDispatcher;
+    private final EngineBinaryDecoder binaryDecoder;
+    private final EngineFrameWriter frameWriter;
+    private final InfoStatWriter infoStatWriter;
+    private final EngineManagerProperties properties;
+    private final EngineIngestMetrics ingestMetrics;
     private FrontendWebSocketHandler frontendWebSocketHandler;
     private StatisticsService statisticsService; // 可选依赖，由 plugin-statistics 模块提供
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -90,64 +116,235 @@ public class EngineWebSocketHandler implements WebSocketHandler {
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
         if (message instanceof TextMessage textMessage) {
-            handleTextMessage(session, textMessage);
+            // 投递到会话邮箱，由工作线程按顺序处理，不占用容器线程
+            String exeId = extractExeId(session);
+            if (!mailboxDispatcher.submit(exeId, () -> handleTextMessage(session, textMessage))) {
+                suspendReading(session, exeId);
+            }
+        } else if (message instanceof BinaryMessage binaryMessage) {
+            String exeId = extractExeId(session);
+            if (!isBinaryProtocol(session)) {
+                log.warn("Binary message received before binary protocol was negotiated: {}", exeId);
+                sendErrorMessage(session, "Binary protocol not negotiated");
+                return;
+            }
+            if (!mailboxDispatcher.submit(exeId, () -> handleBinaryMessage(session, binaryMessage))) {
+                suspendReading(session, exeId);
+            }
+        }
+    }
+
+    /**
+     * 邮箱达到容量：暂停读取引擎连接（背压经 TCP 传到引擎），工作线程消费到容量一半时恢复读取。
+     * 容器线程不等待，共享线程池的其他会话不受影响；底层会话不支持暂停读取时以错误关闭连接，避免邮箱无界增长
+     */
+    private void suspendReading(WebSocketSession session, String exeId) {
+        WsSession wsSession = WebSocketSessionDecorator.unwrap(session) instanceof NativeWebSocketSession nativeSession
+                ? nativeSession.getNativeSession(WsSession.class)
+                : null;
+        if (wsSession == null) {
+            closeOverloaded(session, exeId);
+            return;
+        }
+        log.warn("Mailbox full for engine session {}, suspending reads until the worker catches up", exeId);
+        wsSession.suspend();
+        mailboxDispatcher.suspendUntilDrained(exeId, () -> {
+            if (wsSession.isOpen()) {
+                log.info("Resuming reads for engine session {}", exeId);
+                wsSession.resume();
+            }
+        });
+    }
+
+    /**
+     * 邮箱达到容量且无法暂停读取：已投递的消息仍按顺序处理，以错误关闭引擎连接
+     */
+    private void closeOverloaded(WebSocketSession session, String exeId) {
+        log.error("Closing engine session {}: mailbox is full and reads cannot be suspended", exeId);
+        sendErrorMessage(session, "Server overloaded, closing session");
+        try {
+            session.close(CloseStatus.SERVER_ERROR.withReason("Session mailbox overloaded"));
+        } catch (IOException e) {
+            log.warn("Failed to close overloaded engine session: {}", exeId, e);
         }
     }
 
     private void handleTextMessage(WebSocketSession session, TextMessage message) {
         String exeId = extractExeId(session);
+        long startNanos = System.nanoTime();
 
         try {
-            WebSocketInfo wsMessage = objectMapper.readValue(
-                    message.getPayload(), WebSocketInfo.class);
+            // 流式解析：只读取路由字段，车辆消息直接解码为强类型记录
+            String payload = message.getPayload();
+            EngineFrame frame = frameParser.parse(payload);
 
             SimInfo simInfo = sessionService.getSessionInfo(exeId);
 
-            if ("frontend".equals(wsMessage.getType())) {
-                // 收集所有发往前端的消息数据
-                if (wsMessage.getData() != null) {
-                    dataCollector.addMessageToCurrentStep(exeId, wsMessage.getOpe(), wsMessage.getData());
-                }
-
+            if ("frontend".equals(frame.getType())) {
                 // 需要转发给前端
-                if ("simdata".equals(wsMessage.getOpe())) {
-                    // 仿真数据消息，检查是否是 sim_one_step
-                    Map<String, Object> data = wsMessage.getData();
-                    if (data != null && "sim_one_step".equals(data.get("pos"))) {
-                        // 这是一个仿真步结束的消息，需要添加统计信息并保存数据
-                        processSimulationStepEnd(exeId, wsMessage, simInfo);
-                    } else {
-                        // 其他 simdata 消息直接转发
-                        if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
-                            frontendWebSocketHandler.sendMessageToFrontend(exeId, wsMessage);
+                if ("simdata".equals(frame.getOpe())) {
+                    if (frame.isBatch()) {
+                        // 批量消息：逐个事件按单条消息处理，单条消息文本只在需要转发或解析时构建
+                        for (EngineFrame event : frame.getEvents()) {
+                            handleSimdata(exeId, simInfo, event, null);
                         }
+                        ingestMetrics.recordBatch(frame.getEvents().size(), System.nanoTime() - startNanos);
+                        return;
                     }
-                } else if ("sim_data".equals(wsMessage.getOpe())) {
+                    handleSimdata(exeId, simInfo, frame, payload);
+                } else if ("sim_data".equals(frame.getOpe())) {
                     // 兼容旧版本的 sim_data 消息
+                    WebSocketInfo wsMessage = objectMapper.readValue(payload, WebSocketInfo.class);
                     processSimulationData(exeId, wsMessage, simInfo);
-                } else if ("sim_end".equals(wsMessage.getOpe()) || "finished".equals(wsMessage.getOpe())) {
-                    // 仿真结束，保存数据到MongoDB
+                } else if ("sim_end".equals(frame.getOpe()) || "finished".equals(frame.getOpe())) {
+                    // 仿真结束，保存数据到MongoDB，释放逐步统计状态（保留运行摘要供查询）
                     handleSimulationEnd(exeId, simInfo);
+                    finishStatistics(exeId);
                     // 转发结束消息
-                    if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
-                        frontendWebSocketHandler.sendMessageToFrontend(exeId, wsMessage);
-                    }
+                    sendToFrontend(exeId, simInfo, payload);
                 } else {
                     // 其他消息直接转发
-                    if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
-                        frontendWebSocketHandler.sendMessageToFrontend(exeId, wsMessage);
-                    }
+                    sendToFrontend(exeId, simInfo, payload);
                 }
-            } else if ("backend".equals(wsMessage.getType())) {
+            } else if ("backend".equals(frame.getType())) {
                 // 处理后端消息（如初始化）
+                WebSocketInfo wsMessage = objectMapper.readValue(payload, WebSocketInfo.class);
                 handleBackendMessage(session, exeId, wsMessage, simInfo);
             }
+            ingestMetrics.recordSingle(System.nanoTime() - startNanos);
         } catch (Exception e) {
             log.error("Error handling engine message", e);
             sendErrorMessage(session, "Error processing message: " + e.getMessage());
         }
     }
 
+    /**
+     * 处理单个 simdata 事件（单条消息或批量消息中的一个事件）
+     *
+     * @param payload 该事件对应的单条消息文本；批量消息中的事件传 null，需要时由事件的原始片段构建
+     */
+    private void handleSimdata(String exeId, SimInfo simInfo, EngineFrame frame, String payload) throws IOException {
+        if (frame.isVehicleEvent()) {
+            // 车辆消息：收集强类型记录，只有存在逐条接收车辆消息的观看者时才转发原始文本
+            dataCollector.addVehiclesToCurrentStep(exeId, frame.getPos(), frame.getVehicles(), frame.isVehicleList());
+            if (wantsVehicleEvents(exeId, simInfo)) {
+                relayVehicleEvent(exeId, simInfo, payload != null ? payload : frame.toSingleMessage());
+            }
+        } else if (EngineFrame.POS_SIM_ONE_STEP.equals(frame.getPos())) {
+            // 这是一个仿真步结束的消息，需要添加统计信息并保存数据
+            WebSocketInfo wsMessage = objectMapper.readValue(
+                    payload != null ? payload : frame.toSingleMessage(), WebSocketInfo.class);
+            processSimulationStepEnd(exeId, wsMessage, simInfo);
+        } else {
+            // 信号灯数据需要收集，其他 simdata 消息直接转发
+            if (frame.getSignal() != null) {
+                dataCollector.addSignalToCurrentStep(exeId, frame.getSignal());
+            }
+            if (isFrontendReady(simInfo)) {
+                relayToFrontend(exeId, simInfo, payload != null ? payload : frame.toSingleMessage());
+            }
+        }
+    }
+
+    /**
+     * 处理二进制消息：车辆记录直接解码到当前步数据帧，前端仍接收 JSON 格式
+     */
+    private void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        String exeId = extractExeId(session);
+        long startNanos = System.nanoTime();
+
+        try {
+            BinaryEngineFrame frame = binaryDecoder.decodeHeader(message.getPayload());
+            SimInfo simInfo = sessionService.getSessionInfo(exeId);
+
+            if (frame.isVehicleEvent()) {
+                StepFrame stepFrame = dataCollector.getOrCreateCurrentStep(exeId);
+                int[] rows = new int[frame.getCount()];
+                binaryDecoder.decodeVehicles(frame, stepFrame, rows);
+
+                if (wantsVehicleEvents(exeId, simInfo)) {
+                    if (frame.isVehicleList()) {
+                        relayVehicleEvent(exeId, simInfo, frameWriter.writeVehicleList(
+                                frame.getPos(), frame.getStep(), frame.getTime(), stepFrame, rows, rows.length));
+                    } else {
+                        // 与 JSON 协议一致，每辆车一条消息
+                        for (int row : rows) {
+                            relayVehicleEvent(exeId, simInfo, frameWriter.writeVehicleEvent(
+                                    frame.getPos(), frame.getStep(), frame.getTime(), stepFrame, row));
+                        }
+                    }
+                }
+            } else if (frame.getKind() != BinaryEngineFrame.KIND_SIM_ONE_STEP) {
+                log.warn("Unknown binary frame kind {} for session: {}", frame.getKind(), exeId);
+                return;
+            }
+
+            // sim_one_step 帧，或带有步结束标记的车辆帧
+            boolean stepEnd = frame.getKind() == BinaryEngineFrame.KIND_SIM_ONE_STEP || frame.isStepEnd();
+            if (stepEnd) {
+                WebSocketInfo wsMessage = new WebSocketInfo("frontend", "simdata", frame.getTime());
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("pos", EngineFrame.POS_SIM_ONE_STEP);
+                data.put("over_step:", frame.getStep());
+                data.put("next_step", frame.getStep() + 1);
+                wsMessage.setData(data);
+                processSimulationStepEnd(exeId, wsMessage, simInfo);
+            }
+
+            ingestMetrics.recordBinary();
+            int events = frame.getCount() + (frame.isStepEnd() ? 1 : 0);
+            if (events > 1) {
+                ingestMetrics.recordBatch(events, System.nanoTime() - startNanos);
+            } else {
+                ingestMetrics.recordSingle(System.nanoTime() - startNanos);
+            }
+        } catch (Exception e) {
+            log.error("Error handling binary engine message", e);
+            sendErrorMessage(session, "Error processing message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 前端是否已连接并完成初始化
+     */
+    private boolean isFrontendReady(SimInfo simInfo) {
+        return simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null;
+    }
+
+    /**
+     * 是否有观看者逐条接收车辆消息（没有时不必构建车辆消息文本）
+     */
+    private boolean wantsVehicleEvents(String sessionId, SimInfo simInfo) {
+        return isFrontendReady(simInfo) && frontendWebSocketHandler.wantsVehicleEvents(sessionId);
+    }
+
+    /**
+     * 将引擎原始消息文本立即发送给前端（不参与合并）
+     */
+    private void sendToFrontend(String sessionId, SimInfo simInfo, String payload) {
+        if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
+            frontendWebSocketHandler.sendRawMessageToFrontend(sessionId, payload);
+        }
+    }
+
+    /**
+     * 将引擎 simdata 消息文本转发给前端（不重新序列化，合并模式下进入缓冲区）
+     */
+    private void relayToFrontend(String sessionId, SimInfo simInfo, String payload) {
+        if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
+            frontendWebSocketHandler.relayToFrontend(sessionId, payload);
+        }
+    }
+
+    /**
+     * 转发车辆消息（只发给逐条接收车辆消息的观看者，增量模式的观看者在步结束时接收增量帧）
+     */
+    private void relayVehicleEvent(String sessionId, SimInfo simInfo, String payload) {
+        if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
+            frontendWebSocketHandler.relayVehicleEvent(sessionId, payload);
+        }
+    }
+
     /**
      * 处理仿真步结束：调用统计服务计算统计信息，添加到消息中，异步保存数据，然后转发给前端
      */
@@ -168,149 +365,92 @@ public class EngineWebSocketHandler implements WebSocketHandler {
                 currentStep = null;
             }
 
-            // 调用统计服务计算统计信息（如果可用）
-            Map<String, Object> infoStat = null;
-            if (statisticsService != null && currentStep != null) {
+            // 完成当前仿真步的数据收集，在数据帧归还前：增量模式的前端生成本步车辆增量帧，
+            // 统计服务直接读取数据帧，只有需要持久化时才生成不可变快照
+            boolean relayDelta = simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null;
+            long stepTime = wsMessage.getTime() != null ? wsMessage.getTime() : System.currentTimeMillis();
+            String simulationTaskId = extractSimulationTaskId(simInfo);
+            String userId = extractUserId(simInfo);
+            String taskId = extractTaskId(simInfo);
+            boolean persist = simulationTaskId != null && userId != null && taskId != null;
+            StatisticsData statistics = null;
+            SimulationDataCollector.StepSnapshot snapshot = null;
+            if (currentStep != null) {
+                StepFrame frame = dataCollector.finishCurrentStep(sessionId, currentStep);
                 try {
-                    // 从收集器中获取当前步的所有消息，构建完整的仿真数据
-                    SimulationDataCollector.CurrentStepCollector stepCollector =
-                            dataCollector.getCurrentStepCollector(sessionId);
-
-                    if (stepCollector != null && !stepCollector.getMessages().isEmpty()) {
-                        // 构建包含所有车辆数据的完整数据结构
-                        Map<String, Object> completeStepData = buildCompleteStepData(
-                                currentStep, stepCollector.getMessages());
-
-                        // 调用统计服务处理当前步
-                        StatisticsData statistics = statisticsService.processSimulationStep(completeStepData);
-
-                        if (statistics != null) {
-                            // 构建 infoStat 对象
-                            infoStat = new HashMap<>();
-
-                            // 基本统计信息
-                            infoStat.put("speed_min", statistics.getMinSpeed() != null ? statistics.getMinSpeed() : 0.0);
-                            infoStat.put("speed_max", statistics.getMaxSpeed() != null ? statistics.getMaxSpeed() : 0.0);
-                            infoStat.put("speed_ave", statistics.getAverageSpeed() != null ? statistics.getAverageSpeed() : 0.0);
-                            infoStat.put("acc_min", statistics.getMinAcceleration() != null ? statistics.getMinAcceleration() : 0.0);
-                            infoStat.put("acc_max", statistics.getMaxAcceleration() != null ? statistics.getMaxAcceleration() : 0.0);
-                            infoStat.put("acc_ave", statistics.getAverageAcceleration() != null ? statistics.getAverageAcceleration() : 0.0);
-                            infoStat.put("car_number", statistics.getVehicleCount() != null ? statistics.getVehicleCount() : 0);
-                            infoStat.put("car_in", statistics.getVehiclesIn() != null ? statistics.getVehiclesIn() : 0);
-                            infoStat.put("car_out", statistics.getVehiclesOut() != null ? statistics.getVehiclesOut() : 0);
-                            infoStat.put("low_speed", statistics.getLowSpeedCount() != null ? statistics.getLowSpeedCount() : 0);
-                            infoStat.put("jam_index", statistics.getCongestionIndex() != null ? statistics.getCongestionIndex() : 0.0);
-
-                            // 全局统计信息
-                            Map<String, Object> global = new HashMap<>();
-                            global.put("cars_in", statistics.getTotalVehiclesIn() != null ? statistics.getTotalVehiclesIn() : 0);
-                            global.put("cars_out", statistics.getTotalVehiclesOut() != null ? statistics.getTotalVehiclesOut() : 0);
-                            global.put("queue_length_min", statistics.getMinQueueLength() != null ? statistics.getMinQueueLength() : 0.0);
-                            global.put("queue_length_max", statistics.getMaxQueueLength() != null ? statistics.getMaxQueueLength() : 0.0);
-                            global.put("queue_length_ave", statistics.getAverageQueueLength() != null ? statistics.getAverageQueueLength() : 0.0);
-                            global.put("queue_time_min", statistics.getMinQueueTime() != null ? statistics.getMinQueueTime() : 0.0);
-                            global.put("queue_time_max", statistics.getMaxQueueTime() != null ? statistics.getMaxQueueTime() : 0.0);
-                            global.put("queue_time_ave", statistics.getAverageQueueTime() != null ? statistics.getAverageQueueTime() : 0.0);
-                            global.put("stop_max", statistics.getMaxStopCount() != null ? statistics.getMaxStopCount() : 0);
-                            global.put("stop_min", statistics.getMinStopCount() != null ? statistics.getMinStopCount() : 0);
-                            global.put("stop_ave", statistics.getAverageStopCount() != null ? statistics.getAverageStopCount() : 0.0);
-                            global.put("delay_max", statistics.getMaxDelay() != null ? statistics.getMaxDelay() : 0.0);
-                            global.put("delay_min", statistics.getMinDelay() != null ? statistics.getMinDelay() : 0.0);
-                            global.put("delay_ave", statistics.getAverageDelay() != null ? statistics.getAverageDelay() : 0.0);
-
-                            // 交叉口流量
-                            Map<String, Object> crossFlow = new HashMap<>();
-                            crossFlow.put("flow_ave", statistics.getAverageCrossFlow() != null ? statistics.getAverageCrossFlow() : 0.0);
-                            global.put("cross_flow", crossFlow);
-
-                            // 道路流量
-                            Map<String, Object> flow = new HashMap<>();
-                            flow.put("flow_RD_ave", statistics.getAverageRoadFlow() != null ? statistics.getAverageRoadFlow() : 0.0);
-                            flow.put("flow_LA_ave", statistics.getAverageLaneFlow() != null ? statistics.getAverageLaneFlow() : 0.0);
-                            global.put("flow", flow);
-
-                            infoStat.put("global", global);
-
-                            // 将 infoStat 添加到原始消息的 data 中
-                            data.put("infoStat", infoStat);
-
-                            log.debug("Added statistics to sim_one_step message for session: {}, step: {}",
-                                    sessionId, currentStep);
-                        } else {
-                            log.debug("Statistics calculation returned null for session: {}, step: {}",
-                                    sessionId, currentStep);
-                        }
-                    } else {
-                        log.debug("No messages collected for step {} in session: {}", currentStep, sessionId);
+                    if (relayDelta) {
+                        frontendWebSocketHandler.relayVehicleDelta(sessionId, frame, currentStep, stepTime);
                     }
+                    statistics = computeStatistics(sessionId, frame);
+                    if (persist) {
+                        snapshot = dataCollector.snapshot(frame);
+                    }
+                } finally {
+                    dataCollector.releaseFrame(frame);
+                }
+            }
+
+            // 把统计信息直接写成 infoStat JSON，以原始片段拼入消息（前端发送时不再重新序列化）
+            String infoStat = null;
+            if (statistics != null) {
+                try {
+                    infoStat = infoStatWriter.write(statistics);
+                    data.put("infoStat", new RawValue(infoStat));
+
+                    log.debug("Added statistics to sim_one_step message for session: {}, step: {}",
+                            sessionId, currentStep);
                 } catch (Exception e) {
-                    log.error("Statistics service failed for session: {}, step: {}",
+                    log.error("Failed to write statistics for session: {}, step: {}",
                             sessionId, currentStep, e);
                 }
+            } else if (statisticsService != null && currentStep != null) {
+                log.debug("Statistics calculation returned null for session: {}, step: {}",
+                        sessionId, currentStep);
             }
 
-            // 完成当前仿真步的数据收集
-            if (currentStep != null) {
-                SimulationDataCollector.CurrentStepCollector stepCollector =
-                        dataCollector.finishCurrentStep(sessionId, currentStep);
-
-                if (stepCollector != null && !stepCollector.getMessages().isEmpty()) {
-                    // 异步保存当前仿真步数据到 MongoDB
-                    String simulationTaskId = extractSimulationTaskId(simInfo);
-                    String userId = extractUserId(simInfo);
-                    String taskId = extractTaskId(simInfo);
-
-                    if (simulationTaskId != null && userId != null && taskId != null) {
-                        // 构建完整的仿真步数据（包含所有车辆的详细信息）
-                        Map<String, Object> completeStepData = buildCompleteStepData(
-                                currentStep, stepCollector.getMessages());
-                        
-                        // 构建 StepData，保存完整的车辆数据用于回放
-                        SimulationDataCollector.StepData stepData = new SimulationDataCollector.StepData(
-                                currentStep,
-                                stepCollector.getTimestamp(),
-                                completeStepData,  // ✅ 保存完整的车辆数据（包含所有车辆的位置、速度等）
-                                infoStat  // 统计数据
-                        );
-
-                        // 异步保存（不阻塞当前线程）
-                        dataPersistenceService.saveStepDataAsync(simulationTaskId, userId, taskId, stepData)
-                                .thenAccept(success -> {
-                                    if (success) {
-                                        log.debug("Successfully saved step {} data (vehicles: {}) for task: {}", 
-                                                currentStep, 
-                                                completeStepData.get("vehicles") != null ? 
-                                                    ((List<?>) completeStepData.get("vehicles")).size() : 0,
-                                                simulationTaskId);
-                                    } else {
-                                        log.warn("Failed to save step {} data for task: {}", currentStep, simulationTaskId);
-                                    }
-                                })
-                                .exceptionally(ex -> {
-                                    log.error("Error saving step {} data for task: {}", currentStep, simulationTaskId, ex);
-                                    return null;
-                                });
-
-                        log.debug("Triggered async save for step {} (messages: {}, vehicles: {}) for session: {}",
-                                currentStep, 
-                                stepCollector.getMessages().size(),
-                                completeStepData.get("vehicles") != null ? 
-                                    ((List<?>) completeStepData.get("vehicles")).size() : 0,
-                                sessionId);
-                    }
-                }
+            // 异步保存当前仿真步数据到 MongoDB
+            if (snapshot != null) {
+                int vehicleCount = snapshot.getVehicleCount();
+                // 异步保存完整的车辆数据（用于回放）与统计数据，infoStat 在持久化线程中直接编码为 BSON
+                dataPersistenceService.saveStepDataAsync(simulationTaskId, userId, taskId,
+                                currentStep, snapshot.getTimestamp(), snapshot.getData(), infoStat)
+                        .thenAccept(success -> {
+                            if (success) {
+                                log.debug("Successfully saved step {} data (vehicles: {}) for task: {}",
+                                        currentStep, vehicleCount, simulationTaskId);
+                            } else {
+                                log.warn("Failed to save step {} data for task: {}", currentStep, simulationTaskId);
+                            }
+                        })
+                        .exceptionally(ex -> {
+                            log.error("Error saving step {} data for task: {}", currentStep, simulationTaskId, ex);
+                            return null;
+                        });
+
+                log.debug("Triggered async save for step {} (vehicles: {}, signals: {}) for session: {}",
+                        currentStep,
+                        vehicleCount,
+                        snapshot.getSignalCount(),
+                        sessionId);
+            }
+
+            // 发布步附带密度热力图，以独立的紧凑数组消息发送给前端；慢速前端只保留最新一帧
+            if (statistics != null && statistics.getHeatmap() != null && relayDelta) {
+                WebSocketInfo heatmapMessage = new WebSocketInfo("frontend", "heatmap", stepTime);
+                heatmapMessage.setData(statistics.getHeatmap());
+                frontendWebSocketHandler.sendLatestToFrontend(sessionId, "heatmap", heatmapMessage);
             }
 
-            // 转发给前端（无论是否成功添加统计信息）
+            // 转发给前端（无论是否成功添加统计信息），合并模式下与本步缓冲的消息一起刷新
             if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
-                frontendWebSocketHandler.sendMessageToFrontend(sessionId, wsMessage);
+                frontendWebSocketHandler.relayStepEnd(sessionId, wsMessage);
             }
 
         } catch (Exception e) {
             log.error("Error processing simulation step end for session: {}", sessionId, e);
             // 即使处理失败，也尝试转发原始消息
             if (simInfo != null && simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
-                frontendWebSocketHandler.sendMessageToFrontend(sessionId, wsMessage);
+                frontendWebSocketHandler.relayStepEnd(sessionId, wsMessage);
             }
         }
     }
@@ -330,7 +470,7 @@ public class EngineWebSocketHandler implements WebSocketHandler {
             StatisticsData statistics = null;
             if (statisticsService != null) {
                 try {
-                    statistics = statisticsService.processSimulationStep(simData);
+                    statistics = statisticsService.processSimulationStep(sessionId, simData);
                 } catch (Exception e) {
                     log.warn("Statistics service failed, forwarding raw data: {}", e.getMessage());
                 }
@@ -395,8 +535,16 @@ public class EngineWebSocketHandler implements WebSocketHandler {
 
             // 发送响应 - type 应该是 "eng"（发给引擎的消息）
             WebSocketInfo response = new WebSocketInfo("eng", "hi", System.currentTimeMillis());
+            if (negotiateBinaryProtocol(session, wsMessage)) {
+                // 引擎请求二进制协议，在响应中确认；未确认时引擎继续使用 JSON
+                Map<String, Object> data = new HashMap<>();
+                data.put("protocol", BinaryEngineFrame.PROTOCOL);
+                data.put("version", BinaryEngineFrame.VERSION);
+                response.setData(data);
+            }
             sendMessageToEngine(exeId, response);
-            log.info("Engine initialized for session: {}", exeId);
+            log.info("Engine initialized for session: {}, protocol: {}", exeId,
+                    isBinaryProtocol(session) ? BinaryEngineFrame.PROTOCOL : "json");
 
             // 向前端发送引擎初始化完毕的消息（如果前端已经连接）
             if (simInfo.isFrontendInitialized() && frontendWebSocketHandler != null) {
@@ -407,6 +555,24 @@ public class EngineWebSocketHandler implements WebSocketHandler {
         }
     }
 
+    /**
+     * 协商二进制协议：引擎在 hello 的 data.protocol 中声明 "binary"，且配置允许时启用
+     */
+    private boolean negotiateBinaryProtocol(WebSocketSession session, WebSocketInfo hello) {
+        Map<String, Object> data = hello.getData();
+        boolean requested = data != null && BinaryEngineFrame.PROTOCOL.equals(data.get("protocol"));
+        boolean enabled = requested && properties.getMessage().isBinaryEnabled();
+        session.getAttributes().put(ATTR_BINARY_PROTOCOL, enabled);
+        if (requested && !enabled) {
+            log.info("Engine requested binary protocol but it is disabled, falling back to JSON");
+        }
+        return enabled;
+    }
+
+    private boolean isBinaryProtocol(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get(ATTR_BINARY_PROTOCOL));
+    }
+
     /**
      * 转发消息给引擎
      */
@@ -417,7 +583,7 @@ public class EngineWebSocketHandler implements WebSocketHandler {
             if (session.isOpen()) {
                 try {
                     String json = objectMapper.writeValueAsString(message);
-                    session.sendMessage(new TextMessage(json));
+                    sendText(session, json);
                 } catch (Exception e) {
                     log.error("Failed to forward message to engine for session: {}", sessionId, e);
                 }
@@ -447,7 +613,7 @@ public class EngineWebSocketHandler implements WebSocketHandler {
             try {
                 String json = objectMapper.writeValueAsString(message);
                 log.info("Sending JSON to engine [{}]: {}", exeId, json);  // 输出实际的 JSON
-                session.sendMessage(new TextMessage(json));
+                sendText(session, json);
                 log.info("Successfully sent message to engine: ope={}, session={}", message.getOpe(), exeId);
             } catch (Exception e) {
                 log.error("Failed to send message to engine for session: {}, error: {}", exeId, e.getMessage(), e);
@@ -466,12 +632,24 @@ public class EngineWebSocketHandler implements WebSocketHandler {
             Map<String, Object> data = Map.of("message", errorMessage);
             errorMsg.setData(data);
             String json = objectMapper.writeValueAsString(errorMsg);
-            session.sendMessage(new TextMessage(json));
+            sendText(session, json);
         } catch (Exception e) {
             log.error("Failed to send error message", e);
         }
     }
 
+    /**
+     * 向引擎连接发送文本：容器线程、邮箱工作线程与前端控制消息可能同时发送，
+     * 底层会话不支持并发发送，按连接加锁串行化
+     */
+    private void sendText(WebSocketSession session, String json) throws IOException {
+        synchronized (session) {
+            if (session.isOpen()) {
+                session.sendMessage(new TextMessage(json));
+            }
+        }
+    }
+
     /**
      * 从 URI路径中提取exe_id（session_id）
      */
@@ -510,6 +688,60 @@ public class EngineWebSocketHandler implements WebSocketHandler {
         return null;
     }
 
+    /**
+     * 统计当前仿真步（数据帧只在本次调用期间有效），统计服务不可用或失败时返回 null
+     */
+    private StatisticsData computeStatistics(String sessionId, StepFrame frame) {
+        if (statisticsService == null) {
+            return null;
+        }
+        try {
+            return statisticsService.processSimulationStep(sessionId, frame);
+        } catch (Exception e) {
+            log.error("Statistics service failed for session: {}, step: {}", sessionId, frame.getStep(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 结束会话的统计：释放逐步计算状态，保留运行摘要与 OD 矩阵
+     */
+    private void finishStatistics(String sessionId) {
+        if (statisticsService != null) {
+            try {
+                statisticsService.finishSession(sessionId);
+            } catch (Exception e) {
+                log.warn("Failed to finish statistics state for session: {}", sessionId, e);
+            }
+        }
+    }
+
+    /**
+     * 释放会话进行中的统计状态
+     */
+    private void releaseStatistics(String sessionId) {
+        if (statisticsService != null) {
+            try {
+                statisticsService.releaseSession(sessionId);
+            } catch (Exception e) {
+                log.warn("Failed to release statistics state for session: {}", sessionId, e);
+            }
+        }
+    }
+
+    /**
+     * 选择会话需要的统计指标分组（前端观看者握手或断开时，按所有观看者所选分组的并集更新）
+     */
+    public void selectStatisticsMetrics(String sessionId, List<String> metricGroups) {
+        if (statisticsService != null) {
+            try {
+                statisticsService.selectMetrics(sessionId, metricGroups);
+            } catch (Exception e) {
+                log.warn("Failed to select statistics metrics for session: {}", sessionId, e);
+            }
+        }
+    }
+
     /**
      * 处理仿真结束，保存数据到MongoDB
      */
@@ -551,158 +783,6 @@ public class EngineWebSocketHandler implements WebSocketHandler {
         }
     }
 
-    /**
-     * 从收集的消息中构建完整的仿真步数据
-     */
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> buildCompleteStepData(Long step, List<Map<String, Object>> messages) {
-        Map<String, Object> completeData = new HashMap<>();
-        completeData.put("step", step);
-        completeData.put("over_step:", step);
-
-        // 使用 Map 来去重车辆（按 id）
-        Map<Object, Map<String, Object>> vehicleMap = new HashMap<>();
-        List<Map<String, Object>> signals = new ArrayList<>();
-
-        int produceVehCount = 0;
-        int vehRunCount = 0;
-
-        // 遍历所有消息，提取车辆和信号灯数据
-        for (Map<String, Object> message : messages) {
-            String pos = (String) message.get("pos");
-            Object result = message.get("result");
-
-            if (pos != null && result != null) {
-                if ("veh_run".equals(pos) || "produce_veh".equals(pos)) {
-                    // 车辆数据
-                    if (result instanceof Map) {
-                        Map<String, Object> vehicleData = (Map<String, Object>) result;
-                        Object vehicleId = vehicleData.get("id");
-                        if (vehicleId != null) {
-                            if ("produce_veh".equals(pos)) {
-                                produceVehCount++;
-                            } else {
-                                vehRunCount++;
-                            }
-
-                            // 提取关键字段并重命名以匹配解析器期望
-                            Map<String, Object> vehicle = new HashMap<>();
-
-                            // 先保留所有原始数据
-                            vehicle.putAll(vehicleData);
-
-                            // 然后设置/覆盖关键字段
-                            vehicle.put("id", vehicleId);
-
-                            // 优先使用 cur_spd，如果没有则使用 speed
-                            Object speed = vehicleData.get("cur_spd");
-                            if (speed == null) {
-                                speed = vehicleData.get("speed");
-                            }
-                            vehicle.put("speed", speed);
-
-                            // 计算加速度：(cur_spd - last_spd) / time_step
-                            // 假设 time_step = 1 秒
-                            Object curSpd = vehicleData.get("cur_spd");
-                            Object lastSpd = vehicleData.get("last_spd");
-
-                            if (curSpd instanceof Number && lastSpd instanceof Number) {
-                                // veh_run 消息：有速度历史，计算加速度
-                                double acceleration = ((Number) curSpd).doubleValue() - ((Number) lastSpd).doubleValue();
-                                vehicle.put("acceleration", acceleration);
-                            } else if ("produce_veh".equals(pos)) {
-                                // produce_veh 消息：首次出现，默认加速度为0
-                                vehicle.put("acceleration", 0.0);
-                            }
-
-                            vehicle.put("x", vehicleData.get("x"));
-                            vehicle.put("y", vehicleData.get("y"));
-                            vehicle.put("roadId", vehicleData.get("link_id"));
-                            vehicle.put("laneId", vehicleData.get("lane_id"));
-
-                            // 使用 vehicleId 作为 key，后面的数据会覆盖前面的（veh_run 优先于 produce_veh）
-                            Map<String, Object> existingVehicle = vehicleMap.get(vehicleId);
-                            if (existingVehicle != null) {
-                                log.debug("Vehicle {} already exists, merging {} data", vehicleId, pos);
-                                // 如果新数据有加速度，使用新数据；否则保留旧数据的加速度
-                                Object newAcceleration = vehicle.get("acceleration");
-                                Object existingAcceleration = existingVehicle.get("acceleration");
-
-                                // 合并：新数据覆盖旧数据，但保留有价值的字段
-                                existingVehicle.putAll(vehicle);
-
-                                // 如果新数据没有加速度但旧数据有，恢复旧数据的加速度
-                                if (newAcceleration == null && existingAcceleration != null) {
-                                    existingVehicle.put("acceleration", existingAcceleration);
-                                }
-                            } else {
-                                vehicleMap.put(vehicleId, vehicle);
-                            }
-                        }
-                    } else if (result instanceof List) {
-                        // produce_veh 可能返回数组
-                        List<Map<String, Object>> vehicleList = (List<Map<String, Object>>) result;
-                        for (Map<String, Object> vehicleData : vehicleList) {
-                            Object vehicleId = vehicleData.get("id");
-                            if (vehicleId != null) {
-                                produceVehCount++;
-
-                                Map<String, Object> vehicle = new HashMap<>();
-
-                                // 先保留所有原始数据
-                                vehicle.putAll(vehicleData);
-
-                                // 然后设置/覆盖关键字段
-                                vehicle.put("id", vehicleId);
-
-                                Object speed = vehicleData.get("cur_spd");
-                                if (speed == null) {
-                                    speed = vehicleData.get("speed");
-                                }
-                                vehicle.put("speed", speed);
-
-                                // 计算加速度
-                                Object curSpd = vehicleData.get("cur_spd");
-                                Object lastSpd = vehicleData.get("last_spd");
-
-                                if (curSpd instanceof Number && lastSpd instanceof Number) {
-                                    // veh_run 消息：计算加速度
-                                    double acceleration = ((Number) curSpd).doubleValue() - ((Number) lastSpd).doubleValue();
-                                    vehicle.put("acceleration", acceleration);
-                                } else {
-                                    // produce_veh 消息：默认加速度为0
-                                    vehicle.put("acceleration", 0.0);
-                                }
-
-                                vehicle.put("x", vehicleData.get("x"));
-                                vehicle.put("y", vehicleData.get("y"));
-                                vehicle.put("roadId", vehicleData.get("link_id"));
-                                vehicle.put("laneId", vehicleData.get("lane_id"));
-                                vehicleMap.put(vehicleId, vehicle);
-                            }
-                        }
-                    }
-                } else if ("controller_run".equals(pos)) {
-                    // 信号灯数据
-                    if (result instanceof Map) {
-                        signals.add((Map<String, Object>) result);
-                    }
-                }
-            }
-        }
-
-        // 将去重后的车辆数据转换为列表
-        List<Map<String, Object>> vehicles = new ArrayList<>(vehicleMap.values());
-
-        completeData.put("vehicles", vehicles);
-        completeData.put("signals", signals);
-
-        log.debug("Built complete step data: step={}, unique_vehicles={}, signals={}",
-                step, vehicles.size(), signals.size());
-
-        return completeData;
-    }
-
     /**
      * 从 SimInfo 中提取仿真任务ID
      */
@@ -776,15 +856,19 @@ public class EngineWebSocketHandler implements WebSocketHandler {
         log.info("Engine WebSocket closed: {}, status: {}", exeId, closeStatus);
 
         SimInfo simInfo = sessionService.getSessionInfo(exeId);
-        if (simInfo != null) {
-            // 尝试保存数据（如果还有未保存的数据）
+
+        // 在邮箱中排在已投递消息之后执行，尝试保存数据（如果还有未保存的数据），随后释放邮箱
+        mailboxDispatcher.close(exeId, () -> {
             int cachedStepCount = dataCollector.getSessionStepCount(exeId);
-            if (cachedStepCount > 0) {
+            if (simInfo != null && cachedStepCount > 0) {
                 log.warn("Connection closed but {} steps of data not saved yet, attempting to save",
                         cachedStepCount);
                 handleSimulationEnd(exeId, simInfo);
             }
+            releaseStatistics(exeId);
+        });
 
+        if (simInfo != null) {
             simInfo.setSimengConnection(null);
             simInfo.setSimengInitOk(false);
             sessionService.updateSessionInfo(exeId, simInfo);
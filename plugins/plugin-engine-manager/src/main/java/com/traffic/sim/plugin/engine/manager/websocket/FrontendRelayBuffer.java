@@ -0,0 +1,53 @@
+package com.traffic.sim.plugin.engine.manager.websocket;
+
+/**
+ * 前端转发合并缓冲区
+ * 缓存同一会话待转发的引擎消息文本，刷新时拼接为一个 JSON 数组帧：[msg1,msg2,...]
+ *
+ * @author traffic-sim
+ */
+public class FrontendRelayBuffer {
+
+    private final StringBuilder buffer = new StringBuilder(4096);
+    private int count;
+    /** 是否已安排时间窗口刷新 */
+    private boolean flushScheduled;
+
+    /**
+     * 追加一条消息
+     *
+     * @return 是否需要安排时间窗口刷新（缓冲区由空变为非空且尚未安排）
+     */
+    public synchronized boolean append(String json) {
+        buffer.append(count == 0 ? '[' : ',').append(json);
+        count++;
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    /**
+     * 当前缓冲的字符数
+     */
+    public synchronized int length() {
+        return buffer.length();
+    }
+
+    /**
+     * 取出缓冲内容
+     *
+     * @return JSON 数组文本，缓冲区为空时返回 null
+     */
+    public synchronized String drain() {
+        flushScheduled = false;
+        if (count == 0) {
+            return null;
+        }
+        String payload = buffer.append(']').toString();
+        buffer.setLength(0);
+        count = 0;
+        return payload;
+    }
+}
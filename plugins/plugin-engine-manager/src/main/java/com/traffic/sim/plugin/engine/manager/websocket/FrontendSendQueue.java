@@ -0,0 +1,324 @@
+package com.traffic.sim.plugin.engine.manager.websocket;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 前端发送队列
+ * 每个前端连接（观看者）一个，由发送线程池异步写出，慢速浏览器不会阻塞引擎消息处理；
+ * 队列按字节预算限制，超出时按优先级丢弃较早的帧：先丢事件帧，仿真步帧只为更新的仿真步帧让出空间（只保留最新状态）；
+ * 控制消息从不丢弃，但单独限额，积压超过限额说明前端已失去响应，直接关闭该连接
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+public class FrontendSendQueue {
+
+    /**
+     * 出站消息类型
+     */
+    public enum Kind {
+        /** 控制消息（hi、eng_ok、err、handleope、sim_end 等），从不丢弃，积压超过控制消息限额时关闭连接 */
+        CONTROL,
+        /** 完整的仿真步帧，超出预算时较早的帧被较新的帧取代 */
+        STEP,
+        /** 单个转发事件，超出预算时可丢弃，且不会挤掉已排队的仿真步帧 */
+        EVENT
+    }
+
+    /** 每次调度最多连续发送的消息数 */
+    private static final int DRAIN_BATCH = 64;
+
+    @Getter
+    private final String sessionId;
+    @Getter
+    private final WebSocketSession session;
+    private final long budgetBytes;
+    private final long controlBudgetBytes;
+    private final Executor executor;
+
+    /** 增量模式的车辆编码器（前端在 hello 中选择增量模式时设置），随连接一起销毁 */
+    @Getter
+    @Setter
+    private volatile VehicleDeltaEncoder deltaEncoder;
+
+    /** 是否合并转发（前端在 hello 中选择 batch 模式时设置） */
+    @Getter
+    @Setter
+    private volatile boolean coalesce;
+
+    /** 观看者选择的统计指标分组（hello 之前为 null，不参与会话分组的计算；空列表表示全部分组） */
+    @Getter
+    @Setter
+    private volatile List<String> metricGroups;
+
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private long queuedControlBytes;
+    private boolean scheduled;
+    private boolean closed;
+    /** 控制消息积压超过限额而关闭 */
+    private boolean overflowed;
+
+    private long enqueued;
+    private long sent;
+    private long dropped;
+    private long droppedBytes;
+    private long sendFailures;
+    private long maxQueuedBytes;
+    private long lastLagNanos;
+    private long maxLagNanos;
+    private long totalLagNanos;
+
+    public FrontendSendQueue(String sessionId, WebSocketSession session, long budgetBytes,
+                             long controlBudgetBytes, Executor executor) {
+        this.sessionId = sessionId;
+        this.session = session;
+        this.budgetBytes = budgetBytes;
+        this.controlBudgetBytes = controlBudgetBytes;
+        this.executor = executor;
+    }
+
+    /**
+     * 投递一条消息
+     *
+     * @param json 消息文本
+     * @param kind 消息类型
+     */
+    public void offer(String json, Kind kind) {
+        offer(new TextMessage(json), kind);
+    }
+
+    /**
+     * 投递一条已构造的消息（TextMessage 不可变，可由多个观看者的队列共享）
+     *
+     * @param message 消息
+     * @param kind 消息类型
+     */
+    public void offer(TextMessage message, Kind kind) {
+        offer(message, kind, null);
+    }
+
+    /**
+     * 投递一条可被取代的消息：队列中同 key 的未发送消息先被移除，只保留最新一条
+     *
+     * @param message 消息
+     * @param kind 消息类型（STEP 或 EVENT）
+     * @param key 取代键，为 null 时不取代
+     */
+    public void offer(TextMessage message, Kind kind, String key) {
+        boolean schedule = false;
+        boolean overflow = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long size = message.getPayloadLength();
+            if (kind == Kind.CONTROL) {
+                if (queuedControlBytes + size > controlBudgetBytes) {
+                    overflow = true;
+                    overflowed = true;
+                    dropped += queue.size() + 1;
+                    droppedBytes += queuedBytes + size;
+                    close();
+                } else {
+                    schedule = enqueue(message, kind, size, null);
+                }
+            } else {
+                if (key != null) {
+                    evictKey(key);
+                }
+                if (queuedBytes + size > budgetBytes) {
+                    // 事件帧只能挤掉事件帧，仿真步帧先挤掉事件帧再挤掉较早的仿真步帧
+                    evict(Kind.EVENT, size);
+                    if (kind == Kind.STEP) {
+                        evict(Kind.STEP, size);
+                    } else if (queuedBytes + size > budgetBytes) {
+                        dropped++;
+                        droppedBytes += size;
+                        return;
+                    }
+                }
+                schedule = enqueue(message, kind, size, key);
+            }
+        }
+        if (schedule) {
+            executor.execute(this::drain);
+        } else if (overflow) {
+            closeOverflowed();
+        }
+    }
+
+    /**
+     * 入队（调用方持有锁）
+     *
+     * @return 是否需要调度发送任务
+     */
+    private boolean enqueue(TextMessage message, Kind kind, long size, String key) {
+        queue.addLast(new Outbound(message, kind, size, key, System.nanoTime()));
+        enqueued++;
+        queuedBytes += size;
+        if (kind == Kind.CONTROL) {
+            queuedControlBytes += size;
+        }
+        maxQueuedBytes = Math.max(maxQueuedBytes, queuedBytes);
+        if (scheduled) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * 关闭队列，丢弃未发送的消息
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        queuedBytes = 0;
+        queuedControlBytes = 0;
+    }
+
+    /**
+     * 已丢弃的消息数
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * 指标快照
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Outbound head = queue.peekFirst();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessionId", sessionId);
+        metrics.put("connectionId", session.getId());
+        metrics.put("coalesce", coalesce);
+        metrics.put("delta", deltaEncoder != null);
+        metrics.put("queuedMessages", queue.size());
+        metrics.put("queuedBytes", queuedBytes);
+        metrics.put("maxQueuedBytes", maxQueuedBytes);
+        metrics.put("budgetBytes", budgetBytes);
+        metrics.put("queuedControlBytes", queuedControlBytes);
+        metrics.put("controlBudgetBytes", controlBudgetBytes);
+        metrics.put("overflowed", overflowed);
+        metrics.put("enqueued", enqueued);
+        metrics.put("sent", sent);
+        metrics.put("dropped", dropped);
+        metrics.put("droppedBytes", droppedBytes);
+        metrics.put("sendFailures", sendFailures);
+        metrics.put("oldestQueuedMs", head != null ? toMillis(System.nanoTime() - head.enqueuedAt) : 0.0);
+        metrics.put("lagLastMs", toMillis(lastLagNanos));
+        metrics.put("lagAvgMs", sent > 0 ? toMillis(totalLagNanos / sent) : 0.0);
+        metrics.put("lagMaxMs", toMillis(maxLagNanos));
+        return metrics;
+    }
+
+    /**
+     * 从队首开始丢弃指定类型的消息，直到能容纳新消息
+     */
+    private void evict(Kind kind, long incoming) {
+        Iterator<Outbound> iterator = queue.iterator();
+        while (iterator.hasNext() && queuedBytes + incoming > budgetBytes) {
+            Outbound outbound = iterator.next();
+            if (outbound.kind == kind) {
+                iterator.remove();
+                queuedBytes -= outbound.size;
+                dropped++;
+                droppedBytes += outbound.size;
+            }
+        }
+    }
+
+    /**
+     * 丢弃同 key 的未发送消息
+     */
+    private void evictKey(String key) {
+        Iterator<Outbound> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Outbound outbound = iterator.next();
+            if (key.equals(outbound.key)) {
+                iterator.remove();
+                queuedBytes -= outbound.size;
+                dropped++;
+                droppedBytes += outbound.size;
+            }
+        }
+    }
+
+    /**
+     * 发送任务：同一时刻只有一个线程写该连接
+     */
+    private void drain() {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Outbound outbound;
+            synchronized (this) {
+                outbound = queue.pollFirst();
+                if (outbound == null) {
+                    scheduled = false;
+                    return;
+                }
+                queuedBytes -= outbound.size;
+                if (outbound.kind == Kind.CONTROL) {
+                    queuedControlBytes -= outbound.size;
+                }
+            }
+
+            boolean success = false;
+            if (session.isOpen()) {
+                try {
+                    session.sendMessage(outbound.message);
+                    success = true;
+                } catch (Exception e) {
+                    log.error("Failed to send message to frontend for session: {}", sessionId, e);
+                }
+            }
+
+            long lag = System.nanoTime() - outbound.enqueuedAt;
+            synchronized (this) {
+                if (success) {
+                    sent++;
+                    lastLagNanos = lag;
+                    totalLagNanos += lag;
+                    maxLagNanos = Math.max(maxLagNanos, lag);
+                } else {
+                    sendFailures++;
+                }
+            }
+        }
+        // 达到单次发送上限，让出线程后继续
+        executor.execute(this::drain);
+    }
+
+    /**
+     * 控制消息积压超限：关闭连接，由连接关闭回调移除该观看者
+     */
+    private void closeOverflowed() {
+        log.warn("Frontend send queue for session {} exceeded control budget {} bytes, closing connection {}",
+            sessionId, controlBudgetBytes, session.getId());
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Frontend send queue overloaded"));
+        } catch (Exception e) {
+            log.debug("Failed to close overloaded frontend connection for session: {}", sessionId, e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private record Outbound(TextMessage message, Kind kind, long size, String key, long enqueuedAt) {
+    }
+}
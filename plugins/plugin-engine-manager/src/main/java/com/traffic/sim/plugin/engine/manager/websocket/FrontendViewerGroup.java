@@ -0,0 +1,188 @@
+package com.traffic.sim.plugin.engine.manager.websocket;
+
+import lombok.Getter;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 同一仿真会话的前端观看者集合
+ * 多个浏览器标签页或监控端可以同时观看一个仿真；每条出站消息只构造一次不可变的 TextMessage，
+ * 由各观看者自己的发送队列写出，增加观看者只增加网络写出，不增加 JSON 序列化
+ * 合并转发的观看者共用合并缓冲区（增量模式与完整模式各一个，增量模式的缓冲区不包含逐条车辆消息）
+ *
+ * @author traffic-sim
+ */
+public class FrontendViewerGroup {
+
+    @Getter
+    private final String sessionId;
+
+    /** 观看者发送队列（成员变化少、遍历频繁） */
+    private final List<FrontendSendQueue> viewers = new CopyOnWriteArrayList<>();
+
+    /** 完整模式观看者的合并缓冲区 */
+    private final FrontendRelayBuffer fullBuffer = new FrontendRelayBuffer();
+
+    /** 增量模式观看者的合并缓冲区 */
+    private final FrontendRelayBuffer deltaBuffer = new FrontendRelayBuffer();
+
+    public FrontendViewerGroup(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public void add(FrontendSendQueue viewer) {
+        viewers.add(viewer);
+    }
+
+    public void remove(FrontendSendQueue viewer) {
+        viewers.remove(viewer);
+    }
+
+    public boolean isEmpty() {
+        return viewers.isEmpty();
+    }
+
+    public List<FrontendSendQueue> getViewers() {
+        return viewers;
+    }
+
+    /**
+     * 任意一个观看者，没有观看者时返回 null
+     */
+    public FrontendSendQueue firstViewer() {
+        for (FrontendSendQueue viewer : viewers) {
+            return viewer;
+        }
+        return null;
+    }
+
+    /**
+     * 是否有观看者需要逐条接收车辆消息
+     */
+    public boolean wantsVehicleEvents() {
+        for (FrontendSendQueue viewer : viewers) {
+            if (viewer.getDeltaEncoder() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 转发一条事件消息：非合并观看者直接投递，合并观看者追加到对应缓冲区
+     *
+     * @param vehicleEvent 是否为车辆消息（不发给增量模式的观看者）
+     * @return 是否有缓冲区从空变为非空（需要调度时间窗口刷新）
+     */
+    public boolean offerEvent(String json, boolean vehicleEvent) {
+        TextMessage shared = null;
+        boolean fullCoalescing = false;
+        boolean deltaCoalescing = false;
+        for (FrontendSendQueue viewer : viewers) {
+            boolean delta = viewer.getDeltaEncoder() != null;
+            if (vehicleEvent && delta) {
+                continue;
+            }
+            if (viewer.isCoalesce()) {
+                fullCoalescing |= !delta;
+                deltaCoalescing |= delta;
+                continue;
+            }
+            if (shared == null) {
+                shared = new TextMessage(json);
+            }
+            viewer.offer(shared, FrontendSendQueue.Kind.EVENT);
+        }
+        boolean schedule = false;
+        if (fullCoalescing) {
+            schedule |= fullBuffer.append(json);
+        }
+        if (deltaCoalescing) {
+            schedule |= deltaBuffer.append(json);
+        }
+        return schedule;
+    }
+
+    /**
+     * 转发仿真步结束消息：非合并观看者直接投递，合并观看者追加到缓冲区末尾并立即刷新
+     */
+    public void offerStepEnd(String json) {
+        TextMessage shared = new TextMessage(json);
+        boolean fullCoalescing = false;
+        boolean deltaCoalescing = false;
+        for (FrontendSendQueue viewer : viewers) {
+            if (viewer.isCoalesce()) {
+                boolean delta = viewer.getDeltaEncoder() != null;
+                fullCoalescing |= !delta;
+                deltaCoalescing |= delta;
+            } else {
+                viewer.offer(shared, FrontendSendQueue.Kind.STEP);
+            }
+        }
+        if (fullCoalescing) {
+            fullBuffer.append(json);
+        }
+        if (deltaCoalescing) {
+            deltaBuffer.append(json);
+        }
+        flush(FrontendSendQueue.Kind.STEP);
+    }
+
+    /**
+     * 发送可被取代的状态消息（如热力图）：每个观看者按 key 只保留最新一条未发送的消息，
+     * 与仿真步帧一样在超出预算时可丢弃，不参与合并
+     */
+    public void offerLatest(String key, String json) {
+        broadcast(new TextMessage(json), FrontendSendQueue.Kind.STEP, key);
+    }
+
+    /**
+     * 发送控制消息给所有观看者（先刷新合并缓冲区以保证顺序）
+     */
+    public void offerControl(String json) {
+        flush(FrontendSendQueue.Kind.EVENT);
+        broadcast(new TextMessage(json), FrontendSendQueue.Kind.CONTROL);
+    }
+
+    /**
+     * 刷新合并缓冲区，每个缓冲区的内容只构造一次消息
+     */
+    public void flush(FrontendSendQueue.Kind kind) {
+        flush(fullBuffer, false, kind);
+        flush(deltaBuffer, true, kind);
+    }
+
+    /**
+     * 合并缓冲区中较大的字符数
+     */
+    public int bufferedChars() {
+        return Math.max(fullBuffer.length(), deltaBuffer.length());
+    }
+
+    private void flush(FrontendRelayBuffer buffer, boolean delta, FrontendSendQueue.Kind kind) {
+        synchronized (buffer) {
+            String pending = buffer.drain();
+            if (pending == null) {
+                return;
+            }
+            TextMessage shared = new TextMessage(pending);
+            for (FrontendSendQueue viewer : viewers) {
+                if (viewer.isCoalesce() && (viewer.getDeltaEncoder() != null) == delta) {
+                    viewer.offer(shared, kind);
+                }
+            }
+        }
+    }
+
+    private void broadcast(TextMessage message, FrontendSendQueue.Kind kind) {
+        broadcast(message, kind, null);
+    }
+
+    private void broadcast(TextMessage message, FrontendSendQueue.Kind kind, String key) {
+        for (FrontendSendQueue viewer : viewers) {
+            viewer.offer(message, kind, key);
+        }
+    }
+}
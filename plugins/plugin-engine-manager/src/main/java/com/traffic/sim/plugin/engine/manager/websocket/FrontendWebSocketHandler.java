@@ -2,8 +2,13 @@ package com.traffic.sim.plugin.engine.manager.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.traffic.sim.common.model.SimInfo;
+import com.traffic.sim.common.model.StepFrame;
 import com.traffic.sim.common.model.WebSocketInfo;
 import com.traffic.sim.common.service.SessionService;
+import com.traffic.sim.plugin.engine.manager.config.EngineManagerProperties;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineFrameWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -13,13 +18,23 @@ import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 前端WebSocket处理器
  * 路径: /ws/frontend
  * 认证: Cookie中的id字段（session_id）
+ * 同一会话允许多个前端连接同时观看，出站消息序列化一次后由各连接的发送队列写出
  * 
  * @author traffic-sim
  */
@@ -28,10 +43,47 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class FrontendWebSocketHandler implements WebSocketHandler {
     
+    /** 转发模式：合并为数组帧 */
+    private static final String RELAY_MODE_BATCH = "batch";
+    
+    /** 车辆推送模式：每步只发送增量 */
+    private static final String VEHICLE_MODE_DELTA = "delta";
+    
+    /** WebSocket 会话属性：发送队列 */
+    private static final String ATTR_SEND_QUEUE = "frontend.sendQueue";
+    
     private final SessionService sessionService;
+    private final EngineManagerProperties properties;
+    private final EngineFrameWriter frameWriter;
     private EngineWebSocketHandler engineWebSocketHandler;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    /** 各会话的前端观看者 */
+    private final Map<String, FrontendViewerGroup> viewerGroups = new ConcurrentHashMap<>();
+    
+    /** 串行化统计指标分组的重新计算（握手与断开来自不同连接的线程） */
+    private final Object metricsLock = new Object();
+    
+    /** 发送线程池（慢速浏览器只占用发送线程，不阻塞引擎消息处理） */
+    private ExecutorService senderPool;
+    
+    /** 时间窗口刷新调度器 */
+    private final ScheduledExecutorService relayScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "frontend-relay-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        senderPool = Executors.newFixedThreadPool(Math.max(1, properties.getRelay().getSenderThreads()), r -> {
+            Thread thread = new Thread(r, "frontend-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
     /**
      * 设置引擎WebSocket处理器（解决循环依赖）
      */
@@ -56,6 +108,17 @@ public class FrontendWebSocketHandler implements WebSocketHandler {
             log.warn("Failed to set session timeout: {}", e.getMessage());
         }
         
+        FrontendSendQueue sendQueue = new FrontendSendQueue(sessionId, session,
+                properties.getRelay().getSendBudgetBytes(), properties.getRelay().getControlBudgetBytes(), senderPool);
+        sendQueue.setCoalesce(properties.getRelay().isCoalesceByDefault());
+        session.getAttributes().put(ATTR_SEND_QUEUE, sendQueue);
+        FrontendViewerGroup group = viewerGroups.compute(sessionId, (k, existing) -> {
+            FrontendViewerGroup viewers = existing != null ? existing : new FrontendViewerGroup(k);
+            viewers.add(sendQueue);
+            return viewers;
+        });
+        log.info("Frontend viewers for session {}: {}", sessionId, group.getViewers().size());
+        
         SimInfo simInfo = sessionService.getSessionInfo(sessionId);
         if (simInfo != null) {
             simInfo.setFrontendConnection(session);
@@ -66,7 +129,7 @@ public class FrontendWebSocketHandler implements WebSocketHandler {
             // 如果引擎已经初始化，通知前端
             if (simInfo.isEngineInitialized()) {
                 WebSocketInfo engOkMsg = new WebSocketInfo("frontend", "eng_ok", System.currentTimeMillis());
-                sendMessageToFrontend(sessionId, engOkMsg);
+                sendToViewer(sendQueue, engOkMsg);
                 log.info("Notified frontend that engine is ready for session: {}", sessionId);
             }
         } else {
@@ -140,29 +203,176 @@ public class FrontendWebSocketHandler implements WebSocketHandler {
             simInfo.setFrontendInitOk(true);
             sessionService.updateSessionInfo(sessionId, simInfo);
             
-            // 发送响应
+            // 前端可在 data.relay 中选择转发模式：batch 表示按仿真步/时间窗口合并为数组帧
+            Map<String, Object> data = wsMessage.getData();
+            FrontendSendQueue sendQueue = (FrontendSendQueue) session.getAttributes().get(ATTR_SEND_QUEUE);
+            if (data != null && RELAY_MODE_BATCH.equals(data.get("relay")) && sendQueue != null) {
+                sendQueue.setCoalesce(true);
+                log.info("Frontend relay coalescing enabled for session: {}", sessionId);
+            }
+            
+            // data.vehicles 为 delta 时，不再逐条转发车辆消息，改为每步发送一条车辆增量帧
+            if (data != null && VEHICLE_MODE_DELTA.equals(data.get("vehicles")) && sendQueue != null
+                    && sendQueue.getDeltaEncoder() == null) {
+                EngineManagerProperties.RelayConfig relay = properties.getRelay();
+                sendQueue.setDeltaEncoder(new VehicleDeltaEncoder(frameWriter, relay.getDeltaPositionEpsilon(),
+                        relay.getDeltaSpeedEpsilon(), relay.getDeltaKeyframeInterval()));
+                log.info("Frontend vehicle delta stream enabled for session: {}", sessionId);
+            }
+            
+            // data.metrics 选择需要的统计指标分组（数组或逗号分隔，如 ["speed", "queue"]），未指定时需要全部分组；
+            // 会话计算所有观看者所选分组的并集
+            if (sendQueue != null) {
+                List<String> metrics = data != null ? parseMetricGroups(data.get("metrics")) : null;
+                sendQueue.setMetricGroups(metrics != null ? metrics : List.of());
+                updateStatisticsMetrics(sessionId);
+            }
+            
+            // 发送响应（只发给发起握手的连接）
             WebSocketInfo response = new WebSocketInfo("frontend", "hi", System.currentTimeMillis());
-            sendMessageToFrontend(sessionId, response);
+            sendToViewer(sendQueue, response);
             log.info("Frontend initialized for session: {}", sessionId);
         }
     }
     
     /**
-     * 发送消息给前端
+     * 发送消息给前端（所有观看者）
      */
     public void sendMessageToFrontend(String sessionId, WebSocketInfo message) {
-        SimInfo simInfo = sessionService.getSessionInfo(sessionId);
-        if (simInfo != null && simInfo.getFrontendConnection() != null) {
-            WebSocketSession session = simInfo.getFrontendConnection();
-            if (session.isOpen()) {
-                try {
-                    String json = objectMapper.writeValueAsString(message);
-                    session.sendMessage(new TextMessage(json));
-                } catch (Exception e) {
-                    log.error("Failed to send message to frontend for session: {}", sessionId, e);
-                }
+        try {
+            sendRawMessageToFrontend(sessionId, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            log.error("Failed to serialize message to frontend for session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * 发送已序列化的 JSON 文本给前端（控制消息，不参与合并也不会被丢弃；发送前先刷新合并缓冲区以保证顺序）
+     */
+    public void sendRawMessageToFrontend(String sessionId, String json) {
+        FrontendViewerGroup group = viewerGroups.get(sessionId);
+        if (group != null) {
+            group.offerControl(json);
+        }
+    }
+
+    /**
+     * 发送可被取代的状态消息给前端（如热力图）：慢速观看者只收到同 key 的最新一条，超出预算时可丢弃
+     */
+    public void sendLatestToFrontend(String sessionId, String key, WebSocketInfo message) {
+        FrontendViewerGroup group = viewerGroups.get(sessionId);
+        if (group == null) {
+            return;
+        }
+        try {
+            group.offerLatest(key, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            log.error("Failed to serialize message to frontend for session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * 转发引擎 simdata 消息：启用合并模式的观看者先缓冲，按时间窗口或仿真步刷新
+     */
+    public void relayToFrontend(String sessionId, String json) {
+        relay(sessionId, json, false);
+    }
+
+    /**
+     * 转发引擎车辆消息（增量模式的观看者不接收）
+     */
+    public void relayVehicleEvent(String sessionId, String json) {
+        relay(sessionId, json, true);
+    }
+
+    /**
+     * 是否有观看者需要逐条接收车辆消息（全部为增量模式时可跳过车辆消息的生成与转发）
+     */
+    public boolean wantsVehicleEvents(String sessionId) {
+        FrontendViewerGroup group = viewerGroups.get(sessionId);
+        return group != null && group.wantsVehicleEvents();
+    }
+
+    /**
+     * 生成并转发本步的车辆增量帧（仅增量模式的观看者，各自维护已发送状态）
+     *
+     * @param frame 当前步数据帧，只在调用期间有效
+     */
+    public void relayVehicleDelta(String sessionId, StepFrame frame, long step, long time) {
+        FrontendViewerGroup group = viewerGroups.get(sessionId);
+        if (group == null) {
+            return;
+        }
+        for (FrontendSendQueue viewer : group.getViewers()) {
+            VehicleDeltaEncoder encoder = viewer.getDeltaEncoder();
+            if (encoder == null) {
+                continue;
+            }
+            try {
+                viewer.offer(encoder.encode(frame, step, time, viewer.getDropped()), FrontendSendQueue.Kind.STEP);
+            } catch (Exception e) {
+                log.error("Failed to encode vehicle delta for session: {}", sessionId, e);
+            }
+        }
+    }
+
+    /**
+     * 转发仿真步结束消息：合并模式下追加到缓冲区末尾并立即刷新，一个仿真步对应一帧
+     */
+    public void relayStepEnd(String sessionId, WebSocketInfo message) {
+        FrontendViewerGroup group = viewerGroups.get(sessionId);
+        if (group == null) {
+            return;
+        }
+        try {
+            group.offerStepEnd(objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            log.error("Failed to serialize message to frontend for session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * 前端发送队列指标（每个观看者的队列积压、丢弃数、发送延迟）
+     */
+    public List<Map<String, Object>> getSendQueueMetrics() {
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        for (FrontendViewerGroup group : viewerGroups.values()) {
+            for (FrontendSendQueue queue : group.getViewers()) {
+                metrics.add(queue.snapshot());
             }
         }
+        return metrics;
+    }
+
+    /**
+     * 转发一条事件消息，需要时安排时间窗口刷新
+     */
+    private void relay(String sessionId, String json, boolean vehicleEvent) {
+        FrontendViewerGroup group = viewerGroups.get(sessionId);
+        if (group == null) {
+            return;
+        }
+        if (group.offerEvent(json, vehicleEvent)) {
+            relayScheduler.schedule(() -> group.flush(FrontendSendQueue.Kind.EVENT),
+                    properties.getRelay().getFlushWindow(), TimeUnit.MILLISECONDS);
+        }
+        if (group.bufferedChars() >= properties.getRelay().getMaxBatchChars()) {
+            group.flush(FrontendSendQueue.Kind.EVENT);
+        }
+    }
+
+    /**
+     * 只发给一个观看者的控制消息（握手响应等）
+     */
+    private void sendToViewer(FrontendSendQueue viewer, WebSocketInfo message) {
+        if (viewer == null) {
+            return;
+        }
+        try {
+            viewer.offer(objectMapper.writeValueAsString(message), FrontendSendQueue.Kind.CONTROL);
+        } catch (Exception e) {
+            log.error("Failed to serialize message to frontend for session: {}", viewer.getSessionId(), e);
+        }
     }
     
     /**
@@ -174,12 +384,68 @@ public class FrontendWebSocketHandler implements WebSocketHandler {
             Map<String, Object> data = Map.of("message", errorMessage);
             errorMsg.setData(data);
             String json = objectMapper.writeValueAsString(errorMsg);
-            session.sendMessage(new TextMessage(json));
+            FrontendSendQueue queue = (FrontendSendQueue) session.getAttributes().get(ATTR_SEND_QUEUE);
+            if (queue != null) {
+                queue.offer(json, FrontendSendQueue.Kind.CONTROL);
+            } else {
+                session.sendMessage(new TextMessage(json));
+            }
         } catch (Exception e) {
             log.error("Failed to send error message", e);
         }
     }
     
+    /**
+     * 按当前观看者重新计算会话的统计指标分组：取已握手观看者所选分组的并集，
+     * 任一观看者需要全部分组或没有已握手的观看者时计算全部分组
+     */
+    private void updateStatisticsMetrics(String sessionId) {
+        if (engineWebSocketHandler == null) {
+            return;
+        }
+        synchronized (metricsLock) {
+            FrontendViewerGroup group = viewerGroups.get(sessionId);
+            Set<String> union = new LinkedHashSet<>();
+            boolean selected = false;
+            boolean all = false;
+            if (group != null) {
+                for (FrontendSendQueue viewer : group.getViewers()) {
+                    List<String> metrics = viewer.getMetricGroups();
+                    if (metrics == null) {
+                        continue;
+                    }
+                    selected = true;
+                    if (metrics.isEmpty()) {
+                        all = true;
+                        break;
+                    }
+                    union.addAll(metrics);
+                }
+            }
+            engineWebSocketHandler.selectStatisticsMetrics(sessionId,
+                    selected && !all ? new ArrayList<>(union) : List.of());
+        }
+    }
+    
+    /**
+     * 解析前端选择的统计指标分组，未指定时返回 null
+     */
+    private List<String> parseMetricGroups(Object metrics) {
+        if (metrics instanceof List<?> list) {
+            List<String> groups = new ArrayList<>(list.size());
+            for (Object item : list) {
+                if (item != null) {
+                    groups.add(item.toString());
+                }
+            }
+            return groups;
+        }
+        if (metrics instanceof String text && !text.isBlank()) {
+            return List.of(text.split(","));
+        }
+        return null;
+    }
+    
     /**
      * 从URL路径中提取session ID
      * URL格式: /ws/frontend/{exeId}
@@ -209,12 +475,38 @@ public class FrontendWebSocketHandler implements WebSocketHandler {
         String sessionId = extractSessionId(session);
         log.info("Frontend WebSocket closed: {}, status: {}", sessionId, closeStatus);
         
+        FrontendSendQueue sendQueue = (FrontendSendQueue) session.getAttributes().get(ATTR_SEND_QUEUE);
+        if (sendQueue != null) {
+            sendQueue.close();
+        }
+        FrontendViewerGroup group = viewerGroups.computeIfPresent(sessionId, (k, viewers) -> {
+            viewers.remove(sendQueue);
+            return viewers.isEmpty() ? null : viewers;
+        });
+        if (sendQueue != null && sendQueue.getMetricGroups() != null) {
+            // 离开的观看者不再参与统计指标分组的选择
+            updateStatisticsMetrics(sessionId);
+        }
+        
         SimInfo simInfo = sessionService.getSessionInfo(sessionId);
-        if (simInfo != null) {
+        if (simInfo == null) {
+            return;
+        }
+        FrontendSendQueue remaining = group != null ? group.firstViewer() : null;
+        if (remaining != null) {
+            // 仍有其他观看者，兼容字段指向剩余的一个连接
+            simInfo.setFrontendConnection(remaining.getSession());
+        } else {
             simInfo.setFrontendConnection(null);
             simInfo.setFrontendInitOk(false);
-            sessionService.updateSessionInfo(sessionId, simInfo);
         }
+        sessionService.updateSessionInfo(sessionId, simInfo);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        relayScheduler.shutdownNow();
+        senderPool.shutdown();
     }
     
     @Override
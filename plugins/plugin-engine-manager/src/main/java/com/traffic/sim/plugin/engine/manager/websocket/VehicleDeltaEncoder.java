@@ -0,0 +1,253 @@
+package com.traffic.sim.plugin.engine.manager.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.traffic.sim.common.model.StepFrame;
+import com.traffic.sim.common.util.IntIntHashMap;
+import com.traffic.sim.plugin.engine.manager.protocol.EngineFrameWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 车辆增量编码器
+ * 每个增量模式的前端连接一个，记录最后一次发给该前端的车辆状态，
+ * 每个仿真步只发送新增车辆、消失车辆ID，以及位置或速度变化超过阈值的车辆：
+ * <pre>
+ * {"type":"frontend","ope":"simdata","time":...,"data":{"pos":"veh_delta","step_num":N,"keyframe":false,
+ *   "added":[...],"moved":[...],"removed":[id,...]}}
+ * </pre>
+ * 关键帧（keyframe=true）在 vehicles 中携带全部车辆，前端应先清空本地状态
+ *
+ * @author traffic-sim
+ */
+public class VehicleDeltaEncoder {
+
+    public static final String POS_VEH_DELTA = "veh_delta";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final EngineFrameWriter frameWriter;
+    private final double positionEpsilon;
+    private final double speedEpsilon;
+    private final int keyframeInterval;
+
+    /** 已发送状态：车辆ID -> 槽位 */
+    private IntIntHashMap sentIndex = new IntIntHashMap(256, -1);
+    private int[] sentIds = new int[256];
+    private double[] sentX = new double[256];
+    private double[] sentY = new double[256];
+    private double[] sentSpeed = new double[256];
+    private int[] sentLink = new int[256];
+    private int[] sentLane = new int[256];
+    private int sentCount;
+
+    /** 下一步的已发送状态（双缓冲） */
+    private IntIntHashMap nextIndex = new IntIntHashMap(256, -1);
+    private int[] nextIds = new int[256];
+    private double[] nextX = new double[256];
+    private double[] nextY = new double[256];
+    private double[] nextSpeed = new double[256];
+    private int[] nextLink = new int[256];
+    private int[] nextLane = new int[256];
+
+    /** 本步仍存在的已发送槽位标记 */
+    private boolean[] seen = new boolean[256];
+    private int[] changedRows = new int[256];
+
+    private int stepsSinceKeyframe;
+    private boolean keyframeRequested = true;
+    /** 上次编码时发送队列的丢弃计数 */
+    private long observedDrops;
+
+    public VehicleDeltaEncoder(EngineFrameWriter frameWriter, double positionEpsilon,
+                               double speedEpsilon, int keyframeInterval) {
+        this.frameWriter = frameWriter;
+        this.positionEpsilon = positionEpsilon;
+        this.speedEpsilon = speedEpsilon;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * 编码当前步
+     *
+     * @param frame 当前步数据帧
+     * @param step 仿真步数
+     * @param time 时间戳
+     * @param drops 发送队列当前的丢弃计数；自上次编码后有消息被丢弃时，前端状态可能已不一致，改发关键帧
+     * @return 增量消息文本
+     */
+    public synchronized String encode(StepFrame frame, long step, long time, long drops) throws IOException {
+        if (drops != observedDrops) {
+            observedDrops = drops;
+            keyframeRequested = true;
+        }
+        boolean keyframe = keyframeRequested || (keyframeInterval > 0 && stepsSinceKeyframe >= keyframeInterval);
+        int size = frame.getSize();
+        ensureCapacity(size);
+
+        SegmentedStringWriter writer = new SegmentedStringWriter(new BufferRecycler());
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "frontend");
+            gen.writeStringField("ope", "simdata");
+            gen.writeNumberField("time", time);
+            gen.writeObjectFieldStart("data");
+            gen.writeStringField("pos", POS_VEH_DELTA);
+            gen.writeNumberField("step_num", step);
+            gen.writeBooleanField("keyframe", keyframe);
+
+            if (keyframe) {
+                gen.writeArrayFieldStart("vehicles");
+                for (int row = 0; row < size; row++) {
+                    frameWriter.writeVehicle(gen, frame, row);
+                }
+                gen.writeEndArray();
+                for (int row = 0; row < size; row++) {
+                    remember(frame, row, row);
+                }
+            } else {
+                writeDelta(gen, frame, size);
+            }
+
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+
+        swapState(size);
+        if (keyframe) {
+            keyframeRequested = false;
+            stepsSinceKeyframe = 0;
+        } else {
+            stepsSinceKeyframe++;
+        }
+        return writer.getAndClear();
+    }
+
+    /**
+     * 写出新增、移动、消失的车辆，并生成下一步的已发送状态
+     */
+    private void writeDelta(JsonGenerator gen, StepFrame frame, int size) throws IOException {
+        Arrays.fill(seen, 0, sentCount, false);
+
+        // 新增车辆
+        int changed = 0;
+        gen.writeArrayFieldStart("added");
+        for (int row = 0; row < size; row++) {
+            int slot = sentIndex.get(frame.getIds()[row]);
+            if (slot < 0) {
+                frameWriter.writeVehicle(gen, frame, row);
+                remember(frame, row, row);
+            } else {
+                seen[slot] = true;
+                if (isMoved(frame, row, slot)) {
+                    changedRows[changed++] = row;
+                    remember(frame, row, row);
+                } else {
+                    keep(slot, row);
+                }
+            }
+        }
+        gen.writeEndArray();
+
+        // 变化超过阈值的车辆
+        gen.writeArrayFieldStart("moved");
+        for (int i = 0; i < changed; i++) {
+            frameWriter.writeVehicle(gen, frame, changedRows[i]);
+        }
+        gen.writeEndArray();
+
+        // 消失的车辆
+        gen.writeArrayFieldStart("removed");
+        for (int slot = 0; slot < sentCount; slot++) {
+            if (!seen[slot]) {
+                gen.writeNumber(sentIds[slot]);
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    private boolean isMoved(StepFrame frame, int row, int slot) {
+        return Math.abs(frame.getX()[row] - sentX[slot]) > positionEpsilon
+                || Math.abs(frame.getY()[row] - sentY[slot]) > positionEpsilon
+                || Math.abs(frame.getSpeed()[row] - sentSpeed[slot]) > speedEpsilon
+                || frame.getLinkIds()[row] != sentLink[slot]
+                || frame.getLaneIds()[row] != sentLane[slot];
+    }
+
+    /**
+     * 记录本次发送的车辆状态
+     */
+    private void remember(StepFrame frame, int row, int target) {
+        nextIds[target] = frame.getIds()[row];
+        nextX[target] = frame.getX()[row];
+        nextY[target] = frame.getY()[row];
+        nextSpeed[target] = frame.getSpeed()[row];
+        nextLink[target] = frame.getLinkIds()[row];
+        nextLane[target] = frame.getLaneIds()[row];
+        nextIndex.put(nextIds[target], target);
+    }
+
+    /**
+     * 变化未超过阈值：保留前端已有的状态，阈值始终相对于前端实际看到的值计算
+     */
+    private void keep(int slot, int target) {
+        nextIds[target] = sentIds[slot];
+        nextX[target] = sentX[slot];
+        nextY[target] = sentY[slot];
+        nextSpeed[target] = sentSpeed[slot];
+        nextLink[target] = sentLink[slot];
+        nextLane[target] = sentLane[slot];
+        nextIndex.put(nextIds[target], target);
+    }
+
+    private void swapState(int size) {
+        IntIntHashMap index = sentIndex;
+        sentIndex = nextIndex;
+        nextIndex = index;
+        nextIndex.clear();
+
+        int[] ids = sentIds;
+        sentIds = nextIds;
+        nextIds = ids;
+        double[] x = sentX;
+        sentX = nextX;
+        nextX = x;
+        double[] y = sentY;
+        sentY = nextY;
+        nextY = y;
+        double[] speed = sentSpeed;
+        sentSpeed = nextSpeed;
+        nextSpeed = speed;
+        int[] link = sentLink;
+        sentLink = nextLink;
+        nextLink = link;
+        int[] lane = sentLane;
+        sentLane = nextLane;
+        nextLane = lane;
+        sentCount = size;
+    }
+
+    private void ensureCapacity(int size) {
+        int capacity = Math.max(size, sentCount);
+        if (capacity <= nextIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, nextIds.length << 1);
+        sentIds = Arrays.copyOf(sentIds, newCapacity);
+        sentX = Arrays.copyOf(sentX, newCapacity);
+        sentY = Arrays.copyOf(sentY, newCapacity);
+        sentSpeed = Arrays.copyOf(sentSpeed, newCapacity);
+        sentLink = Arrays.copyOf(sentLink, newCapacity);
+        sentLane = Arrays.copyOf(sentLane, newCapacity);
+        nextIds = new int[newCapacity];
+        nextX = new double[newCapacity];
+        nextY = new double[newCapacity];
+        nextSpeed = new double[newCapacity];
+        nextLink = new int[newCapacity];
+        nextLane = new int[newCapacity];
+        seen = Arrays.copyOf(seen, newCapacity);
+        changedRows = new int[newCapacity];
+    }
+}
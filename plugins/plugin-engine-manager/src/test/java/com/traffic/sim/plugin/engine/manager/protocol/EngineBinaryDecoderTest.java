@@ -0,0 +1,209 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.traffic.sim.common.model.StepFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EngineBinaryDecoder 测试
+ *
+ * @author traffic-sim
+ */
+class EngineBinaryDecoderTest {
+
+    private final EngineBinaryDecoder decoder = new EngineBinaryDecoder();
+
+    @Test
+    void decodesHeaderAndRecords() throws IOException {
+        ByteBuffer payload = frame(BinaryEngineFrame.KIND_VEH_RUN, BinaryEngineFrame.FLAG_STEP_END, 12, 1700000000123L,
+            new Record(101, 11, 2, 5, 1.5f, -2.25f, 8.0f, 6.5f,
+                BinaryEngineFrame.RECORD_IN_NETWORK | BinaryEngineFrame.RECORD_HAS_LAST_SPD),
+            new Record(102, 12, 1, 0, 3.0f, 4.0f, 0.0f, 0.0f, BinaryEngineFrame.RECORD_IN_CROSS));
+
+        BinaryEngineFrame frame = decoder.decodeHeader(payload);
+        assertEquals(BinaryEngineFrame.VERSION, frame.getVersion());
+        assertEquals(BinaryEngineFrame.KIND_VEH_RUN, frame.getKind());
+        assertFalse(frame.isVehicleList());
+        assertTrue(frame.isStepEnd());
+        assertEquals(12, frame.getStep());
+        assertEquals(2, frame.getCount());
+        assertEquals(1700000000123L, frame.getTime());
+        assertEquals(EngineFrame.POS_VEH_RUN, frame.getPos());
+
+        StepFrame stepFrame = new StepFrame();
+        int[] rows = new int[frame.getCount()];
+        decoder.decodeVehicles(frame, stepFrame, rows);
+
+        assertEquals(2, stepFrame.getSize());
+        int first = rows[0];
+        assertEquals(101, stepFrame.getIds()[first]);
+        assertEquals(11, stepFrame.getLinkIds()[first]);
+        assertEquals(2, stepFrame.getLaneIds()[first]);
+        assertEquals(5, stepFrame.getCellIds()[first]);
+        assertEquals(1.5f, stepFrame.getX()[first]);
+        assertEquals(-2.25f, stepFrame.getY()[first]);
+        assertEquals(8.0f, stepFrame.getSpeed()[first]);
+        assertEquals(6.5f, stepFrame.getLastSpeed()[first]);
+        assertEquals(1.5f, stepFrame.getAcceleration()[first]);
+        assertTrue(stepFrame.has(first, StepFrame.HAS_CUR_SPD));
+        assertTrue(stepFrame.has(first, StepFrame.HAS_ACCELERATION));
+        assertTrue(stepFrame.has(first, StepFrame.IN_NETWORK));
+        assertFalse(stepFrame.has(first, StepFrame.IN_CROSS));
+
+        int second = rows[1];
+        assertEquals(102, stepFrame.getIds()[second]);
+        assertFalse(stepFrame.has(second, StepFrame.HAS_LAST_SPD));
+        assertFalse(stepFrame.has(second, StepFrame.HAS_ACCELERATION));
+        assertTrue(stepFrame.has(second, StepFrame.IN_CROSS));
+    }
+
+    @Test
+    void produceVehicleUsesLastSpeedForAcceleration() throws IOException {
+        StepFrame stepFrame = new StepFrame();
+        int[] rows = new int[2];
+        decode(stepFrame, rows, frame(BinaryEngineFrame.KIND_PRODUCE_VEH, 0, 3, 0L,
+            new Record(1, 1, 1, 0, 0f, 0f, 5.0f, 3.0f, BinaryEngineFrame.RECORD_HAS_LAST_SPD),
+            new Record(2, 1, 1, 0, 0f, 0f, 4.0f, 0f, 0)));
+
+        assertEquals(2.0f, stepFrame.getAcceleration()[rows[0]]);
+        assertTrue(stepFrame.has(rows[0], StepFrame.HAS_SPEED));
+        assertFalse(stepFrame.has(rows[0], StepFrame.HAS_CUR_SPD));
+        // 没有 last_spd 的新车加速度为 0
+        assertEquals(0.0f, stepFrame.getAcceleration()[rows[1]]);
+        assertTrue(stepFrame.has(rows[1], StepFrame.HAS_ACCELERATION));
+        // produce_veh 不携带在网/路口状态
+        assertFalse(stepFrame.has(rows[1], StepFrame.HAS_IN_NETWORK));
+    }
+
+    @Test
+    void laterRecordReplacesSpeedSource() throws IOException {
+        StepFrame stepFrame = new StepFrame();
+        int[] rows = new int[1];
+        decode(stepFrame, rows, frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 3, 0L,
+            new Record(7, 1, 1, 0, 0f, 0f, 9.0f, 0f, 0)));
+        decode(stepFrame, rows, frame(BinaryEngineFrame.KIND_PRODUCE_VEH, 0, 3, 0L,
+            new Record(7, 1, 1, 0, 0f, 0f, 2.0f, 0f, 0)));
+
+        assertEquals(1, stepFrame.getSize());
+        assertEquals(2.0f, stepFrame.getSpeed()[rows[0]]);
+        assertTrue(stepFrame.has(rows[0], StepFrame.HAS_SPEED));
+        assertFalse(stepFrame.has(rows[0], StepFrame.HAS_CUR_SPD));
+    }
+
+    @Test
+    void vehicleListClearsPreviousFields() throws IOException {
+        StepFrame stepFrame = new StepFrame();
+        int[] rows = new int[1];
+        decode(stepFrame, rows, frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 3, 0L,
+            new Record(7, 1, 1, 0, 0f, 0f, 9.0f, 8.0f,
+                BinaryEngineFrame.RECORD_HAS_LAST_SPD | BinaryEngineFrame.RECORD_IN_CROSS)));
+        decode(stepFrame, rows, frame(BinaryEngineFrame.KIND_VEH_RUN, BinaryEngineFrame.FLAG_LIST, 3, 0L,
+            new Record(7, 2, 1, 0, 0f, 0f, 4.0f, 0f, 0)));
+
+        assertEquals(1, stepFrame.getSize());
+        assertEquals(2, stepFrame.getLinkIds()[rows[0]]);
+        assertFalse(stepFrame.has(rows[0], StepFrame.HAS_LAST_SPD));
+        assertFalse(stepFrame.has(rows[0], StepFrame.IN_CROSS));
+        assertEquals(0.0f, stepFrame.getAcceleration()[rows[0]]);
+    }
+
+    @Test
+    void emptyFrameDecodes() throws IOException {
+        BinaryEngineFrame frame = decoder.decodeHeader(frame(BinaryEngineFrame.KIND_SIM_ONE_STEP, 0, 99, 5L));
+        assertEquals(0, frame.getCount());
+        assertEquals(EngineFrame.POS_SIM_ONE_STEP, frame.getPos());
+        assertFalse(frame.isVehicleEvent());
+    }
+
+    @Test
+    void honoursPayloadPosition() throws IOException {
+        ByteBuffer body = frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 4, 0L,
+            new Record(55, 1, 1, 0, 0f, 0f, 1.0f, 0f, 0));
+        ByteBuffer payload = ByteBuffer.allocate(body.remaining() + 3);
+        payload.position(3);
+        payload.put(body);
+        payload.position(3);
+
+        BinaryEngineFrame frame = decoder.decodeHeader(payload);
+        StepFrame stepFrame = new StepFrame();
+        int[] rows = new int[1];
+        decoder.decodeVehicles(frame, stepFrame, rows);
+        assertEquals(55, stepFrame.getIds()[rows[0]]);
+    }
+
+    @Test
+    void rejectsShortFrame() {
+        assertThrows(IOException.class, () -> decoder.decodeHeader(ByteBuffer.allocate(BinaryEngineFrame.HEADER_SIZE - 1)));
+    }
+
+    @Test
+    void rejectsBadMagic() {
+        ByteBuffer payload = frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 1, 0L);
+        payload.putShort(0, (short) 0x1234);
+        assertThrows(IOException.class, () -> decoder.decodeHeader(payload));
+    }
+
+    @Test
+    void rejectsUnsupportedVersion() {
+        ByteBuffer payload = frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 1, 0L);
+        payload.put(2, (byte) (BinaryEngineFrame.VERSION + 1));
+        assertThrows(IOException.class, () -> decoder.decodeHeader(payload));
+    }
+
+    @Test
+    void rejectsTruncatedRecords() {
+        ByteBuffer full = frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 1, 0L,
+            new Record(1, 1, 1, 0, 0f, 0f, 0f, 0f, 0));
+        ByteBuffer truncated = full.slice(0, full.remaining() - 1);
+        assertThrows(IOException.class, () -> decoder.decodeHeader(truncated));
+    }
+
+    @Test
+    void rejectsNegativeCount() {
+        ByteBuffer payload = frame(BinaryEngineFrame.KIND_VEH_RUN, 0, 1, 0L);
+        payload.order(ByteOrder.LITTLE_ENDIAN).putInt(12, -1);
+        assertThrows(IOException.class, () -> decoder.decodeHeader(payload));
+    }
+
+    private void decode(StepFrame stepFrame, int[] rows, ByteBuffer payload) throws IOException {
+        decoder.decodeVehicles(decoder.decodeHeader(payload), stepFrame, rows);
+    }
+
+    private record Record(int id, int link, int lane, int cell, float x, float y,
+                          float speed, float lastSpeed, int flags) {
+    }
+
+    private static ByteBuffer frame(int kind, int flags, int step, long time, Record... records) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryEngineFrame.HEADER_SIZE
+            + records.length * BinaryEngineFrame.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) BinaryEngineFrame.MAGIC);
+        buffer.put((byte) BinaryEngineFrame.VERSION);
+        buffer.put((byte) kind);
+        buffer.putShort((short) flags);
+        buffer.putShort((short) 0);
+        buffer.putInt(step);
+        buffer.putInt(records.length);
+        buffer.putLong(time);
+        for (Record record : records) {
+            buffer.putInt(record.id());
+            buffer.putInt(record.link());
+            buffer.putInt(record.lane());
+            buffer.putInt(record.cell());
+            buffer.putFloat(record.x());
+            buffer.putFloat(record.y());
+            buffer.putFloat(record.speed());
+            buffer.putFloat(record.lastSpeed());
+            buffer.putShort((short) record.flags());
+            buffer.putShort((short) 0);
+        }
+        return buffer.flip();
+    }
+}
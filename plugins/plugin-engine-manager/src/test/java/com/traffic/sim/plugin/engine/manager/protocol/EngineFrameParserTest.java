@@ -0,0 +1,61 @@
+package com.traffic.sim.plugin.engine.manager.protocol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EngineFrameParser 测试
+ *
+ * @author traffic-sim
+ */
+class EngineFrameParserTest {
+
+    private final EngineFrameParser parser = new EngineFrameParser();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void batchEventsRelayOriginalData() throws IOException {
+        String payload = "{\"type\":\"frontend\",\"ope\":\"simdata\",\"time\":42,\"data\":{\"pos\":\"batch\",\"events\":["
+            + "{\"pos\":\"veh_run\",\"result\":[{\"id\":1,\"cur_spd\":2.5}]},"
+            + "{\"result\":{\"phase\":\"\\u00e9\"},\"pos\":\"controller_run\"}]}}";
+
+        EngineFrame frame = parser.parse(payload);
+        assertTrue(frame.isBatch());
+        assertEquals(2, frame.getEvents().size());
+
+        EngineFrame vehicles = frame.getEvents().get(0);
+        assertTrue(vehicles.isVehicleEvent());
+        assertTrue(vehicles.isVehicleList());
+        assertEquals(1, vehicles.getVehicles().size());
+        JsonNode first = objectMapper.readTree(vehicles.toSingleMessage());
+        assertEquals("frontend", first.get("type").asText());
+        assertEquals("simdata", first.get("ope").asText());
+        assertEquals(42L, first.get("time").asLong());
+        assertEquals(objectMapper.readTree("{\"pos\":\"veh_run\",\"result\":[{\"id\":1,\"cur_spd\":2.5}]}"),
+            first.get("data"));
+
+        JsonNode second = objectMapper.readTree(frame.getEvents().get(1).toSingleMessage());
+        assertEquals("é", second.get("data").get("result").get("phase").asText());
+        assertEquals(EngineFrame.POS_CONTROLLER_RUN, second.get("data").get("pos").asText());
+    }
+
+    @Test
+    void singleMessageEscapesRoutingFields() throws IOException {
+        String payload = "{\"type\":\"front\\\"end\",\"data\":{\"pos\":\"batch\",\"events\":[{\"pos\":\"x\"}]}}";
+
+        EngineFrame event = parser.parse(payload).getEvents().get(0);
+        JsonNode message = objectMapper.readTree(event.toSingleMessage());
+        assertEquals("front\"end", message.get("type").asText());
+        // 缺失的 ope/time 不输出为 "null"
+        assertFalse(message.has("ope"));
+        assertFalse(message.has("time"));
+        assertEquals("x", message.get("data").get("pos").asText());
+    }
+}
@@ -0,0 +1,83 @@
+package com.traffic.sim.plugin.engine.manager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SessionMailbox 测试
+ *
+ * @author traffic-sim
+ */
+class SessionMailboxTest {
+
+    /** 手动执行的工作线程池，测试中由调用方决定何时消费 */
+    private final ArrayDeque<Runnable> workers = new ArrayDeque<>();
+
+    @Test
+    void offerNeverBlocksOrDropsPastCapacity() {
+        SessionMailbox mailbox = new SessionMailbox("s1", 4, 100, workers::add);
+        List<Integer> processed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int n = i;
+            assertTrue(mailbox.offer(() -> processed.add(n)));
+        }
+        for (int i = 3; i < 6; i++) {
+            int n = i;
+            assertFalse(mailbox.offer(() -> processed.add(n)));
+        }
+        assertEquals(6, mailbox.getDepth());
+
+        runWorkers();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), processed);
+        assertTrue(mailbox.isIdle());
+    }
+
+    @Test
+    void resumesOnceWhenDrainedToHalfCapacity() {
+        SessionMailbox mailbox = new SessionMailbox("s1", 4, 1, workers::add);
+        for (int i = 0; i < 4; i++) {
+            mailbox.offer(() -> { });
+        }
+        AtomicInteger resumed = new AtomicInteger();
+        mailbox.suspendUntilDrained(resumed::incrementAndGet);
+        assertEquals(0, resumed.get());
+        assertEquals(Boolean.TRUE, mailbox.snapshot().get("readSuspended"));
+
+        // drainBatch=1：每次调度只处理一条
+        workers.poll().run();
+        assertEquals(0, resumed.get());
+        workers.poll().run();
+        assertEquals(1, resumed.get());
+
+        runWorkers();
+        assertEquals(1, resumed.get());
+        assertEquals(Boolean.FALSE, mailbox.snapshot().get("readSuspended"));
+        assertEquals(1L, mailbox.snapshot().get("readSuspensions"));
+    }
+
+    @Test
+    void resumesImmediatelyWhenAlreadyDrained() {
+        SessionMailbox mailbox = new SessionMailbox("s1", 4, 100, workers::add);
+        mailbox.offer(() -> { });
+        runWorkers();
+
+        AtomicInteger resumed = new AtomicInteger();
+        mailbox.suspendUntilDrained(resumed::incrementAndGet);
+        assertEquals(1, resumed.get());
+    }
+
+    private void runWorkers() {
+        Runnable worker;
+        while ((worker = workers.poll()) != null) {
+            worker.run();
+        }
+    }
+}
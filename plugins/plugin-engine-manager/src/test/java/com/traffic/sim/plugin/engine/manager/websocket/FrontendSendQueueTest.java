@@ -0,0 +1,133 @@
+package com.traffic.sim.plugin.engine.manager.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * FrontendSendQueue 测试
+ *
+ * @author traffic-sim
+ */
+class FrontendSendQueueTest {
+
+    /** 手动执行的发送线程池，测试中由调用方决定何时发送 */
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final List<String> sent = new ArrayList<>();
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    FrontendSendQueueTest() throws Exception {
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("viewer-1");
+        doAnswer(invocation -> sent.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+            .when(session).sendMessage(any());
+    }
+
+    @Test
+    void eventNeverDisplacesQueuedStep() {
+        FrontendSendQueue queue = new FrontendSendQueue("s1", session, 10, 100, tasks::add);
+        queue.offer(text("s1", 8), FrontendSendQueue.Kind.STEP);
+        queue.offer(text("e1", 4), FrontendSendQueue.Kind.EVENT);
+        drainAll();
+
+        assertEquals(List.of(text("s1", 8)), sent);
+        assertEquals(1L, queue.getDropped());
+    }
+
+    @Test
+    void stepEvictsEventsBeforeOlderSteps() {
+        FrontendSendQueue queue = new FrontendSendQueue("s1", session, 10, 100, tasks::add);
+        queue.offer(text("s1", 4), FrontendSendQueue.Kind.STEP);
+        queue.offer(text("e1", 3), FrontendSendQueue.Kind.EVENT);
+        queue.offer(text("e2", 3), FrontendSendQueue.Kind.EVENT);
+        queue.offer(text("s2", 6), FrontendSendQueue.Kind.STEP);
+        drainAll();
+
+        assertEquals(List.of(text("s1", 4), text("s2", 6)), sent);
+        assertEquals(2L, queue.getDropped());
+    }
+
+    @Test
+    void newerStepReplacesOlderStep() {
+        FrontendSendQueue queue = new FrontendSendQueue("s1", session, 10, 100, tasks::add);
+        queue.offer(text("c", 5), FrontendSendQueue.Kind.CONTROL);
+        queue.offer(text("s1", 5), FrontendSendQueue.Kind.STEP);
+        queue.offer(text("s2", 5), FrontendSendQueue.Kind.STEP);
+        drainAll();
+
+        assertEquals(List.of(text("c", 5), text("s2", 5)), sent);
+    }
+
+    @Test
+    void keyedMessageKeepsOnlyLatest() {
+        FrontendSendQueue queue = new FrontendSendQueue("s1", session, 100, 100, tasks::add);
+        queue.offer(new TextMessage("h1"), FrontendSendQueue.Kind.STEP, "heatmap");
+        queue.offer(new TextMessage("s1"), FrontendSendQueue.Kind.STEP);
+        queue.offer(new TextMessage("h2"), FrontendSendQueue.Kind.STEP, "heatmap");
+        drainAll();
+
+        assertEquals(List.of("s1", "h2"), sent);
+        assertEquals(1L, queue.getDropped());
+    }
+
+    @Test
+    void controlBacklogOverBudgetClosesViewer() throws Exception {
+        FrontendSendQueue queue = new FrontendSendQueue("s1", session, 10, 8, tasks::add);
+        queue.offer(text("c1", 5), FrontendSendQueue.Kind.CONTROL);
+        verify(session, never()).close(any());
+        queue.offer(text("c2", 5), FrontendSendQueue.Kind.CONTROL);
+        verify(session).close(any(CloseStatus.class));
+
+        queue.offer(text("c3", 1), FrontendSendQueue.Kind.CONTROL);
+        drainAll();
+        assertTrue(sent.isEmpty());
+        Map<String, Object> metrics = queue.snapshot();
+        assertEquals(true, metrics.get("overflowed"));
+        assertEquals(0, metrics.get("queuedMessages"));
+    }
+
+    @Test
+    void sentControlFreesControlBudget() throws Exception {
+        FrontendSendQueue queue = new FrontendSendQueue("s1", session, 10, 8, tasks::add);
+        queue.offer(text("c1", 5), FrontendSendQueue.Kind.CONTROL);
+        drainAll();
+        queue.offer(text("c2", 5), FrontendSendQueue.Kind.CONTROL);
+        drainAll();
+
+        verify(session, never()).close(any());
+        assertEquals(List.of(text("c1", 5), text("c2", 5)), sent);
+    }
+
+    private void drainAll() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * 固定长度的消息文本（以前缀区分）
+     */
+    private static String text(String prefix, int length) {
+        StringBuilder builder = new StringBuilder(prefix);
+        while (builder.length() < length) {
+            builder.append('.');
+        }
+        return builder.toString();
+    }
+}
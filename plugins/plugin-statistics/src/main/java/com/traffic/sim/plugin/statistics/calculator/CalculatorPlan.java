@@ -0,0 +1,97 @@
+package com.traffic.sim.plugin.statistics.calculator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 计算器执行计划（不可变）
+ * 会话选择指标分组后编译一次，之后每步复用：只包含需要执行的计算器（按注册顺序），
+ * 并预先确定可并行的计算器位置，执行期间不再筛选或分配列表
+ *
+ * @author traffic-sim
+ */
+public final class CalculatorPlan {
+
+    private final Set<MetricGroup> groups;
+    private final boolean fused;
+    private final List<StatisticsCalculator> calculators;
+    private final int[] independentIndexes;
+    private final boolean vehiclesRequired;
+
+    CalculatorPlan(Set<MetricGroup> groups, boolean fused, List<StatisticsCalculator> registered) {
+        EnumSet<MetricGroup> selected = EnumSet.noneOf(MetricGroup.class);
+        selected.addAll(groups);
+        this.groups = Collections.unmodifiableSet(selected);
+        this.fused = fused;
+
+        List<StatisticsCalculator> planned = new ArrayList<>();
+        for (StatisticsCalculator calculator : registered) {
+            MetricGroup group = calculator.getGroup();
+            if (group != null && !selected.contains(group)) {
+                continue;
+            }
+            if (fused && FusedStatisticsKernel.COVERED_CALCULATORS.contains(calculator.getName())) {
+                continue;
+            }
+            planned.add(calculator);
+        }
+        this.calculators = List.copyOf(planned);
+        this.vehiclesRequired = planned.stream().anyMatch(StatisticsCalculator::requiresVehicles);
+        this.independentIndexes = new int[(int) planned.stream().filter(StatisticsCalculator::isIndependent).count()];
+        int next = 0;
+        for (int i = 0; i < planned.size(); i++) {
+            if (planned.get(i).isIndependent()) {
+                independentIndexes[next++] = i;
+            }
+        }
+    }
+
+    /**
+     * 是否选择了该分组
+     */
+    public boolean includes(MetricGroup group) {
+        return groups.contains(group);
+    }
+
+    public Set<MetricGroup> getGroups() {
+        return groups;
+    }
+
+    /**
+     * 是否由融合内核计算内置指标
+     */
+    public boolean isFused() {
+        return fused;
+    }
+
+    /**
+     * 需要逐个执行的计算器（注册顺序）
+     */
+    public List<StatisticsCalculator> getCalculators() {
+        return calculators;
+    }
+
+    /**
+     * 计划中是否有计算器读取仿真步的车辆列表
+     */
+    public boolean isVehiclesRequired() {
+        return vehiclesRequired;
+    }
+
+    /**
+     * 可并行执行的计算器数量
+     */
+    public int getIndependentCount() {
+        return independentIndexes.length;
+    }
+
+    /**
+     * 第 i 个可并行执行的计算器在 {@link #getCalculators()} 中的位置
+     */
+    public int independentIndex(int i) {
+        return independentIndexes[i];
+    }
+}
@@ -0,0 +1,232 @@
+package com.traffic.sim.plugin.statistics.calculator;
+
+import com.traffic.sim.common.util.LongIntHashMap;
+import com.traffic.sim.plugin.statistics.model.LaneIndex;
+import com.traffic.sim.plugin.statistics.model.PercentileState;
+import com.traffic.sim.plugin.statistics.model.StatisticsBuffer;
+import com.traffic.sim.plugin.statistics.model.StatisticsContext;
+import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.StepAccumulator;
+import com.traffic.sim.plugin.statistics.model.StepKernelState;
+import com.traffic.sim.plugin.statistics.model.VehicleBatch;
+import com.traffic.sim.plugin.statistics.model.VehicleIdTracker;
+import com.traffic.sim.plugin.statistics.service.StatisticsExecutor;
+import com.traffic.sim.plugin.statistics.util.CompensatedSum;
+import com.traffic.sim.plugin.statistics.util.UnitConverter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 融合统计内核
+ * 一次扫描列式车辆批次，同时完成速度、加速度、进出、流量、排队、停车、延误、分位数八个内置计算器的统计，
+ * 输出字段、数值类型与各计算器逐一执行的结果完全一致（包括空数据时的默认值与缺省字段）；
+ * 只输出执行计划中选择的指标分组，会话累计分位数草图每步都更新，不受分组选择影响；
+ * 车辆数超过并行阈值时分块并行累加，块大小固定，结果不随线程数变化
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FusedStatisticsKernel {
+
+    /** 被内核取代的内置计算器 */
+    public static final Set<String> COVERED_CALCULATORS = Set.of(
+            "SpeedCalculator", "AccelerationCalculator", "InOutCalculator", "FlowCalculator",
+            "QueueCalculator", "StopCalculator", "DelayCalculator", "PercentileCalculator");
+
+    private static final double FREE_FLOW_SPEED = 14.0; // m/s
+
+    private final StatisticsExecutor executor;
+    private final QueueLengthEstimator queueLengthEstimator;
+
+    /**
+     * 计算当前批次的统计结果
+     *
+     * @param state 会话内核状态（已装载当前步车辆、车道索引与进出跟踪）
+     * @param context 统计上下文（累计进出流量已计入当前步，累计分位数草图在此并入）
+     * @param plan 会话的计算器执行计划（选择的指标分组）
+     * @return 统计结果
+     */
+    public StatisticsResult calculate(StepKernelState state, StatisticsContext context, CalculatorPlan plan) {
+        VehicleBatch batch = state.getBatch();
+        int size = batch.getSize();
+
+        // 进出车辆在装载时由ID跟踪器得出
+        VehicleIdTracker idTracker = state.getIdTracker();
+        int carIn = idTracker.getEntered();
+        int carOut = idTracker.getExited();
+
+        StepAccumulator acc = accumulate(state, batch, size);
+        double speedMin = acc.getSpeedMin();
+        double speedMax = acc.getSpeedMax();
+        double accMin = acc.getAccMin();
+        double accMax = acc.getAccMax();
+        int accCount = acc.getAccCount();
+        int jamSpeedCount = acc.getJamSpeedCount();
+        int queueCount = acc.getQueueCount();
+        int stopVehicles = acc.getStopVehicles();
+        LongIntHashMap roadCounts = acc.getRoadCounts();
+        LaneIndex laneIndex = state.getLaneIndex();
+        LongIntHashMap crossCounts = acc.getCrossCounts();
+        CompensatedSum queueTimeSum = acc.getQueueTimeSum();
+        CompensatedSum delaySum = acc.getDelaySum();
+
+        StatisticsResult result = new StatisticsResult();
+        boolean empty = size == 0;
+
+        // 速度（无车辆时不输出）
+        if (!empty && plan.includes(MetricGroup.SPEED)) {
+            result.set("speed_min", UnitConverter.mpsToKmh(speedMin == Double.MAX_VALUE ? 0 : speedMin));
+            result.set("speed_max", UnitConverter.mpsToKmh(speedMax == Double.MIN_VALUE ? 0 : speedMax));
+            result.set("speed_ave", UnitConverter.mpsToKmh(acc.getSpeedSum() / size));
+            result.set("low_speed", acc.getLowSpeedCount());
+        }
+
+        // 加速度
+        if (plan.includes(MetricGroup.ACCELERATION)) {
+            if (accCount == 0) {
+                result.set("acc_min", 0.0);
+                result.set("acc_max", 0.0);
+                result.set("acc_ave", 0.0);
+            } else {
+                result.set("acc_min", accMin);
+                result.set("acc_max", accMax);
+                result.set("acc_ave", acc.getAccSum() / accCount);
+            }
+        }
+
+        // 进出与拥堵指数
+        if (plan.includes(MetricGroup.IN_OUT)) {
+            double jamIndex = 0.0;
+            if (jamSpeedCount > 0) {
+                double ratio = acc.getJamSpeedSum() / jamSpeedCount / FREE_FLOW_SPEED;
+                jamIndex = Math.min(1.0, Math.max(0.0, 1.0 - ratio));
+            }
+            result.set("car_number", size);
+            result.set("car_in", carIn);
+            result.set("car_out", carOut);
+            result.set("jam_index", jamIndex);
+            // 进出流量已在计算前计入缓冲区（不受分组选择影响），这里只输出
+            StatisticsBuffer buffer = context.getBuffer();
+            result.set("cars_in", buffer.getTotalInFlow());
+            result.set("cars_out", buffer.getTotalOutFlow());
+            result.set("flow_rolling", buffer.getRollingFlow());
+        }
+
+        // 流量（无车辆时不输出）
+        if (!empty && plan.includes(MetricGroup.FLOW)) {
+            result.set("flow_RD_ave", roadCounts.isEmpty() ? 0.0 : (double) acc.getRoadVehicles() / roadCounts.size());
+            result.set("flow_LA_ave", laneIndex.getGroupCount() == 0
+                    ? 0.0 : (double) laneIndex.getIndexedVehicles() / laneIndex.getGroupCount());
+            result.set("flow_ave", crossCounts.isEmpty() ? 0.0 : (double) acc.getCrossVehicles() / crossCounts.size());
+            result.set("flow_details", buildFlowDetails(roadCounts, laneIndex, crossCounts));
+        }
+
+        // 排队
+        if (plan.includes(MetricGroup.QUEUE)) {
+            queueLengthEstimator.apply(state, queueCount, result);
+            boolean hasQueueTime = queueTimeSum.count() > 0;
+            result.set("queue_time_min", hasQueueTime ? acc.getQueueTimeMin() : 0.0);
+            result.set("queue_time_max", hasQueueTime ? acc.getQueueTimeMax() : 0.0);
+            result.set("queue_time_ave", hasQueueTime ? queueTimeSum.average() : 0.0);
+        }
+
+        // 停车
+        if (plan.includes(MetricGroup.STOP)) {
+            result.set("stop_min", stopVehicles > 0 ? acc.getStopMin() : 0);
+            result.set("stop_max", stopVehicles > 0 ? acc.getStopMax() : 0);
+            result.set("stop_ave", stopVehicles > 0 ? (double) acc.getStopSum() / stopVehicles : 0.0);
+        }
+
+        // 延误
+        if (plan.includes(MetricGroup.DELAY)) {
+            boolean hasDelay = delaySum.count() > 0;
+            result.set("delay_min", hasDelay ? acc.getDelayMin() : 0.0);
+            result.set("delay_max", hasDelay ? acc.getDelayMax() : 0.0);
+            result.set("delay_ave", hasDelay ? delaySum.average() : 0.0);
+        }
+
+        // 分位数：当前步草图每步并入会话累计，只在选择分位数分组时输出
+        PercentileState percentiles = context.getPercentiles();
+        percentiles.accumulate(acc.getSpeedSketch(), acc.getDelaySketch(), acc.getQueueTimeSketch());
+        if (plan.includes(MetricGroup.PERCENTILE)) {
+            result.set("percentiles", PercentileState.summarize(
+                    acc.getSpeedSketch(), acc.getDelaySketch(), acc.getQueueTimeSketch()));
+            result.set("percentiles_cum", percentiles.cumulativeSummary());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Fused statistics: vehicles={}, in={}, out={}, queue={}, stops={}, delays={}",
+                    size, carIn, carOut, queueCount, stopVehicles, delaySum.count());
+        }
+        return result;
+    }
+
+    /**
+     * 详细流量（与 FlowCalculator 的 flow_details 结构一致），只按不同的道路/车道/路口数量生成
+     */
+    private Map<String, Object> buildFlowDetails(LongIntHashMap roadCounts, LaneIndex laneIndex,
+                                                 LongIntHashMap crossCounts) {
+        Map<Integer, Integer> roadFlow = new HashMap<>();
+        roadCounts.forEach((key, count) -> roadFlow.put((int) key, count));
+        Map<String, Integer> laneFlow = laneIndex.laneFlow();
+        Map<Integer, Integer> crossFlow = new HashMap<>();
+        crossCounts.forEach((key, count) -> crossFlow.put((int) key, count));
+
+        Map<String, Object> flowDetails = new HashMap<>();
+        flowDetails.put("roadFlow", roadFlow);
+        flowDetails.put("laneFlow", laneFlow);
+        flowDetails.put("crossFlow", crossFlow);
+        return flowDetails;
+    }
+
+    /**
+     * 累加当前批次：小批次单线程；大批次按固定块大小切分并行累加，再按块顺序合并，
+     * 合并后按行顺序重新求各项和（与逐个计算器的均值逐位一致）
+     */
+    private StepAccumulator accumulate(StepKernelState state, VehicleBatch batch, int size) {
+        StepAccumulator total = state.getAccumulator();
+        total.reset();
+        if (!executor.isParallel(size)) {
+            total.accumulate(batch, 0, size);
+            return total;
+        }
+
+        int chunkSize = executor.getChunkSize();
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        List<Callable<StepAccumulator>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            StepAccumulator partial = state.partial(i);
+            partial.reset();
+            int from = i * chunkSize;
+            int to = Math.min(size, from + chunkSize);
+            tasks.add(() -> {
+                partial.accumulate(batch, from, to);
+                return partial;
+            });
+        }
+        try {
+            executor.invokeAll(tasks);
+        } catch (ExecutionException e) {
+            log.warn("Parallel statistics failed, falling back to sequential: {}", e.getMessage());
+            total.reset();
+            total.accumulate(batch, 0, size);
+            return total;
+        }
+        for (int i = 1; i < chunks; i++) {
+            total.merge(state.partial(i));
+        }
+        total.sumInOrder(batch, 0, size);
+        return total;
+    }
+}
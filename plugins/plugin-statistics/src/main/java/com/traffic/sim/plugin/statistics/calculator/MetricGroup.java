@@ -0,0 +1,93 @@
+package com.traffic.sim.plugin.statistics.calculator;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * 统计指标分组
+ * 会话可只选择需要的分组，未选择分组的计算器（及融合内核中对应的输出）不再执行
+ *
+ * @author traffic-sim
+ */
+public enum MetricGroup {
+
+    /** 速度：speed_min/max/ave、low_speed */
+    SPEED("speed"),
+
+    /** 加速度：acc_min/max/ave */
+    ACCELERATION("acceleration"),
+
+    /** 车辆数、进出、拥堵指数与累计/滚动进出流量 */
+    IN_OUT("in_out"),
+
+    /** 道路、车道、路口流量 */
+    FLOW("flow"),
+
+    /** 排队长度与排队时间 */
+    QUEUE("queue"),
+
+    /** 停车次数 */
+    STOP("stop"),
+
+    /** 延误 */
+    DELAY("delay"),
+
+    /** 速度、延误、排队时间分位数 */
+    PERCENTILE("percentile"),
+
+    /** 车辆密度与平均速度网格（热力图） */
+    HEATMAP("heatmap"),
+
+    /** 信号相位时长、绿灯利用率与周期统计 */
+    SIGNAL("signal"),
+
+    /** 起讫点（OD）行程时间矩阵 */
+    OD("od");
+
+    private final String key;
+
+    MetricGroup(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 按键（不区分大小写）查找分组，未知键返回 null
+     */
+    public static MetricGroup fromKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        String normalized = key.trim().toLowerCase(Locale.ROOT);
+        for (MetricGroup group : values()) {
+            if (group.key.equals(normalized)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析分组键集合（忽略未知键）；集合为空、包含 "all" 或没有可识别的键时返回全部分组
+     */
+    public static EnumSet<MetricGroup> parse(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return EnumSet.allOf(MetricGroup.class);
+        }
+        EnumSet<MetricGroup> groups = EnumSet.noneOf(MetricGroup.class);
+        for (String key : keys) {
+            if (key != null && "all".equalsIgnoreCase(key.trim())) {
+                return EnumSet.allOf(MetricGroup.class);
+            }
+            MetricGroup group = fromKey(key);
+            if (group != null) {
+                groups.add(group);
+            }
+        }
+        return groups.isEmpty() ? EnumSet.allOf(MetricGroup.class) : groups;
+    }
+}
@@ -0,0 +1,50 @@
+package com.traffic.sim.plugin.statistics.calculator;
+
+import com.traffic.sim.plugin.statistics.config.StatisticsPluginProperties;
+import com.traffic.sim.plugin.statistics.model.LaneIndex;
+import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.StepKernelState;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 排队长度估算
+ * 引擎提供车道位置（cell_id）时，按车道空间索引计算各车道从停车线向上游的连续停止车队长度；
+ * 否则退化为原来的按排队车辆估算（每辆 5 米）。融合内核与 QueueCalculator 共用
+ *
+ * @author traffic-sim
+ */
+@Component
+@RequiredArgsConstructor
+public class QueueLengthEstimator {
+
+    private static final double STOP_SPEED_THRESHOLD = 0.1; // m/s，与排队判定一致
+    private static final double DEFAULT_QUEUE_LENGTH = 5.0; // 米
+
+    private final StatisticsPluginProperties properties;
+
+    /**
+     * 写入 queue_length_min/max/ave（米），有车道位置时另写入 queue_details
+     *
+     * @param state 已装载当前步车辆的内核状态
+     * @param queuedVehicles 低速（排队）车辆数，用于无车道位置时的估算
+     */
+    public void apply(StepKernelState state, int queuedVehicles, StatisticsResult result) {
+        LaneIndex laneIndex = state.getLaneIndex();
+        if (laneIndex.getPositionedVehicles() == 0) {
+            double queueLength = queuedVehicles > 0 ? DEFAULT_QUEUE_LENGTH : 0.0;
+            result.set("queue_length_min", queueLength);
+            result.set("queue_length_max", queueLength);
+            result.set("queue_length_ave", queueLength);
+            return;
+        }
+
+        StatisticsPluginProperties.QueueConfig config = properties.getQueue();
+        laneIndex.computeQueues(state.getBatch(), STOP_SPEED_THRESHOLD, config.getCellLength(),
+                config.getVehicleLength(), config.getMaxSpacing());
+        result.set("queue_length_min", laneIndex.getQueueLengthMin());
+        result.set("queue_length_max", laneIndex.getQueueLengthMax());
+        result.set("queue_length_ave", laneIndex.getQueueLengthAverage());
+        result.set("queue_details", laneIndex.queueDetails());
+    }
+}
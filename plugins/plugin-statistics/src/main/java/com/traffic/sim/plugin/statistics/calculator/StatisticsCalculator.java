@@ -34,5 +34,27 @@ public interface StatisticsCalculator {
      * 获取计算的统计字段列表
      */
     List<String> getCalculatedFields();
+    
+    /**
+     * 是否与其他计算器相互独立（只读取仿真步数据、不修改统计上下文），
+     * 独立的计算器在大规模仿真步中可并行执行
+     */
+    default boolean isIndependent() {
+        return false;
+    }
+    
+    /**
+     * 是否读取仿真步中的车辆列表（只读取信号或内核状态批次的计算器返回 false，
+     * 计划中没有需要车辆列表的计算器时，数据帧路径不再逐车构建仿真步对象）
+     */
+    default boolean requiresVehicles() {
+        return true;
+    }
+    
+    /**
+     * 所属指标分组（null 表示不属于任何分组，始终执行）
+     */
+    default MetricGroup getGroup() {
+        return null;
+    }
 }
-
@@ -3,51 +3,68 @@ package com.traffic.sim.plugin.statistics.calculator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 /**
  * 统计计算器注册表
- * 
+ * 计算器在启动时注册，注册顺序即执行与结果合并顺序；
+ * 每步执行的计算器由 {@link #compile} 编译出的 {@link CalculatorPlan} 提供
+ *
  * @author traffic-sim
  */
 @Slf4j
 @Component
 public class StatisticsCalculatorRegistry {
-    
-    private final Map<String, StatisticsCalculator> calculators = new ConcurrentHashMap<>();
-    
+
+    private final Map<String, StatisticsCalculator> calculators = new LinkedHashMap<>();
+
+    /** 已注册计算器的不可变快照 */
+    private volatile List<StatisticsCalculator> snapshot = List.of();
+
     /**
      * 注册计算器
      */
-    public void register(StatisticsCalculator calculator) {
+    public synchronized void register(StatisticsCalculator calculator) {
         if (calculator != null) {
             calculators.put(calculator.getName(), calculator);
+            snapshot = List.copyOf(calculators.values());
             log.debug("Registered statistics calculator: {}", calculator.getName());
         }
     }
-    
+
     /**
-     * 获取所有计算器
+     * 获取所有计算器（不可变，注册顺序）
      */
     public List<StatisticsCalculator> getAll() {
-        return new ArrayList<>(calculators.values());
+        return snapshot;
     }
-    
+
     /**
      * 根据名称获取计算器
      */
-    public StatisticsCalculator get(String name) {
+    public synchronized StatisticsCalculator get(String name) {
         return calculators.get(name);
     }
-    
+
     /**
      * 检查计算器是否存在
      */
-    public boolean contains(String name) {
+    public synchronized boolean contains(String name) {
         return calculators.containsKey(name);
     }
-}
 
+    /**
+     * 编译计算器执行计划
+     *
+     * @param groups 选择的指标分组（未声明分组的计算器始终执行）
+     * @param fused 内置计算器是否由融合内核取代
+     */
+    public CalculatorPlan compile(Set<MetricGroup> groups, boolean fused) {
+        CalculatorPlan plan = new CalculatorPlan(groups, fused, snapshot);
+        log.debug("Compiled statistics plan: groups={}, calculators={}", groups, plan.getCalculators().size());
+        return plan;
+    }
+}
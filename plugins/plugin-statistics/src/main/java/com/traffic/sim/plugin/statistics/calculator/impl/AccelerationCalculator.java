@@ -1,5 +1,6 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
@@ -76,5 +77,14 @@ public class AccelerationCalculator implements StatisticsCalculator {
     public List<String> getCalculatedFields() {
         return Arrays.asList("acc_min", "acc_max", "acc_ave");
     }
+    
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.ACCELERATION;
+    }
 }
-
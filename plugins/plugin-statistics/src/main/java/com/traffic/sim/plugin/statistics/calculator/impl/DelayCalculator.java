@@ -1,13 +1,15 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
 import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.VehicleBatch;
+import com.traffic.sim.plugin.statistics.util.CompensatedSum;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -37,27 +39,31 @@ public class DelayCalculator implements StatisticsCalculator {
             return result;
         }
         
-        List<Double> delays = new ArrayList<>();
+        // 单次扫描累计，不物化延误列表
+        CompensatedSum delaySum = new CompensatedSum();
+        double delayMin = Double.POSITIVE_INFINITY;
+        double delayMax = Double.NEGATIVE_INFINITY;
         
-        for (var vehicle : vehicles) {
-            // 从车辆属性中提取延误时间
-            Double delay = extractDelay(vehicle);
+        VehicleBatch batch = context.getKernelState().getBatch();
+        for (int row = 0; row < vehicles.size(); row++) {
+            // 延误时间：引擎属性或车辆轨迹累计值
+            Double delay = extractDelay(batch, row);
             if (delay != null && delay > 0) {
-                delays.add(delay);
+                delaySum.add(delay);
+                delayMin = Math.min(delayMin, delay);
+                delayMax = Math.max(delayMax, delay);
             }
         }
         
-        if (!delays.isEmpty()) {
-            double delayMin = delays.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-            double delayMax = delays.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
-            double delayAve = delays.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        if (delaySum.count() > 0) {
+            double delayAve = delaySum.average();
             
             result.set("delay_min", delayMin);
             result.set("delay_max", delayMax);
             result.set("delay_ave", delayAve);
             
             log.info("Delay calculation: count={}, min={}, max={}, ave={}", 
-                delays.size(), delayMin, delayMax, delayAve);
+                delaySum.count(), delayMin, delayMax, delayAve);
         } else {
             result.set("delay_min", 0.0);
             result.set("delay_max", 0.0);
@@ -68,16 +74,10 @@ public class DelayCalculator implements StatisticsCalculator {
     }
     
     /**
-     * 从车辆属性中提取延误时间
+     * 提取延误时间：引擎属性 delay，缺省时为车辆轨迹状态的累计值
      */
-    private Double extractDelay(SimulationStepData.Vehicle vehicle) {
-        if (vehicle.getAttributes() != null) {
-            Object delay = vehicle.getAttributes().get("delay");
-            if (delay instanceof Number) {
-                return ((Number) delay).doubleValue();
-            }
-        }
-        return null;
+    private Double extractDelay(VehicleBatch batch, int row) {
+        return batch.has(row, VehicleBatch.HAS_DELAY) ? batch.getDelay()[row] : null;
     }
     
     @Override
@@ -89,5 +89,14 @@ public class DelayCalculator implements StatisticsCalculator {
     public List<String> getCalculatedFields() {
         return Arrays.asList("delay_min", "delay_max", "delay_ave");
     }
+    
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.DELAY;
+    }
 }
-
@@ -1,5 +1,6 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
@@ -32,12 +33,10 @@ public class FlowCalculator implements StatisticsCalculator {
         
         // 计算路段流量（按roadId分组）
         Map<Integer, Integer> roadFlow = new HashMap<>();
-        Map<String, Integer> laneFlow = new HashMap<>(); // key: "roadId_laneId"
         Map<Integer, Integer> crossFlow = new HashMap<>();
         
         for (var vehicle : vehicles) {
             Integer roadId = vehicle.getRoadId();
-            Integer laneId = vehicle.getLaneId();
             Integer crossId = extractCrossId(vehicle);
             
             // 路段流量
@@ -45,18 +44,15 @@ public class FlowCalculator implements StatisticsCalculator {
                 roadFlow.put(roadId, roadFlow.getOrDefault(roadId, 0) + 1);
             }
             
-            // 车道流量
-            if (roadId != null && laneId != null) {
-                String laneKey = roadId + "_" + laneId;
-                laneFlow.put(laneKey, laneFlow.getOrDefault(laneKey, 0) + 1);
-            }
-            
             // 路口流量（简化实现，实际需要根据车辆位置判断路口）
             if (crossId != null) {
                 crossFlow.put(crossId, crossFlow.getOrDefault(crossId, 0) + 1);
             }
         }
         
+        // 车道流量直接取车道空间索引的分组（key: "roadId_laneId"）
+        Map<String, Integer> laneFlow = context.getKernelState().getLaneIndex().laneFlow();
+        
         // 计算平均流量（当前步的车辆数，不转换为小时流量）
         double flowRdAve = roadFlow.isEmpty() ? 0.0 : 
             roadFlow.values().stream().mapToInt(Integer::intValue).average().orElse(0.0);
@@ -107,5 +103,14 @@ public class FlowCalculator implements StatisticsCalculator {
     public List<String> getCalculatedFields() {
         return Arrays.asList("flow_RD_ave", "flow_LA_ave", "flow_ave", "flow_details");
     }
+    
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.FLOW;
+    }
 }
-
@@ -1,5 +1,6 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
@@ -61,10 +62,8 @@ public class InOutCalculator implements StatisticsCalculator {
         result.set("car_out", carOut);
         result.set("jam_index", jamIndex);
         
-        // 计算累计流量（累积总数，不转换为小时流量）
+        // 累计流量（累积总数，不转换为小时流量）：当前步已在计算前计入缓冲区，不受分组选择影响
         var buffer = context.getBuffer();
-        buffer.addOutFlow(carOut);
-        buffer.addInFlow(carIn);
         
         // 获取累积总数
         int totalCarsIn = buffer.getTotalInFlow();
@@ -72,6 +71,7 @@ public class InOutCalculator implements StatisticsCalculator {
         
         result.set("cars_in", totalCarsIn);  // 累积进入车辆总数
         result.set("cars_out", totalCarsOut);  // 累积离开车辆总数
+        result.set("flow_rolling", buffer.getRollingFlow());  // 各窗口平均进入/离开流量
         
         return result;
     }
@@ -131,7 +131,11 @@ public class InOutCalculator implements StatisticsCalculator {
     @Override
     public List<String> getCalculatedFields() {
         return Arrays.asList("car_number", "car_in", "car_out", 
-                           "jam_index", "cars_in", "cars_out");
+                           "jam_index", "cars_in", "cars_out", "flow_rolling");
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.IN_OUT;
     }
 }
-
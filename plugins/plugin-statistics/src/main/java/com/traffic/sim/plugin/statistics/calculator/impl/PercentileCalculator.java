@@ -0,0 +1,60 @@
+package com.traffic.sim.plugin.statistics.calculator.impl;
+
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
+import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
+import com.traffic.sim.plugin.statistics.model.PercentileState;
+import com.traffic.sim.plugin.statistics.model.SimulationStepData;
+import com.traffic.sim.plugin.statistics.model.StatisticsContext;
+import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分位数统计计算器
+ * 计算速度、延误、排队时间的 p50/p90/p95/p99（当前步与会话累计），
+ * 样本口径与 SpeedCalculator、DelayCalculator、QueueCalculator 一致；
+ * 未选择分位数分组的步由统计服务直接并入会话累计草图
+ * 
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+public class PercentileCalculator implements StatisticsCalculator {
+    
+    @Override
+    public StatisticsResult calculate(SimulationStepData currentStep, 
+                                     SimulationStepData previousStep,
+                                     StatisticsContext context) {
+        // 样本取装载后的批次（延误与排队时间为引擎属性或车辆轨迹累计值）
+        PercentileState percentiles = context.getPercentiles();
+        percentiles.record(context.getKernelState().getBatch());
+        
+        StatisticsResult result = new StatisticsResult();
+        result.set("percentiles", percentiles.stepSummary());
+        result.set("percentiles_cum", percentiles.cumulativeSummary());
+        return result;
+    }
+    
+    @Override
+    public String getName() {
+        return "PercentileCalculator";
+    }
+    
+    @Override
+    public List<String> getCalculatedFields() {
+        return Arrays.asList("percentiles", "percentiles_cum");
+    }
+    
+    @Override
+    public boolean requiresVehicles() {
+        return false;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.PERCENTILE;
+    }
+}
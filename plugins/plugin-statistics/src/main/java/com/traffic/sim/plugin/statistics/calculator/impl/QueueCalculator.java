@@ -1,13 +1,17 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.QueueLengthEstimator;
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
 import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.VehicleBatch;
+import com.traffic.sim.plugin.statistics.util.CompensatedSum;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -19,10 +23,13 @@ import java.util.List;
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class QueueCalculator implements StatisticsCalculator {
     
     private static final double LOW_SPEED_THRESHOLD = 0.1; // m/s，低速视为排队
     
+    private final QueueLengthEstimator queueLengthEstimator;
+    
     @Override
     public StatisticsResult calculate(SimulationStepData currentStep, 
                                      SimulationStepData previousStep,
@@ -42,53 +49,45 @@ public class QueueCalculator implements StatisticsCalculator {
             return result;
         }
         
-        List<Double> queueLengths = new ArrayList<>();
-        List<Double> queueTimes = new ArrayList<>();
+        // 单次扫描累计，不物化排队时间列表
+        int queuedVehicles = 0;
+        CompensatedSum queueTimeSum = new CompensatedSum();
+        double queueTimeMin = Double.POSITIVE_INFINITY;
+        double queueTimeMax = Double.NEGATIVE_INFINITY;
         
-        for (var vehicle : vehicles) {
+        VehicleBatch batch = context.getKernelState().getBatch();
+        for (int row = 0; row < vehicles.size(); row++) {
+            var vehicle = vehicles.get(row);
             Double speed = vehicle.getSpeed();
             if (speed == null || speed < LOW_SPEED_THRESHOLD) {
                 // 低速车辆视为排队
-                // 排队长度：简化计算，使用车辆间距（实际需要根据道路信息计算）
-                double queueLength = estimateQueueLength(vehicle);
-                queueLengths.add(queueLength);
+                queuedVehicles++;
                 
-                // 排队时间：从车辆属性中获取（如果存在）
-                Double queueTime = extractQueueTime(vehicle);
+                // 排队时间：引擎属性或车辆轨迹累计值
+                Double queueTime = extractQueueTime(batch, row);
                 if (queueTime != null) {
-                    queueTimes.add(queueTime);
+                    queueTimeSum.add(queueTime);
+                    queueTimeMin = Math.min(queueTimeMin, queueTime);
+                    queueTimeMax = Math.max(queueTimeMax, queueTime);
                 }
             }
         }
         
-        if (!queueLengths.isEmpty()) {
-            double queueLengthMin = queueLengths.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-            double queueLengthMax = queueLengths.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
-            double queueLengthAve = queueLengths.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-            
-            result.set("queue_length_min", queueLengthMin);
-            result.set("queue_length_max", queueLengthMax);
-            result.set("queue_length_ave", queueLengthAve);
-            
-            log.info("Queue length calculation: count={}, min={}, max={}, ave={}", 
-                queueLengths.size(), queueLengthMin, queueLengthMax, queueLengthAve);
-        } else {
-            result.set("queue_length_min", 0.0);
-            result.set("queue_length_max", 0.0);
-            result.set("queue_length_ave", 0.0);
-        }
+        // 排队长度：按车道空间索引计算停车线后的连续停止车队
+        queueLengthEstimator.apply(context.getKernelState(), queuedVehicles, result);
+        log.info("Queue length calculation: queued={}, min={}, max={}, ave={}", 
+            queuedVehicles, result.get("queue_length_min"), result.get("queue_length_max"),
+            result.get("queue_length_ave"));
         
-        if (!queueTimes.isEmpty()) {
-            double queueTimeMin = queueTimes.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-            double queueTimeMax = queueTimes.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
-            double queueTimeAve = queueTimes.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        if (queueTimeSum.count() > 0) {
+            double queueTimeAve = queueTimeSum.average();
             
             result.set("queue_time_min", queueTimeMin);
             result.set("queue_time_max", queueTimeMax);
             result.set("queue_time_ave", queueTimeAve);
             
             log.info("Queue time calculation: count={}, min={}, max={}, ave={}", 
-                queueTimes.size(), queueTimeMin, queueTimeMax, queueTimeAve);
+                queueTimeSum.count(), queueTimeMin, queueTimeMax, queueTimeAve);
         } else {
             result.set("queue_time_min", 0.0);
             result.set("queue_time_max", 0.0);
@@ -99,25 +98,10 @@ public class QueueCalculator implements StatisticsCalculator {
     }
     
     /**
-     * 估算排队长度（简化实现）
+     * 提取排队时间：引擎属性 queueTime，缺省时为车辆轨迹状态的累计值
      */
-    private double estimateQueueLength(SimulationStepData.Vehicle vehicle) {
-        // 简化实现：假设每辆车占用5米
-        // 实际需要根据道路信息和车辆位置计算
-        return 5.0;
-    }
-    
-    /**
-     * 从车辆属性中提取排队时间
-     */
-    private Double extractQueueTime(SimulationStepData.Vehicle vehicle) {
-        if (vehicle.getAttributes() != null) {
-            Object queueTime = vehicle.getAttributes().get("queueTime");
-            if (queueTime instanceof Number) {
-                return ((Number) queueTime).doubleValue();
-            }
-        }
-        return null;
+    private Double extractQueueTime(VehicleBatch batch, int row) {
+        return batch.has(row, VehicleBatch.HAS_QUEUE_TIME) ? batch.getQueueTime()[row] : null;
     }
     
     @Override
@@ -130,5 +114,14 @@ public class QueueCalculator implements StatisticsCalculator {
         return Arrays.asList("queue_length_min", "queue_length_max", "queue_length_ave",
                            "queue_time_min", "queue_time_max", "queue_time_ave");
     }
+    
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.QUEUE;
+    }
 }
-
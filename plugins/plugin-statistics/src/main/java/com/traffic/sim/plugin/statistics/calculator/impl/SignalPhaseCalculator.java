@@ -0,0 +1,69 @@
+package com.traffic.sim.plugin.statistics.calculator.impl;
+
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
+import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
+import com.traffic.sim.plugin.statistics.config.StatisticsPluginProperties;
+import com.traffic.sim.plugin.statistics.model.SignalPhaseTracker;
+import com.traffic.sim.plugin.statistics.model.SimulationStepData;
+import com.traffic.sim.plugin.statistics.model.StatisticsContext;
+import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.StepKernelState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 信号相位统计计算器
+ * 按路口统计相位时长、绿灯利用率（绿灯期间进入路口的车辆数 / 绿灯秒数）与周期级指标，
+ * 状态保存在会话的 SignalPhaseTracker 中逐步增量更新
+ *
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SignalPhaseCalculator implements StatisticsCalculator {
+
+    private final StatisticsPluginProperties properties;
+
+    @Override
+    public StatisticsResult calculate(SimulationStepData currentStep,
+                                     SimulationStepData previousStep,
+                                     StatisticsContext context) {
+        StatisticsResult result = new StatisticsResult();
+        SignalPhaseTracker tracker = context.getSignalPhases();
+        if (tracker == null) {
+            return result;
+        }
+
+        StepKernelState kernelState = context.getKernelState();
+        tracker.update(currentStep.getSignals(), kernelState.getBatch(), kernelState.getIdTracker(),
+            properties.getTrajectory().getStepSeconds());
+        if (tracker.getCrossCount() > 0) {
+            result.set("signal_phase", tracker.snapshot());
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "SignalPhaseCalculator";
+    }
+
+    @Override
+    public List<String> getCalculatedFields() {
+        return List.of("signal_phase");
+    }
+
+    @Override
+    public boolean requiresVehicles() {
+        return false;
+    }
+
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.SIGNAL;
+    }
+}
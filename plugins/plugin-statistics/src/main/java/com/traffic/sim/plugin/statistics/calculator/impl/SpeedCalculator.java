@@ -1,5 +1,6 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
@@ -73,5 +74,14 @@ public class SpeedCalculator implements StatisticsCalculator {
     public List<String> getCalculatedFields() {
         return Arrays.asList("speed_min", "speed_max", "speed_ave", "low_speed");
     }
+    
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.SPEED;
+    }
 }
-
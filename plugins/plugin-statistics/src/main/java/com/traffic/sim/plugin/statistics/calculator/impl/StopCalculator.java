@@ -1,9 +1,11 @@
 package com.traffic.sim.plugin.statistics.calculator.impl;
 
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
 import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.VehicleBatch;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -41,11 +43,13 @@ public class StopCalculator implements StatisticsCalculator {
         
         List<Integer> stopCounts = new ArrayList<>();
         
-        for (var vehicle : vehicles) {
+        VehicleBatch batch = context.getKernelState().getBatch();
+        for (int row = 0; row < vehicles.size(); row++) {
+            var vehicle = vehicles.get(row);
             Double speed = vehicle.getSpeed();
             if (speed != null && speed < STOP_SPEED_THRESHOLD) {
-                // 从车辆属性中获取停车次数
-                Integer stopCount = extractStopCount(vehicle);
+                // 停车次数：引擎属性或车辆轨迹累计值
+                Integer stopCount = extractStopCount(batch, row);
                 if (stopCount != null) {
                     stopCounts.add(stopCount);
                 } else {
@@ -76,16 +80,10 @@ public class StopCalculator implements StatisticsCalculator {
     }
     
     /**
-     * 从车辆属性中提取停车次数
+     * 提取停车次数：引擎属性 stopCount，缺省时为车辆轨迹状态的累计值
      */
-    private Integer extractStopCount(SimulationStepData.Vehicle vehicle) {
-        if (vehicle.getAttributes() != null) {
-            Object stopCount = vehicle.getAttributes().get("stopCount");
-            if (stopCount instanceof Number) {
-                return ((Number) stopCount).intValue();
-            }
-        }
-        return null;
+    private Integer extractStopCount(VehicleBatch batch, int row) {
+        return batch.has(row, VehicleBatch.HAS_STOP_COUNT) ? batch.getStopCount()[row] : null;
     }
     
     @Override
@@ -97,5 +95,14 @@ public class StopCalculator implements StatisticsCalculator {
     public List<String> getCalculatedFields() {
         return Arrays.asList("stop_min", "stop_max", "stop_ave");
     }
+    
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+    
+    @Override
+    public MetricGroup getGroup() {
+        return MetricGroup.STOP;
+    }
 }
-
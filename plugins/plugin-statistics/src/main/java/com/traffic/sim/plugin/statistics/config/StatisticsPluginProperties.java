@@ -31,6 +31,36 @@ public class StatisticsPluginProperties {
      */
     private CalculatorsConfig calculators = new CalculatorsConfig();
     
+    /**
+     * 滚动窗口配置
+     */
+    private WindowConfig window = new WindowConfig();
+    
+    /**
+     * 会话状态配置
+     */
+    private SessionConfig session = new SessionConfig();
+    
+    /**
+     * 排队长度配置
+     */
+    private QueueConfig queue = new QueueConfig();
+    
+    /**
+     * 车辆轨迹状态配置
+     */
+    private TrajectoryConfig trajectory = new TrajectoryConfig();
+    
+    /**
+     * 密度热力图配置
+     */
+    private HeatmapConfig heatmap = new HeatmapConfig();
+    
+    /**
+     * OD 行程时间矩阵配置
+     */
+    private OdConfig od = new OdConfig();
+    
     @Data
     public static class AsyncConfig {
         /**
@@ -65,6 +95,26 @@ public class StatisticsPluginProperties {
          * 缓存大小
          */
         private int cacheSize = 1000;
+        
+        /**
+         * 是否使用融合统计内核（一次扫描完成全部内置计算器的统计）
+         */
+        private boolean fusedKernel = true;
+        
+        /**
+         * 并行阈值：车辆数达到该值的仿真步分块并行统计，0 表示始终单线程
+         */
+        private int parallelThreshold = 20000;
+        
+        /**
+         * 并行分块大小（车辆数）
+         */
+        private int chunkSize = 8192;
+        
+        /**
+         * 统计线程池并行度，0 表示使用CPU核数
+         */
+        private int parallelism = 0;
     }
     
     @Data
@@ -77,5 +127,97 @@ public class StatisticsPluginProperties {
             "queue", "stop", "delay"
         ));
     }
+    
+    @Data
+    public static class SessionConfig {
+        /**
+         * 会话统计状态空闲超时（毫秒），超时未收到仿真步的会话被清理；已结束会话的运行摘要与 OD 矩阵在结束后保留同样时长
+         */
+        private long idleTtlMs = 1800000;
+        
+        /**
+         * 空闲清理检查间隔（毫秒）
+         */
+        private long sweepIntervalMs = 60000;
+    }
+    
+    @Data
+    public static class QueueConfig {
+        /**
+         * 引擎 cell 长度（米）
+         */
+        private double cellLength = 1.0;
+        
+        /**
+         * 排队中每辆车占用的长度（米），即排队尾车的车长
+         */
+        private double vehicleLength = 5.0;
+        
+        /**
+         * 排队中相邻车辆的最大间距（米），超过则视为排队中断
+         */
+        private double maxSpacing = 15.0;
+    }
+    
+    @Data
+    public static class TrajectoryConfig {
+        /**
+         * 仿真步长（秒），用于累计低速时间与延误
+         */
+        private double stepSeconds = 1.0;
+        
+        /**
+         * 自由流速度（m/s），延误为相对该速度的时间损失
+         */
+        private double freeFlowSpeed = 14.0;
+    }
+    
+    @Data
+    public static class HeatmapConfig {
+        /**
+         * 是否维护密度网格并发布热力图
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 网格单元边长（米，与车辆坐标单位一致）
+         */
+        private double cellSize = 50.0;
+        
+        /**
+         * 发布间隔（仿真步）
+         */
+        private int publishInterval = 10;
+        
+        /**
+         * 发布的网格单元数上限（有车区域的外接矩形超过该值时不发布）
+         */
+        private int maxCells = 65536;
+    }
+    
+    @Data
+    public static class OdConfig {
+        /**
+         * 是否统计 OD 行程时间
+         */
+        private boolean enabled = true;
+        
+        /**
+         * OD 对数量上限（达到上限后新 OD 对的行程只计入丢弃数）
+         */
+        private int maxPairs = 4096;
+        
+        /**
+         * 行程时间分位数的相对误差
+         */
+        private double relativeAccuracy = 0.05;
+    }
+    
+    @Data
+    public static class WindowConfig {
+        /**
+         * 滚动流量窗口（仿真步），每个窗口在 infoStat.flow_rolling 中输出平均进入/离开流量
+         */
+        private List<Integer> flowWindows = new ArrayList<>(Arrays.asList(60, 300, 900));
+    }
 }
-
@@ -0,0 +1,116 @@
+package com.traffic.sim.plugin.statistics.controller;
+
+import com.traffic.sim.common.constant.ErrorCode;
+import com.traffic.sim.common.response.ApiResponse;
+import com.traffic.sim.common.service.StatisticsService;
+import com.traffic.sim.common.util.RequestContext;
+import com.traffic.sim.plugin.statistics.service.StatisticsContextFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 统计控制器
+ * 只返回当前用户自己的会话；不属于当前用户的会话与不存在的会话同样返回 404
+ *
+ * @author traffic-sim
+ */
+@RestController
+@RequestMapping("/statistics")
+@RequiredArgsConstructor
+public class StatisticsController {
+
+    private final StatisticsService statisticsService;
+    private final StatisticsContextFactory contextFactory;
+
+    /**
+     * 当前用户保留统计状态的会话
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<ApiResponse<List<String>>> getSessions() {
+        String currentUserId = RequestContext.getCurrentUserId();
+        if (currentUserId == null) {
+            return ResponseEntity.status(401).body(ApiResponse.error(ErrorCode.ERR_AUTH, "未认证"));
+        }
+        return ResponseEntity.ok(ApiResponse.success(new ArrayList<>(contextFactory.sessionIds(currentUserId))));
+    }
+
+    /**
+     * 会话当前的运行摘要（各步级指标的均值、标准差、极值、分位数与车辆级累计分位数），
+     * 仿真结束后返回最终摘要（finished=true）直到超时清理
+     */
+    @GetMapping("/sessions/{sessionId}/summary")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getRunSummary(@PathVariable String sessionId) {
+        String currentUserId = RequestContext.getCurrentUserId();
+        if (currentUserId == null) {
+            return ResponseEntity.status(401).body(ApiResponse.error(ErrorCode.ERR_AUTH, "未认证"));
+        }
+        Map<String, Object> summary = isOwner(currentUserId, sessionId)
+                ? statisticsService.getRunSummary(sessionId) : null;
+        if (summary == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("Statistics not found for session: " + sessionId));
+        }
+        return ResponseEntity.ok(ApiResponse.success(summary));
+    }
+
+    /**
+     * 合并当前用户多个会话的车辆级累计分位数（速度、延误、排队时间），用于批量对比
+     */
+    @GetMapping("/percentiles")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> mergePercentiles(
+            @RequestParam List<String> sessionIds) {
+        String currentUserId = RequestContext.getCurrentUserId();
+        if (currentUserId == null) {
+            return ResponseEntity.status(401).body(ApiResponse.error(ErrorCode.ERR_AUTH, "未认证"));
+        }
+        for (String sessionId : sessionIds) {
+            if (!isOwner(currentUserId, sessionId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Statistics not found for session: " + sessionId));
+            }
+        }
+        Map<String, Object> merged = statisticsService.mergePercentiles(sessionIds);
+        if (merged == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("Statistics not found for sessions: " + sessionIds));
+        }
+        return ResponseEntity.ok(ApiResponse.success(merged));
+    }
+
+    /**
+     * 会话当前的 OD 行程时间矩阵（各 OD 对行程时间的计数、均值、标准差、极值与分位数，单位秒）
+     */
+    @GetMapping("/sessions/{sessionId}/od")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getOdMatrix(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "1") long minCount) {
+        String currentUserId = RequestContext.getCurrentUserId();
+        if (currentUserId == null) {
+            return ResponseEntity.status(401).body(ApiResponse.error(ErrorCode.ERR_AUTH, "未认证"));
+        }
+        Map<String, Object> matrix = isOwner(currentUserId, sessionId)
+                ? statisticsService.getOdMatrix(sessionId, minCount) : null;
+        if (matrix == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("OD matrix not found for session: " + sessionId));
+        }
+        return ResponseEntity.ok(ApiResponse.success(matrix));
+    }
+
+    /**
+     * 会话是否属于当前用户（归属未知的会话不对任何用户开放）
+     */
+    private boolean isOwner(String currentUserId, String sessionId) {
+        return currentUserId.equals(contextFactory.ownerOf(sessionId));
+    }
+}
@@ -0,0 +1,259 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.util.LongIntHashMap;
+import com.traffic.sim.plugin.statistics.util.UnitConverter;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 车辆密度网格
+ * 按固定边长的均匀网格统计每个单元的车辆数与平均速度。每辆车按 VehicleIdTracker 的槽位记住所在单元与速度贡献，
+ * 每步只对换单元、速度变化或离开的车辆做增减，不重建整个网格；单元在首次有车时登记，之后保持稳定的下标
+ *
+ * @author traffic-sim
+ */
+public class DensityGrid {
+
+    @Getter
+    private final double cellSize;
+
+    /** 单元坐标键 -> 单元下标 */
+    private final LongIntHashMap cellIndex = new LongIntHashMap(1024, -1);
+
+    /** 单元列号、行号（按下标） */
+    private int[] cellX = new int[256];
+    private int[] cellY = new int[256];
+
+    /** 单元车辆数 */
+    private int[] occupancy = new int[256];
+
+    /** 单元内有速度的车辆数与速度之和（m/s） */
+    private int[] speedCount = new int[256];
+    private double[] speedSum = new double[256];
+
+    @Getter
+    private int cellCount;
+
+    /** 槽位所在单元下标（-1 表示不在网格中） */
+    private int[] slotCells = new int[256];
+
+    /** 槽位计入单元的速度（NaN 表示未计入速度） */
+    private double[] slotSpeeds = new double[256];
+
+    /** 网格中的车辆数 */
+    @Getter
+    private int vehicles;
+
+    /** 已应用的更新次数 */
+    @Getter
+    private long updates;
+
+    public DensityGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        Arrays.fill(slotCells, -1);
+        Arrays.fill(slotSpeeds, Double.NaN);
+    }
+
+    /**
+     * 应用当前步的车辆位置（须在 StepKernelState 装载当前步之后调用）：
+     * 先移除本步离开的车辆，再把有位置的车辆移入所在单元；没有位置的车辆保留上一次的单元
+     */
+    public void update(VehicleBatch batch, VehicleIdTracker tracker) {
+        for (int i = 0; i < tracker.getExited(); i++) {
+            remove(tracker.exitedSlot(i));
+        }
+
+        int size = batch.getSize();
+        int[] flags = batch.getFlags();
+        int[] slots = batch.getSlots();
+        double[] x = batch.getX();
+        double[] y = batch.getY();
+        double[] speed = batch.getSpeed();
+        for (int row = 0; row < size; row++) {
+            int flag = flags[row];
+            int slot = slots[row];
+            if (slot < 0 || (flag & VehicleBatch.HAS_POSITION) == 0) {
+                continue;
+            }
+            int cell = cellOf(x[row], y[row]);
+            double v = (flag & VehicleBatch.HAS_SPEED) != 0 ? speed[row] : Double.NaN;
+            move(slot, cell, v);
+        }
+        updates++;
+    }
+
+    /**
+     * 清空网格中的车辆（保留已登记的单元）：密度网格分组停用期间槽位已被复用，重新启用时先丢弃过期状态
+     */
+    public void reset() {
+        Arrays.fill(occupancy, 0, cellCount, 0);
+        Arrays.fill(speedCount, 0, cellCount, 0);
+        Arrays.fill(speedSum, 0, cellCount, 0.0);
+        Arrays.fill(slotCells, -1);
+        Arrays.fill(slotSpeeds, Double.NaN);
+        vehicles = 0;
+    }
+
+    /**
+     * 当前网格的紧凑快照：覆盖有车单元外接矩形的行优先数组
+     *
+     * @param maxCells 外接矩形单元数上限，超过时返回 null
+     */
+    public Map<String, Object> snapshot(int maxCells) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("cell_size", cellSize);
+        snapshot.put("vehicles", vehicles);
+        if (vehicles == 0) {
+            snapshot.put("origin_x", 0.0);
+            snapshot.put("origin_y", 0.0);
+            snapshot.put("cols", 0);
+            snapshot.put("rows", 0);
+            snapshot.put("max_occupancy", 0);
+            snapshot.put("occupancy", new int[0]);
+            snapshot.put("speed", new float[0]);
+            return snapshot;
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int c = 0; c < cellCount; c++) {
+            if (occupancy[c] > 0) {
+                minX = Math.min(minX, cellX[c]);
+                maxX = Math.max(maxX, cellX[c]);
+                minY = Math.min(minY, cellY[c]);
+                maxY = Math.max(maxY, cellY[c]);
+            }
+        }
+        long cols = (long) maxX - minX + 1;
+        long rows = (long) maxY - minY + 1;
+        if (cols * rows > maxCells) {
+            return null;
+        }
+
+        int[] occupancyGrid = new int[(int) (cols * rows)];
+        float[] speedGrid = new float[occupancyGrid.length];
+        int maxOccupancy = 0;
+        for (int c = 0; c < cellCount; c++) {
+            if (occupancy[c] == 0) {
+                continue;
+            }
+            int index = (int) ((cellY[c] - minY) * cols + (cellX[c] - minX));
+            occupancyGrid[index] = occupancy[c];
+            if (speedCount[c] > 0) {
+                speedGrid[index] = (float) UnitConverter.mpsToKmh(speedSum[c] / speedCount[c]);
+            }
+            maxOccupancy = Math.max(maxOccupancy, occupancy[c]);
+        }
+        snapshot.put("origin_x", minX * cellSize);
+        snapshot.put("origin_y", minY * cellSize);
+        snapshot.put("cols", (int) cols);
+        snapshot.put("rows", (int) rows);
+        snapshot.put("max_occupancy", maxOccupancy);
+        snapshot.put("occupancy", occupancyGrid);
+        snapshot.put("speed", speedGrid);
+        return snapshot;
+    }
+
+    /**
+     * 把槽位移入单元并更新其速度贡献
+     */
+    private void move(int slot, int cell, double speed) {
+        ensureSlotCapacity(slot + 1);
+        int previous = slotCells[slot];
+        if (previous == cell) {
+            double old = slotSpeeds[slot];
+            if (!Double.isNaN(old)) {
+                speedCount[cell]--;
+                speedSum[cell] -= old;
+            }
+        } else {
+            if (previous >= 0) {
+                leave(slot, previous);
+            } else {
+                vehicles++;
+            }
+            occupancy[cell]++;
+            slotCells[slot] = cell;
+        }
+        if (!Double.isNaN(speed)) {
+            speedCount[cell]++;
+            speedSum[cell] += speed;
+        }
+        if (speedCount[cell] == 0) {
+            speedSum[cell] = 0.0;
+        }
+        slotSpeeds[slot] = speed;
+    }
+
+    /**
+     * 移除离开路网的槽位
+     */
+    private void remove(int slot) {
+        if (slot >= slotCells.length || slotCells[slot] < 0) {
+            return;
+        }
+        leave(slot, slotCells[slot]);
+        slotCells[slot] = -1;
+        slotSpeeds[slot] = Double.NaN;
+        vehicles--;
+    }
+
+    /**
+     * 从单元中减去槽位的车辆与速度贡献（单元清空时重置速度和，避免浮点误差累积）
+     */
+    private void leave(int slot, int cell) {
+        occupancy[cell]--;
+        double old = slotSpeeds[slot];
+        if (!Double.isNaN(old)) {
+            speedCount[cell]--;
+            speedSum[cell] -= old;
+        }
+        if (speedCount[cell] == 0) {
+            speedSum[cell] = 0.0;
+        }
+    }
+
+    /**
+     * 坐标所在单元的下标（首次出现时登记）
+     */
+    private int cellOf(double x, double y) {
+        int cx = (int) Math.floor(x / cellSize);
+        int cy = (int) Math.floor(y / cellSize);
+        long key = ((long) cx << 32) | (cy & 0xffffffffL);
+        int cell = cellIndex.get(key);
+        if (cell >= 0) {
+            return cell;
+        }
+        if (cellCount == cellX.length) {
+            int capacity = cellCount << 1;
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+            occupancy = Arrays.copyOf(occupancy, capacity);
+            speedCount = Arrays.copyOf(speedCount, capacity);
+            speedSum = Arrays.copyOf(speedSum, capacity);
+        }
+        cell = cellCount++;
+        cellX[cell] = cx;
+        cellY[cell] = cy;
+        cellIndex.put(key, cell);
+        return cell;
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required <= slotCells.length) {
+            return;
+        }
+        int capacity = Math.max(required, slotCells.length << 1);
+        int previous = slotCells.length;
+        slotCells = Arrays.copyOf(slotCells, capacity);
+        slotSpeeds = Arrays.copyOf(slotSpeeds, capacity);
+        Arrays.fill(slotCells, previous, capacity, -1);
+        Arrays.fill(slotSpeeds, previous, capacity, Double.NaN);
+    }
+}
@@ -0,0 +1,31 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 已结束会话的统计结果
+ * 仿真结束时只保留运行级聚合、累计分位数草图与 OD 矩阵（与仿真步数无关的在线状态），
+ * 车辆批次、车道索引、轨迹、密度网格与上一步数据随上下文一起释放
+ *
+ * @author traffic-sim
+ */
+@Getter
+@RequiredArgsConstructor
+public class FinishedRun {
+
+    /** 会话所属用户ID（未知时为 null） */
+    private final String ownerId;
+
+    /** 运行级在线聚合 */
+    private final RunAggregator runAggregator;
+
+    /** 会话累计分位数草图（可跨会话合并） */
+    private final PercentileState percentiles;
+
+    /** OD 行程时间矩阵（未启用时为 null） */
+    private final OdMatrix odMatrix;
+
+    /** 结束时间（毫秒），用于超时清理 */
+    private final long finishedAt;
+}
@@ -0,0 +1,277 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.util.LongIntHashMap;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 车道空间索引
+ * 每个仿真步把有道路、车道的车辆按（道路ID, 车道ID）分组，组内按车道位置（引擎 cell_id，沿行驶方向递增）
+ * 从下游（停车线）到上游排序。分组为计数排序 O(n)，组内为基本类型排序 O(k log k)，数组跨步复用。
+ * 流量统计直接使用分组大小，排队统计从停车线一侧向上游扫描连续停止的车队
+ *
+ * @author traffic-sim
+ */
+public class LaneIndex {
+
+    /** 无位置车辆的排序位置（排在组内最上游） */
+    private static final int NO_POSITION = Integer.MIN_VALUE;
+
+    /** 车道键（道路ID<<32|车道ID） -> 组号 */
+    private final LongIntHashMap laneToGroup = new LongIntHashMap(128, -1);
+
+    /** 组号 -> 车道键 */
+    private long[] groupKeys = new long[128];
+
+    /** 组在 orderedRows 中的起始位置（长度 groupCount + 1） */
+    private int[] groupStart = new int[129];
+
+    /** 放置行时各组的写入位置 */
+    private int[] groupCursor = new int[128];
+
+    /** 按组、组内由下游到上游排列的批次行号 */
+    private int[] orderedRows = new int[256];
+
+    /** 每行所属组（-1 表示不在索引中） */
+    private int[] rowGroups = new int[256];
+
+    /** 排序键：高 32 位为取反的位置，低 32 位为行号 */
+    private long[] sortKeys = new long[256];
+
+    /** 各组排队长度（米）与排队车辆数，computeQueues 之后有效 */
+    private double[] queueLengths = new double[128];
+    private int[] queueVehicles = new int[128];
+
+    @Getter
+    private int groupCount;
+
+    /** 索引中的车辆数 */
+    @Getter
+    private int indexedVehicles;
+
+    /** 有车道位置的车辆数 */
+    @Getter
+    private int positionedVehicles;
+
+    /** 排队车道数与排队长度统计（米） */
+    @Getter
+    private int queuedLanes;
+    @Getter
+    private double queueLengthMin;
+    @Getter
+    private double queueLengthMax;
+    @Getter
+    private double queueLengthSum;
+
+    /**
+     * 为当前批次建立索引（覆盖原有内容）
+     */
+    public void build(VehicleBatch batch) {
+        int size = batch.getSize();
+        int[] flags = batch.getFlags();
+        int[] roadIds = batch.getRoadIds();
+        int[] laneIds = batch.getLaneIds();
+        int[] cells = batch.getCells();
+        ensureRowCapacity(size);
+        laneToGroup.clear();
+        groupCount = 0;
+        indexedVehicles = 0;
+        positionedVehicles = 0;
+
+        // 分组并统计组大小（groupStart[g + 1] 暂存计数）
+        for (int row = 0; row < size; row++) {
+            int flag = flags[row];
+            if ((flag & VehicleBatch.HAS_ROAD) == 0 || (flag & VehicleBatch.HAS_LANE) == 0) {
+                rowGroups[row] = -1;
+                continue;
+            }
+            long key = laneKey(roadIds[row], laneIds[row]);
+            int group = laneToGroup.get(key);
+            if (group < 0) {
+                group = groupCount++;
+                ensureGroupCapacity(groupCount);
+                laneToGroup.put(key, group);
+                groupKeys[group] = key;
+                groupStart[group + 1] = 0;
+            }
+            groupStart[group + 1]++;
+            rowGroups[row] = group;
+            indexedVehicles++;
+        }
+        groupStart[0] = 0;
+        for (int group = 0; group < groupCount; group++) {
+            groupStart[group + 1] += groupStart[group];
+        }
+
+        // 按组放置排序键，再对每组排序
+        int[] cursor = groupCursor;
+        System.arraycopy(groupStart, 0, cursor, 0, groupCount);
+        for (int row = 0; row < size; row++) {
+            int group = rowGroups[row];
+            if (group < 0) {
+                continue;
+            }
+            int position = NO_POSITION;
+            if ((flags[row] & VehicleBatch.HAS_CELL) != 0) {
+                position = cells[row];
+                positionedVehicles++;
+            }
+            sortKeys[cursor[group]++] = ((long) ~position << 32) | row;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            int from = groupStart[group];
+            int to = groupStart[group + 1];
+            if (to - from > 1) {
+                Arrays.sort(sortKeys, from, to);
+            }
+            for (int i = from; i < to; i++) {
+                orderedRows[i] = (int) sortKeys[i];
+            }
+        }
+        Arrays.fill(queueLengths, 0, groupCount, 0.0);
+        Arrays.fill(queueVehicles, 0, groupCount, 0);
+        queuedLanes = 0;
+        queueLengthMin = 0.0;
+        queueLengthMax = 0.0;
+        queueLengthSum = 0.0;
+    }
+
+    public long groupKey(int group) {
+        return groupKeys[group];
+    }
+
+    public int groupSize(int group) {
+        return groupStart[group + 1] - groupStart[group];
+    }
+
+    /**
+     * 组内第 index 辆车的批次行号（0 为最下游）
+     */
+    public int row(int group, int index) {
+        return orderedRows[groupStart[group] + index];
+    }
+
+    /**
+     * 计算各车道排队：从最下游车辆起，向上游连续的停止车辆（相邻车辆位置差不超过 maxSpacing）构成排队，
+     * 排队长度为首尾车辆位置差加一个车长
+     *
+     * @param stopSpeed 停止速度阈值（m/s）
+     * @param cellLength 每个 cell 的长度（米）
+     * @param vehicleLength 车长（米）
+     * @param maxSpacing 排队中相邻车辆的最大间距（米）
+     */
+    public void computeQueues(VehicleBatch batch, double stopSpeed, double cellLength,
+                              double vehicleLength, double maxSpacing) {
+        int[] flags = batch.getFlags();
+        double[] speed = batch.getSpeed();
+        int[] cells = batch.getCells();
+        queuedLanes = 0;
+        queueLengthMin = Double.POSITIVE_INFINITY;
+        queueLengthMax = 0.0;
+        queueLengthSum = 0.0;
+
+        for (int group = 0; group < groupCount; group++) {
+            queueLengths[group] = 0.0;
+            queueVehicles[group] = 0;
+            int size = groupSize(group);
+            int head = row(group, 0);
+            if (!isStoppedWithPosition(flags[head], speed[head], stopSpeed)) {
+                continue;
+            }
+            int tail = head;
+            int count = 1;
+            for (int i = 1; i < size; i++) {
+                int next = row(group, i);
+                if (!isStoppedWithPosition(flags[next], speed[next], stopSpeed)
+                        || (cells[tail] - cells[next]) * cellLength > maxSpacing) {
+                    break;
+                }
+                tail = next;
+                count++;
+            }
+            double length = (cells[head] - cells[tail]) * cellLength + vehicleLength;
+            queueLengths[group] = length;
+            queueVehicles[group] = count;
+            queuedLanes++;
+            queueLengthMin = Math.min(queueLengthMin, length);
+            queueLengthMax = Math.max(queueLengthMax, length);
+            queueLengthSum += length;
+        }
+        if (queuedLanes == 0) {
+            queueLengthMin = 0.0;
+        }
+    }
+
+    /**
+     * 排队车道的平均排队长度（米）
+     */
+    public double getQueueLengthAverage() {
+        return queuedLanes > 0 ? queueLengthSum / queuedLanes : 0.0;
+    }
+
+    /**
+     * 排队详情：{"lanes": {"道路_车道": 米}, "roads": {道路ID: 该道路各车道最大排队（米）}}，只包含有排队的车道
+     */
+    public Map<String, Object> queueDetails() {
+        Map<String, Double> lanes = new LinkedHashMap<>();
+        Map<Integer, Double> roads = new HashMap<>();
+        for (int group = 0; group < groupCount; group++) {
+            double length = queueLengths[group];
+            if (length <= 0) {
+                continue;
+            }
+            long key = groupKeys[group];
+            int roadId = (int) (key >> 32);
+            lanes.put(roadId + "_" + (int) key, length);
+            roads.merge(roadId, length, Math::max);
+        }
+        Map<String, Object> details = new HashMap<>();
+        details.put("lanes", lanes);
+        details.put("roads", roads);
+        return details;
+    }
+
+    /**
+     * 各车道车辆数（与 FlowCalculator 的 laneFlow 结构一致）
+     */
+    public Map<String, Integer> laneFlow() {
+        Map<String, Integer> laneFlow = new HashMap<>();
+        for (int group = 0; group < groupCount; group++) {
+            long key = groupKeys[group];
+            laneFlow.put((int) (key >> 32) + "_" + (int) key, groupSize(group));
+        }
+        return laneFlow;
+    }
+
+    public static long laneKey(int roadId, int laneId) {
+        return ((long) roadId << 32) | (laneId & 0xFFFFFFFFL);
+    }
+
+    private static boolean isStoppedWithPosition(int flag, double speed, double stopSpeed) {
+        return (flag & VehicleBatch.HAS_CELL) != 0 && (flag & VehicleBatch.HAS_SPEED) != 0 && speed < stopSpeed;
+    }
+
+    private void ensureRowCapacity(int size) {
+        if (size > rowGroups.length) {
+            int capacity = Math.max(size, rowGroups.length << 1);
+            rowGroups = new int[capacity];
+            orderedRows = new int[capacity];
+            sortKeys = new long[capacity];
+        }
+    }
+
+    private void ensureGroupCapacity(int groups) {
+        if (groups >= groupKeys.length) {
+            int capacity = groupKeys.length << 1;
+            groupKeys = Arrays.copyOf(groupKeys, capacity);
+            groupStart = Arrays.copyOf(groupStart, capacity + 1);
+            groupCursor = new int[capacity];
+            queueLengths = Arrays.copyOf(queueLengths, capacity);
+            queueVehicles = Arrays.copyOf(queueVehicles, capacity);
+        }
+    }
+}
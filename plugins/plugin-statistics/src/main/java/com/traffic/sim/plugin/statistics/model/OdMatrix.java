@@ -0,0 +1,235 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.util.LongIntHashMap;
+import com.traffic.sim.plugin.statistics.util.RunningStat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 起讫点（OD）行程时间矩阵
+ * 按 VehicleIdTracker 的槽位记录在网车辆首次出现的步、第一条与最后一条道路；车辆离开路网时
+ * 以（起点道路, 终点道路）为键把行程时间计入稀疏矩阵的在线统计量（计数、均值、极值、分位数）。
+ * 内存只与在网车辆数和 OD 对数有关，与运行时长无关
+ *
+ * @author traffic-sim
+ */
+public class OdMatrix {
+
+    /** 尚未观测到道路 */
+    private static final int NO_ROAD = Integer.MIN_VALUE;
+
+    private final int maxPairs;
+    private final double relativeAccuracy;
+
+    /** OD 键（起点道路<<32|终点道路） -> OD 对下标 */
+    private final LongIntHashMap pairIndex = new LongIntHashMap(256, -1);
+
+    private int[] origins = new int[64];
+    private int[] destinations = new int[64];
+    private RunningStat[] travelTimes = new RunningStat[64];
+    private int pairCount;
+
+    /**
+     * 槽位是否有在途行程、首次出现的步、最后出现的步、起点与最后道路
+     * （行程状态由矩阵自己保存：结束时的收尾发生在会话上下文释放之后，且停用期间的槽位需按矩阵自己的口径重置）
+     */
+    private boolean[] active = new boolean[256];
+    /** 槽位的行程是否从中途开始观测（OD 分组启用时已在路网中），结束时不计入矩阵 */
+    private boolean[] partial = new boolean[256];
+    private long[] entrySteps = new long[256];
+    private long[] lastSteps = new long[256];
+    private int[] originRoads = new int[256];
+    private int[] lastRoads = new int[256];
+
+    /** 已完成的行程数、缺少道路的行程数、因 OD 对达到上限而丢弃的行程数 */
+    private long trips;
+    private long unknownTrips;
+    private long droppedTrips;
+
+    /** 仿真结束时仍在路网中、按最后出现位置结束的行程数 */
+    private long unfinishedTrips;
+
+    public OdMatrix(int maxPairs, double relativeAccuracy) {
+        this.maxPairs = maxPairs;
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * 应用当前步（须在 StepKernelState 装载当前步之后调用）：先结束本步离开车辆的行程，再登记/更新在网车辆
+     *
+     * @param step 当前仿真步
+     * @param stepSeconds 仿真步长（秒）
+     */
+    public synchronized void update(VehicleBatch batch, VehicleIdTracker tracker, long step, double stepSeconds) {
+        for (int i = 0; i < tracker.getExited(); i++) {
+            finishTrip(tracker.exitedSlot(i), stepSeconds);
+        }
+
+        int size = batch.getSize();
+        int[] flags = batch.getFlags();
+        int[] slots = batch.getSlots();
+        int[] roadIds = batch.getRoadIds();
+        for (int row = 0; row < size; row++) {
+            int slot = slots[row];
+            if (slot < 0) {
+                continue;
+            }
+            ensureSlotCapacity(slot + 1);
+            if (!active[slot]) {
+                active[slot] = true;
+                partial[slot] = false;
+                entrySteps[slot] = step;
+                originRoads[slot] = NO_ROAD;
+                lastRoads[slot] = NO_ROAD;
+            }
+            lastSteps[slot] = step;
+            if ((flags[row] & VehicleBatch.HAS_ROAD) != 0) {
+                if (originRoads[slot] == NO_ROAD) {
+                    originRoads[slot] = roadIds[row];
+                }
+                lastRoads[slot] = roadIds[row];
+            }
+        }
+    }
+
+    /**
+     * 从中途开始统计（OD 分组在运行中启用）：停用期间槽位已被复用，丢弃全部在途行程；
+     * 此前已在网车辆的行程起点未被观测，标记为不完整，离开时不计入矩阵。须在同一步的 update 之前调用
+     */
+    public synchronized void restart(VehicleBatch batch, VehicleIdTracker tracker) {
+        Arrays.fill(active, false);
+        Arrays.fill(partial, false);
+        int size = batch.getSize();
+        int[] slots = batch.getSlots();
+        for (int row = 0; row < size; row++) {
+            int slot = slots[row];
+            if (slot < 0) {
+                continue;
+            }
+            ensureSlotCapacity(slot + 1);
+            active[slot] = true;
+            partial[slot] = true;
+            originRoads[slot] = NO_ROAD;
+            lastRoads[slot] = NO_ROAD;
+        }
+        // 本步新进入的车辆起点可被完整观测，由随后的 update 按新行程登记
+        for (int i = 0; i < tracker.getEntered(); i++) {
+            int slot = tracker.enteredSlot(i);
+            active[slot] = false;
+            partial[slot] = false;
+        }
+    }
+
+    /**
+     * 仿真结束：仍在路网中的车辆以最后出现的道路为终点结束行程，之后释放槽位状态
+     *
+     * @param stepSeconds 仿真步长（秒）
+     */
+    public synchronized void finish(double stepSeconds) {
+        for (int slot = 0; slot < active.length; slot++) {
+            if (active[slot] && !partial[slot]) {
+                unfinishedTrips++;
+            }
+            finishTrip(slot, stepSeconds);
+        }
+        active = new boolean[0];
+        partial = new boolean[0];
+        entrySteps = new long[0];
+        lastSteps = new long[0];
+        originRoads = new int[0];
+        lastRoads = new int[0];
+    }
+
+    /**
+     * 矩阵快照：{trips, unknown_trips, dropped_trips, unfinished_trips, pairs,
+     * od: [{origin, destination, count, mean, std, min, max, p50, p95}]}
+     *
+     * @param minCount 只输出行程数不少于该值的 OD 对
+     */
+    public synchronized Map<String, Object> snapshot(long minCount) {
+        List<Map<String, Object>> od = new ArrayList<>();
+        for (int p = 0; p < pairCount; p++) {
+            if (travelTimes[p].count() < minCount) {
+                continue;
+            }
+            Map<String, Object> pair = new LinkedHashMap<>();
+            pair.put("origin", origins[p]);
+            pair.put("destination", destinations[p]);
+            pair.putAll(travelTimes[p].toMap());
+            od.add(pair);
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("trips", trips);
+        snapshot.put("unknown_trips", unknownTrips);
+        snapshot.put("dropped_trips", droppedTrips);
+        snapshot.put("unfinished_trips", unfinishedTrips);
+        snapshot.put("pairs", pairCount);
+        snapshot.put("od", od);
+        return snapshot;
+    }
+
+    /**
+     * 结束槽位的行程：行程时间为首次到最后出现所经历的仿真步数乘以步长
+     */
+    private void finishTrip(int slot, double stepSeconds) {
+        if (slot >= active.length || !active[slot]) {
+            return;
+        }
+        active[slot] = false;
+        if (partial[slot]) {
+            partial[slot] = false;
+            return;
+        }
+        trips++;
+        if (originRoads[slot] == NO_ROAD) {
+            unknownTrips++;
+            return;
+        }
+        int pair = pairOf(originRoads[slot], lastRoads[slot]);
+        if (pair < 0) {
+            droppedTrips++;
+            return;
+        }
+        travelTimes[pair].add((lastSteps[slot] - entrySteps[slot] + 1) * stepSeconds);
+    }
+
+    /**
+     * OD 对下标（首次出现时登记，达到上限时返回 -1）
+     */
+    private int pairOf(int origin, int destination) {
+        long key = ((long) origin << 32) | (destination & 0xffffffffL);
+        int pair = pairIndex.get(key);
+        if (pair >= 0 || pairCount >= maxPairs) {
+            return pair;
+        }
+        if (pairCount == origins.length) {
+            int capacity = pairCount << 1;
+            origins = Arrays.copyOf(origins, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+            travelTimes = Arrays.copyOf(travelTimes, capacity);
+        }
+        pair = pairCount++;
+        origins[pair] = origin;
+        destinations[pair] = destination;
+        travelTimes[pair] = new RunningStat(relativeAccuracy);
+        pairIndex.put(key, pair);
+        return pair;
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required <= active.length) {
+            return;
+        }
+        int capacity = Math.max(required, active.length << 1);
+        active = Arrays.copyOf(active, capacity);
+        partial = Arrays.copyOf(partial, capacity);
+        entrySteps = Arrays.copyOf(entrySteps, capacity);
+        lastSteps = Arrays.copyOf(lastSteps, capacity);
+        originRoads = Arrays.copyOf(originRoads, capacity);
+        lastRoads = Arrays.copyOf(lastRoads, capacity);
+    }
+}
@@ -0,0 +1,122 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.plugin.statistics.util.QuantileSketch;
+import com.traffic.sim.plugin.statistics.util.UnitConverter;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 会话分位数状态
+ * 保存速度、延误、排队时间的当前步草图与会话累计草图。当前步草图只由仿真消息线程使用；
+ * 累计草图的更新、查询与跨会话合并（{@link #mergeInto}）可能来自 REST 请求线程，相关方法同步
+ *
+ * @author traffic-sim
+ */
+@Getter
+public class PercentileState {
+
+    /** 输出的分位数 */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.95, 0.99};
+    private static final String[] QUANTILE_KEYS = {"p50", "p90", "p95", "p99"};
+
+    private static final double LOW_SPEED_THRESHOLD = 0.1; // m/s，低速视为排队
+
+    /** 当前步（m/s、秒） */
+    private final QuantileSketch stepSpeed = new QuantileSketch();
+    private final QuantileSketch stepDelay = new QuantileSketch();
+    private final QuantileSketch stepQueueTime = new QuantileSketch();
+
+    /** 会话累计 */
+    private final QuantileSketch speed = new QuantileSketch();
+    private final QuantileSketch delay = new QuantileSketch();
+    private final QuantileSketch queueTime = new QuantileSketch();
+
+    /**
+     * 开始新的仿真步，清空当前步草图
+     */
+    public void beginStep() {
+        stepSpeed.reset();
+        stepDelay.reset();
+        stepQueueTime.reset();
+    }
+
+    /**
+     * 记录当前步批次的分布并并入会话累计（样本口径与融合内核一致：速度、正延误、无速度或低速车辆的排队时间）
+     */
+    public void record(VehicleBatch batch) {
+        beginStep();
+        int[] flags = batch.getFlags();
+        double[] speed = batch.getSpeed();
+        double[] delay = batch.getDelay();
+        double[] queueTime = batch.getQueueTime();
+        for (int row = 0; row < batch.getSize(); row++) {
+            int flag = flags[row];
+            boolean hasSpeed = (flag & VehicleBatch.HAS_SPEED) != 0;
+            if (hasSpeed) {
+                stepSpeed.add(speed[row]);
+            }
+            if ((flag & VehicleBatch.HAS_DELAY) != 0 && delay[row] > 0) {
+                stepDelay.add(delay[row]);
+            }
+            if ((!hasSpeed || speed[row] < LOW_SPEED_THRESHOLD) && (flag & VehicleBatch.HAS_QUEUE_TIME) != 0) {
+                stepQueueTime.add(queueTime[row]);
+            }
+        }
+        accumulate(stepSpeed, stepDelay, stepQueueTime);
+    }
+
+    /**
+     * 把一个仿真步的草图并入会话累计
+     */
+    public synchronized void accumulate(QuantileSketch stepSpeed, QuantileSketch stepDelay, QuantileSketch stepQueueTime) {
+        speed.merge(stepSpeed);
+        delay.merge(stepDelay);
+        queueTime.merge(stepQueueTime);
+    }
+
+    /**
+     * 当前步分位数（{@link #record} 之后）
+     */
+    public Map<String, Object> stepSummary() {
+        return summarize(stepSpeed, stepDelay, stepQueueTime);
+    }
+
+    /**
+     * 当前会话累计分位数
+     */
+    public synchronized Map<String, Object> cumulativeSummary() {
+        return summarize(speed, delay, queueTime);
+    }
+
+    /**
+     * 把本会话的累计草图并入另一状态（批量对比时合并多个会话）
+     */
+    public synchronized void mergeInto(PercentileState target) {
+        target.accumulate(speed, delay, queueTime);
+    }
+
+    /**
+     * 分位数摘要：{"speed": {"p50", "p90", "p95", "p99"}, "delay": {...}, "queue_time": {...}}，
+     * 速度单位 km/h，延误与排队时间单位秒
+     */
+    public static Map<String, Object> summarize(QuantileSketch speed, QuantileSketch delay,
+                                                QuantileSketch queueTime) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("speed", quantiles(speed, true));
+        summary.put("delay", quantiles(delay, false));
+        summary.put("queue_time", quantiles(queueTime, false));
+        return summary;
+    }
+
+    private static Map<String, Object> quantiles(QuantileSketch sketch, boolean speed) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < QUANTILES.length; i++) {
+            double value = sketch.quantile(QUANTILES[i]);
+            values.put(QUANTILE_KEYS[i], speed ? UnitConverter.mpsToKmh(value) : value);
+        }
+        values.put("count", sketch.count());
+        return values;
+    }
+}
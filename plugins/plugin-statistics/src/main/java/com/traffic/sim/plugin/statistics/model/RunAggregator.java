@@ -0,0 +1,129 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.model.StatisticsData;
+import com.traffic.sim.plugin.statistics.util.RunningStat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 运行级在线聚合
+ * 每处理一个仿真步即把各步级指标并入对应的 {@link RunningStat}，内存与仿真步数无关；
+ * 摘要查询只读取聚合状态，不回放历史。更新与查询分别来自仿真消息线程与 REST 请求线程，方法同步
+ *
+ * @author traffic-sim
+ */
+public class RunAggregator {
+
+    /** 聚合的步级指标（键与前端字段名一致）；草图不支持负值，加速度不纳入 */
+    private static final Map<String, Function<StatisticsData, Number>> METRICS = new LinkedHashMap<>();
+
+    static {
+        METRICS.put("car_number", StatisticsData::getVehicleCount);
+        METRICS.put("speed_ave", StatisticsData::getAverageSpeed);
+        METRICS.put("jam_index", StatisticsData::getCongestionIndex);
+        METRICS.put("low_speed", StatisticsData::getLowSpeedCount);
+        METRICS.put("car_in", StatisticsData::getVehiclesIn);
+        METRICS.put("car_out", StatisticsData::getVehiclesOut);
+        METRICS.put("queue_length_ave", StatisticsData::getAverageQueueLength);
+        METRICS.put("queue_time_ave", StatisticsData::getAverageQueueTime);
+        METRICS.put("delay_ave", StatisticsData::getAverageDelay);
+        METRICS.put("stop_ave", StatisticsData::getAverageStopCount);
+        METRICS.put("flow_RD_ave", StatisticsData::getAverageRoadFlow);
+        METRICS.put("flow_LA_ave", StatisticsData::getAverageLaneFlow);
+    }
+
+    private final Map<String, RunningStat> stats = new LinkedHashMap<>();
+
+    private long steps;
+    private Long firstStep;
+    private Long lastStep;
+    private long startedAt;
+    private long updatedAt;
+    private Integer totalVehiclesIn;
+    private Integer totalVehiclesOut;
+
+    /** 最近一步的会话累计分位数（车辆级分布） */
+    private Map<String, Object> cumulativePercentiles;
+
+    public RunAggregator() {
+        METRICS.keySet().forEach(key -> stats.put(key, new RunningStat()));
+    }
+
+    /**
+     * 并入一个仿真步的统计数据
+     */
+    public synchronized void update(StatisticsData data) {
+        if (data == null) {
+            return;
+        }
+        for (Map.Entry<String, Function<StatisticsData, Number>> entry : METRICS.entrySet()) {
+            Number value = entry.getValue().apply(data);
+            if (value != null) {
+                stats.get(entry.getKey()).add(value.doubleValue());
+            }
+        }
+        steps++;
+        if (data.getStep() != null) {
+            if (firstStep == null) {
+                firstStep = data.getStep();
+            }
+            lastStep = data.getStep();
+        }
+        long timestamp = data.getTimestamp() != null ? data.getTimestamp() : System.currentTimeMillis();
+        if (startedAt == 0) {
+            startedAt = timestamp;
+        }
+        updatedAt = timestamp;
+        if (data.getTotalVehiclesIn() != null) {
+            totalVehiclesIn = data.getTotalVehiclesIn();
+        }
+        if (data.getTotalVehiclesOut() != null) {
+            totalVehiclesOut = data.getTotalVehiclesOut();
+        }
+        if (data.getCumulativePercentiles() != null) {
+            cumulativePercentiles = data.getCumulativePercentiles();
+        }
+    }
+
+    /**
+     * 会话累计进出车辆数（每步从统计缓冲区写入，未选择进出分组的步也计入）
+     */
+    public synchronized void updateTotals(int carsIn, int carsOut) {
+        totalVehiclesIn = carsIn;
+        totalVehiclesOut = carsOut;
+    }
+
+    public synchronized long getSteps() {
+        return steps;
+    }
+
+    /**
+     * 指标的聚合均值，无样本时为 null
+     */
+    public synchronized Double mean(String metric) {
+        RunningStat stat = stats.get(metric);
+        return stat != null && stat.count() > 0 ? stat.mean() : null;
+    }
+
+    /**
+     * 运行摘要：{"steps", "first_step", "last_step", "started_at", "updated_at", "cars_in", "cars_out",
+     * "metrics": {指标: {"count", "mean", "std", "min", "max", "p50", "p95"}}, "percentiles": 车辆级累计分位数}
+     */
+    public synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("steps", steps);
+        summary.put("first_step", firstStep);
+        summary.put("last_step", lastStep);
+        summary.put("started_at", startedAt);
+        summary.put("updated_at", updatedAt);
+        summary.put("cars_in", totalVehiclesIn);
+        summary.put("cars_out", totalVehiclesOut);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        stats.forEach((key, stat) -> metrics.put(key, stat.toMap()));
+        summary.put("metrics", metrics);
+        summary.put("percentiles", cumulativePercentiles);
+        return summary;
+    }
+}
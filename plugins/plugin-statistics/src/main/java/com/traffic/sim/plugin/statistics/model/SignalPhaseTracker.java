@@ -0,0 +1,387 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.util.IntIntHashMap;
+import com.traffic.sim.common.util.LongIntHashMap;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路口信号相位跟踪
+ * 路口按首次出现的顺序分配紧凑下标，相位时长、绿灯时间、放行车辆与周期统计保存在按下标索引的数组中，每步增量更新。
+ * 阶段（stage）指同时为绿灯的相位组合（相位ID 0~63 的位掩码）；周期从第一次绿灯阶段开始，
+ * 该阶段再次开始时完成一个周期。放行车辆为进入路口（cross_id 变为该路口）的车辆，绿灯利用率为绿灯期间放行车辆数 / 绿灯秒数
+ *
+ * @author traffic-sim
+ */
+public class SignalPhaseTracker {
+
+    private static final int STATE_RED = 0;
+    private static final int STATE_YELLOW = 1;
+    private static final int STATE_GREEN = 2;
+
+    /** 车辆不在路口 */
+    private static final int NO_CROSS = Integer.MIN_VALUE;
+
+    /** 路口ID -> 路口下标 */
+    private final IntIntHashMap crossIndex = new IntIntHashMap(64, -1);
+
+    private int[] crossIds = new int[16];
+    private int[] states = new int[16];
+
+    /** 当前阶段（绿灯相位位掩码）、已持续时间与上一阶段时长（秒） */
+    private long[] stageMasks = new long[16];
+    private double[] stageElapsed = new double[16];
+    private double[] lastStageSeconds = new double[16];
+    private int[] stageChanges = new int[16];
+
+    /** 各灯色累计时间（秒） */
+    private double[] greenSeconds = new double[16];
+    private double[] yellowSeconds = new double[16];
+    private double[] redSeconds = new double[16];
+
+    /** 进入路口的车辆数（全部/绿灯期间） */
+    private int[] discharged = new int[16];
+    private int[] greenDischarged = new int[16];
+
+    /** 周期起始阶段与当前周期的时长、绿灯时间、放行车辆 */
+    private boolean[] cycleStarted = new boolean[16];
+    private long[] cycleMasks = new long[16];
+    private double[] cycleElapsed = new double[16];
+    private double[] cycleGreen = new double[16];
+    private int[] cycleDischarged = new int[16];
+
+    /** 已完成周期数与累计值 */
+    private int[] cycles = new int[16];
+    private double[] cycleSecondsSum = new double[16];
+    private double[] cycleGreenSum = new double[16];
+    private int[] cycleDischargedSum = new int[16];
+    private double[] lastCycleSeconds = new double[16];
+
+    @Getter
+    private int crossCount;
+
+    /** 相位键（路口下标<<32|相位ID） -> 相位下标 */
+    private final LongIntHashMap phaseIndex = new LongIntHashMap(128, -1);
+
+    private int[] phaseCross = new int[64];
+    private int[] phaseIds = new int[64];
+    private double[] phaseGreenSeconds = new double[64];
+    private int[] phaseGreenCount = new int[64];
+    private int phaseCount;
+
+    /** 槽位上一步所在的路口ID（NO_CROSS 表示不在路口） */
+    private int[] slotCross = new int[256];
+
+    public SignalPhaseTracker() {
+        Arrays.fill(slotCross, NO_CROSS);
+    }
+
+    /**
+     * 应用当前步的信号与车辆（须在 StepKernelState 装载当前步之后调用）：
+     * 先更新各路口阶段，再按当前灯色累计时间，最后统计进入路口的车辆
+     *
+     * @param signals 当前步信号灯（未出现的路口保持上一步状态）
+     * @param stepSeconds 仿真步长（秒）
+     */
+    public void update(List<SimulationStepData.Signal> signals, VehicleBatch batch,
+                       VehicleIdTracker tracker, double stepSeconds) {
+        if (signals != null) {
+            for (SimulationStepData.Signal signal : signals) {
+                if (signal != null && signal.getCrossId() != null) {
+                    applySignal(indexOf(signal.getCrossId()), signal);
+                }
+            }
+        }
+        for (int c = 0; c < crossCount; c++) {
+            accrue(c, stepSeconds);
+        }
+        countDischarges(batch, tracker);
+    }
+
+    /**
+     * 各路口当前统计：{intersections, green_utilization, green_ratio, cycle_ave, crosses: {路口ID: {...}}}
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> crosses = new LinkedHashMap<>();
+        double totalGreen = 0.0, totalTime = 0.0, cycleSum = 0.0;
+        int totalGreenDischarged = 0, totalCycles = 0;
+        for (int c = 0; c < crossCount; c++) {
+            double observed = greenSeconds[c] + yellowSeconds[c] + redSeconds[c];
+            totalGreen += greenSeconds[c];
+            totalTime += observed;
+            totalGreenDischarged += greenDischarged[c];
+            totalCycles += cycles[c];
+            cycleSum += cycleSecondsSum[c];
+
+            Map<String, Object> cross = new LinkedHashMap<>();
+            cross.put("state", stateName(states[c]));
+            cross.put("stage", phasesOf(stageMasks[c]));
+            cross.put("stage_elapsed", stageElapsed[c]);
+            cross.put("stage_last", lastStageSeconds[c]);
+            cross.put("stage_changes", stageChanges[c]);
+            cross.put("green_time", greenSeconds[c]);
+            cross.put("yellow_time", yellowSeconds[c]);
+            cross.put("red_time", redSeconds[c]);
+            cross.put("green_ratio", ratio(greenSeconds[c], observed));
+            cross.put("discharged", discharged[c]);
+            cross.put("green_discharged", greenDischarged[c]);
+            cross.put("green_utilization", ratio(greenDischarged[c], greenSeconds[c]));
+            cross.put("cycles", cycles[c]);
+            cross.put("cycle_last", lastCycleSeconds[c]);
+            cross.put("cycle_ave", ratio(cycleSecondsSum[c], cycles[c]));
+            cross.put("cycle_green_ave", ratio(cycleGreenSum[c], cycles[c]));
+            cross.put("cycle_discharged_ave", ratio(cycleDischargedSum[c], cycles[c]));
+            cross.put("phases", new LinkedHashMap<String, Object>());
+            crosses.put(String.valueOf(crossIds[c]), cross);
+        }
+        for (int p = 0; p < phaseCount; p++) {
+            Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("green_time", phaseGreenSeconds[p]);
+            phase.put("greens", phaseGreenCount[p]);
+            phase.put("green_ave", ratio(phaseGreenSeconds[p], phaseGreenCount[p]));
+            phasesMap(crosses, phaseCross[p]).put(String.valueOf(phaseIds[p]), phase);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("intersections", crossCount);
+        snapshot.put("green_utilization", ratio(totalGreenDischarged, totalGreen));
+        snapshot.put("green_ratio", ratio(totalGreen, totalTime));
+        snapshot.put("cycle_ave", ratio(cycleSum, totalCycles));
+        snapshot.put("crosses", crosses);
+        return snapshot;
+    }
+
+    /**
+     * 更新路口灯色与阶段：阶段变化时结束上一阶段，新开始的绿灯相位计一次绿灯，起始阶段再次开始时完成一个周期
+     */
+    private void applySignal(int c, SimulationStepData.Signal signal) {
+        long mask = greenMask(signal);
+        int state = mask != 0 ? STATE_GREEN : parseState(signal.getState());
+        long previous = stageMasks[c];
+        if (mask == previous && state == states[c]) {
+            return;
+        }
+        if (stageElapsed[c] > 0) {
+            lastStageSeconds[c] = stageElapsed[c];
+        }
+        stageElapsed[c] = 0.0;
+        stageChanges[c]++;
+        states[c] = state;
+        stageMasks[c] = mask;
+
+        for (long started = mask & ~previous; started != 0; started &= started - 1) {
+            phaseGreenCount[phaseOf(c, Long.numberOfTrailingZeros(started))]++;
+        }
+        if (mask == 0 || mask == previous) {
+            return;
+        }
+        if (!cycleStarted[c]) {
+            cycleStarted[c] = true;
+            cycleMasks[c] = mask;
+        } else if (mask == cycleMasks[c]) {
+            cycles[c]++;
+            cycleSecondsSum[c] += cycleElapsed[c];
+            cycleGreenSum[c] += cycleGreen[c];
+            cycleDischargedSum[c] += cycleDischarged[c];
+            lastCycleSeconds[c] = cycleElapsed[c];
+            cycleElapsed[c] = 0.0;
+            cycleGreen[c] = 0.0;
+            cycleDischarged[c] = 0;
+        }
+    }
+
+    /**
+     * 按当前灯色累计一个仿真步的时间
+     */
+    private void accrue(int c, double stepSeconds) {
+        stageElapsed[c] += stepSeconds;
+        switch (states[c]) {
+            case STATE_GREEN -> greenSeconds[c] += stepSeconds;
+            case STATE_YELLOW -> yellowSeconds[c] += stepSeconds;
+            default -> redSeconds[c] += stepSeconds;
+        }
+        if (cycleStarted[c]) {
+            cycleElapsed[c] += stepSeconds;
+            if (states[c] == STATE_GREEN) {
+                cycleGreen[c] += stepSeconds;
+            }
+        }
+        for (long mask = stageMasks[c]; mask != 0; mask &= mask - 1) {
+            phaseGreenSeconds[phaseOf(c, Long.numberOfTrailingZeros(mask))] += stepSeconds;
+        }
+    }
+
+    /**
+     * 统计进入路口的车辆：槽位所在路口与上一步不同即视为进入（离开路网的槽位先清除，避免被复用的槽位继承状态）
+     */
+    private void countDischarges(VehicleBatch batch, VehicleIdTracker tracker) {
+        for (int i = 0; i < tracker.getExited(); i++) {
+            int slot = tracker.exitedSlot(i);
+            if (slot < slotCross.length) {
+                slotCross[slot] = NO_CROSS;
+            }
+        }
+        int size = batch.getSize();
+        int[] flags = batch.getFlags();
+        int[] slots = batch.getSlots();
+        int[] rowCrossIds = batch.getCrossIds();
+        for (int row = 0; row < size; row++) {
+            int slot = slots[row];
+            if (slot < 0) {
+                continue;
+            }
+            ensureSlotCapacity(slot + 1);
+            int cross = (flags[row] & VehicleBatch.HAS_CROSS) != 0 ? rowCrossIds[row] : NO_CROSS;
+            if (cross != NO_CROSS && cross != slotCross[slot]) {
+                int c = crossIndex.get(cross);
+                if (c >= 0) {
+                    discharged[c]++;
+                    if (cycleStarted[c]) {
+                        cycleDischarged[c]++;
+                    }
+                    if (states[c] == STATE_GREEN) {
+                        greenDischarged[c]++;
+                    }
+                }
+            }
+            slotCross[slot] = cross;
+        }
+    }
+
+    /**
+     * 信号的绿灯相位位掩码：有相位列表时取其中的绿灯相位，否则 state 为 GREEN 时取 phase（缺省为相位 0）
+     */
+    private static long greenMask(SimulationStepData.Signal signal) {
+        long mask = 0L;
+        List<Integer> greenPhases = signal.getGreenPhases();
+        if (greenPhases != null) {
+            for (Integer id : greenPhases) {
+                if (id != null && id >= 0 && id < Long.SIZE) {
+                    mask |= 1L << id;
+                }
+            }
+            return mask;
+        }
+        if (parseState(signal.getState()) == STATE_GREEN) {
+            Integer phase = signal.getPhase();
+            mask = phase != null && phase >= 0 && phase < Long.SIZE ? 1L << phase : 1L;
+        }
+        return mask;
+    }
+
+    private static int parseState(String state) {
+        if (state == null || state.isEmpty()) {
+            return STATE_RED;
+        }
+        return switch (Character.toUpperCase(state.charAt(0))) {
+            case 'G' -> STATE_GREEN;
+            case 'Y' -> STATE_YELLOW;
+            default -> STATE_RED;
+        };
+    }
+
+    private static String stateName(int state) {
+        return switch (state) {
+            case STATE_GREEN -> "GREEN";
+            case STATE_YELLOW -> "YELLOW";
+            default -> "RED";
+        };
+    }
+
+    private static List<Integer> phasesOf(long mask) {
+        List<Integer> phases = new ArrayList<>(Long.bitCount(mask));
+        for (; mask != 0; mask &= mask - 1) {
+            phases.add(Long.numberOfTrailingZeros(mask));
+        }
+        return phases;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> phasesMap(Map<String, Object> crosses, int c) {
+        Map<String, Object> cross = (Map<String, Object>) crosses.get(String.valueOf(crossIds[c]));
+        return (Map<String, Object>) cross.get("phases");
+    }
+
+    private static double ratio(double numerator, double denominator) {
+        return denominator > 0 ? numerator / denominator : 0.0;
+    }
+
+    /**
+     * 路口下标（首次出现时登记）
+     */
+    private int indexOf(int crossId) {
+        int c = crossIndex.get(crossId);
+        if (c >= 0) {
+            return c;
+        }
+        if (crossCount == crossIds.length) {
+            growCrosses(crossCount << 1);
+        }
+        c = crossCount++;
+        crossIds[c] = crossId;
+        crossIndex.put(crossId, c);
+        return c;
+    }
+
+    /**
+     * 相位下标（首次出现时登记）
+     */
+    private int phaseOf(int c, int phaseId) {
+        long key = ((long) c << 32) | phaseId;
+        int p = phaseIndex.get(key);
+        if (p >= 0) {
+            return p;
+        }
+        if (phaseCount == phaseIds.length) {
+            int capacity = phaseCount << 1;
+            phaseCross = Arrays.copyOf(phaseCross, capacity);
+            phaseIds = Arrays.copyOf(phaseIds, capacity);
+            phaseGreenSeconds = Arrays.copyOf(phaseGreenSeconds, capacity);
+            phaseGreenCount = Arrays.copyOf(phaseGreenCount, capacity);
+        }
+        p = phaseCount++;
+        phaseCross[p] = c;
+        phaseIds[p] = phaseId;
+        phaseIndex.put(key, p);
+        return p;
+    }
+
+    private void growCrosses(int capacity) {
+        crossIds = Arrays.copyOf(crossIds, capacity);
+        states = Arrays.copyOf(states, capacity);
+        stageMasks = Arrays.copyOf(stageMasks, capacity);
+        stageElapsed = Arrays.copyOf(stageElapsed, capacity);
+        lastStageSeconds = Arrays.copyOf(lastStageSeconds, capacity);
+        stageChanges = Arrays.copyOf(stageChanges, capacity);
+        greenSeconds = Arrays.copyOf(greenSeconds, capacity);
+        yellowSeconds = Arrays.copyOf(yellowSeconds, capacity);
+        redSeconds = Arrays.copyOf(redSeconds, capacity);
+        discharged = Arrays.copyOf(discharged, capacity);
+        greenDischarged = Arrays.copyOf(greenDischarged, capacity);
+        cycleStarted = Arrays.copyOf(cycleStarted, capacity);
+        cycleMasks = Arrays.copyOf(cycleMasks, capacity);
+        cycleElapsed = Arrays.copyOf(cycleElapsed, capacity);
+        cycleGreen = Arrays.copyOf(cycleGreen, capacity);
+        cycleDischarged = Arrays.copyOf(cycleDischarged, capacity);
+        cycles = Arrays.copyOf(cycles, capacity);
+        cycleSecondsSum = Arrays.copyOf(cycleSecondsSum, capacity);
+        cycleGreenSum = Arrays.copyOf(cycleGreenSum, capacity);
+        cycleDischargedSum = Arrays.copyOf(cycleDischargedSum, capacity);
+        lastCycleSeconds = Arrays.copyOf(lastCycleSeconds, capacity);
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required <= slotCross.length) {
+            return;
+        }
+        int capacity = Math.max(required, slotCross.length << 1);
+        int previous = slotCross.length;
+        slotCross = Arrays.copyOf(slotCross, capacity);
+        Arrays.fill(slotCross, previous, capacity, NO_CROSS);
+    }
+}
@@ -64,6 +64,7 @@ public class SimulationStepData {
         private String state;       // RED, YELLOW, GREEN
         private Integer phase;
         private Long cycleTime;
+        private List<Integer> greenPhases; // 绿灯相位ID（引擎 controller_run 的 phases 中 color 为 G 的相位）
         private Map<String, Object> attributes;
     }
 }
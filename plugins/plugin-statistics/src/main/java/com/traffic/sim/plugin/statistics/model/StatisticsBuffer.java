@@ -1,112 +1,173 @@
 package com.traffic.sim.plugin.statistics.model;
 
-import lombok.Data;
+import lombok.Getter;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 统计缓冲区
  * 用于累计计算和滑动窗口统计
- * 
+ * 进入/离开流量各用一个环形数组保存最近的历史（容量为最大窗口），
+ * 每个窗口维护一个滚动和，新增一步时加上新值、减去滑出该窗口的值，求平均为 O(1)
+ *
  * @author traffic-sim
  */
-@Data
 public class StatisticsBuffer {
-    
+
+    /** 默认窗口（仿真步） */
+    public static final int[] DEFAULT_WINDOWS = {60, 300, 900};
+
     /**
-     * 进入流量历史
+     * 窗口大小（升序）
      */
-    private List<Integer> inFlowHistory = new ArrayList<>();
-    
+    @Getter
+    private final int[] windows;
+
     /**
-     * 离开流量历史
+     * 进入/离开流量历史（环形）
      */
-    private List<Integer> outFlowHistory = new ArrayList<>();
-    
+    private final int[] inFlowHistory;
+    private final int[] outFlowHistory;
+
+    /**
+     * 各窗口的滚动和
+     */
+    private final long[] inWindowSums;
+    private final long[] outWindowSums;
+
+    /** 下一个写入位置 */
+    private int head;
+
+    /** 已记录的步数 */
+    @Getter
+    private long steps;
+
     /**
      * 累积进入车辆总数
      */
     private int totalInFlow = 0;
-    
+
     /**
      * 累积离开车辆总数
      */
     private int totalOutFlow = 0;
-    
-    /**
-     * 窗口大小（默认100步）
-     */
-    private int windowSize = 100;
-    
+
+    public StatisticsBuffer() {
+        this(DEFAULT_WINDOWS);
+    }
+
     /**
-     * 添加进入流量
+     * @param windows 窗口大小（仿真步），非正数被忽略
      */
-    public void addInFlow(int flow) {
-        inFlowHistory.add(flow);
-        totalInFlow += flow;  // 累加总数
-        if (inFlowHistory.size() > windowSize) {
-            inFlowHistory.remove(0);
-        }
+    public StatisticsBuffer(int[] windows) {
+        int[] valid = Arrays.stream(windows).filter(w -> w > 0).distinct().sorted().toArray();
+        this.windows = valid.length > 0 ? valid : DEFAULT_WINDOWS.clone();
+        int capacity = this.windows[this.windows.length - 1];
+        this.inFlowHistory = new int[capacity];
+        this.outFlowHistory = new int[capacity];
+        this.inWindowSums = new long[this.windows.length];
+        this.outWindowSums = new long[this.windows.length];
     }
-    
+
     /**
-     * 添加离开流量
+     * 记录一个仿真步的进入/离开流量
      */
-    public void addOutFlow(int flow) {
-        outFlowHistory.add(flow);
-        totalOutFlow += flow;  // 累加总数
-        if (outFlowHistory.size() > windowSize) {
-            outFlowHistory.remove(0);
-        }
+    public void record(int inFlow, int outFlow) {
+        totalInFlow += inFlow;  // 累加总数
+        totalOutFlow += outFlow;
+        push(inFlowHistory, inWindowSums, inFlow);
+        push(outFlowHistory, outWindowSums, outFlow);
+        head = (head + 1) % inFlowHistory.length;
+        steps++;
     }
-    
+
     /**
      * 获取累积进入车辆总数
      */
     public int getTotalInFlow() {
         return totalInFlow;
     }
-    
+
     /**
      * 获取累积离开车辆总数
      */
     public int getTotalOutFlow() {
         return totalOutFlow;
     }
-    
+
     /**
-     * 获取平均进入流量
+     * 获取平均进入流量（最小窗口）
      */
     public double getAverageInFlow() {
-        if (inFlowHistory.isEmpty()) {
-            return 0.0;
-        }
-        return inFlowHistory.stream()
-            .mapToInt(Integer::intValue)
-            .average()
-            .orElse(0.0);
+        return getAverageInFlow(0);
     }
-    
+
     /**
-     * 获取平均离开流量
+     * 获取平均离开流量（最小窗口）
      */
     public double getAverageOutFlow() {
-        if (outFlowHistory.isEmpty()) {
-            return 0.0;
+        return getAverageOutFlow(0);
+    }
+
+    /**
+     * 获取指定窗口的平均进入流量（车辆/步）
+     *
+     * @param windowIndex windows 中的下标
+     */
+    public double getAverageInFlow(int windowIndex) {
+        long filled = Math.min(steps, windows[windowIndex]);
+        return filled > 0 ? (double) inWindowSums[windowIndex] / filled : 0.0;
+    }
+
+    /**
+     * 获取指定窗口的平均离开流量（车辆/步）
+     *
+     * @param windowIndex windows 中的下标
+     */
+    public double getAverageOutFlow(int windowIndex) {
+        long filled = Math.min(steps, windows[windowIndex]);
+        return filled > 0 ? (double) outWindowSums[windowIndex] / filled : 0.0;
+    }
+
+    /**
+     * 各窗口的滚动流量：{"60": {"in": 平均进入, "out": 平均离开}, ...}
+     */
+    public Map<String, Object> getRollingFlow() {
+        Map<String, Object> rolling = new LinkedHashMap<>();
+        for (int i = 0; i < windows.length; i++) {
+            Map<String, Object> window = new LinkedHashMap<>();
+            window.put("in", getAverageInFlow(i));
+            window.put("out", getAverageOutFlow(i));
+            rolling.put(String.valueOf(windows[i]), window);
         }
-        return outFlowHistory.stream()
-            .mapToInt(Integer::intValue)
-            .average()
-            .orElse(0.0);
+        return rolling;
     }
-    
+
     /**
      * 清空缓冲区
      */
     public void clear() {
-        inFlowHistory.clear();
-        outFlowHistory.clear();
+        Arrays.fill(inFlowHistory, 0);
+        Arrays.fill(outFlowHistory, 0);
+        Arrays.fill(inWindowSums, 0);
+        Arrays.fill(outWindowSums, 0);
+        head = 0;
+        steps = 0;
     }
-}
 
+    /**
+     * 写入当前步的值（位置 head），并从各窗口的滚动和中减去滑出窗口的值
+     */
+    private void push(int[] history, long[] windowSums, int flow) {
+        int capacity = history.length;
+        for (int i = 0; i < windows.length; i++) {
+            if (steps >= windows[i]) {
+                windowSums[i] -= history[(head - windows[i] + capacity) % capacity];
+            }
+            windowSums[i] += flow;
+        }
+        history[head] = flow;
+    }
+}
@@ -1,5 +1,6 @@
 package com.traffic.sim.plugin.statistics.model;
 
+import com.traffic.sim.plugin.statistics.calculator.CalculatorPlan;
 import lombok.Data;
 
 import java.util.Map;
@@ -18,6 +19,11 @@ public class StatisticsContext {
      */
     private String sessionId;
     
+    /**
+     * 会话所属用户ID（创建上下文时从会话信息读取，查询接口据此校验归属，未知时为 null）
+     */
+    private String ownerId;
+    
     /**
      * 道路容量
      */
@@ -28,6 +34,57 @@ public class StatisticsContext {
      */
     private StatisticsBuffer buffer;
     
+    /**
+     * 上一步仿真数据（供需要增量计算的计算器使用）
+     */
+    private SimulationStepData previousStep;
+    
+    /**
+     * 最后一次访问时间（毫秒），用于空闲清理
+     */
+    private volatile long lastAccessTime;
+    
+    /**
+     * 融合统计内核状态（当前步/上一步车辆批次）
+     */
+    private StepKernelState kernelState;
+    
+    /**
+     * 速度、延误、排队时间分位数草图（当前步与会话累计）
+     */
+    private PercentileState percentiles;
+    
+    /**
+     * 运行级在线聚合（各步级指标的均值、方差、极值与分位数）
+     */
+    private RunAggregator runAggregator;
+    
+    /**
+     * 车辆密度网格（热力图，未启用时为 null）
+     */
+    private DensityGrid densityGrid;
+    
+    /**
+     * 路口信号相位跟踪（相位时长、绿灯放行车辆与周期）
+     */
+    private SignalPhaseTracker signalPhases;
+    
+    /**
+     * OD 行程时间矩阵（未启用时为 null）
+     */
+    private OdMatrix odMatrix;
+    
+    /**
+     * 上一步是否更新了密度网格、OD 矩阵（分组在运行中启用时据此重置按槽位保存的状态）
+     */
+    private boolean heatmapApplied;
+    private boolean odApplied;
+    
+    /**
+     * 会话的计算器执行计划（按选择的指标分组编译，未选择时为 null，使用默认计划）
+     */
+    private volatile CalculatorPlan plan;
+    
     /**
      * 地图信息
      */
@@ -41,6 +98,11 @@ public class StatisticsContext {
     public StatisticsContext(String sessionId) {
         this.sessionId = sessionId;
         this.buffer = new StatisticsBuffer();
+        this.kernelState = new StepKernelState();
+        this.percentiles = new PercentileState();
+        this.runAggregator = new RunAggregator();
+        this.signalPhases = new SignalPhaseTracker();
+        this.lastAccessTime = System.currentTimeMillis();
     }
 }
 
@@ -0,0 +1,255 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.util.LongIntHashMap;
+import com.traffic.sim.plugin.statistics.util.CompensatedSum;
+import com.traffic.sim.plugin.statistics.util.QuantileSketch;
+import lombok.Getter;
+
+/**
+ * 单步统计累加器
+ * 融合统计内核对车辆批次的一段行做累加；大批次按固定块大小切分后各块独立累加，
+ * 再按块顺序合并，合并结果与线程数无关
+ *
+ * @author traffic-sim
+ */
+@Getter
+public class StepAccumulator {
+
+    private static final double LOW_SPEED_THRESHOLD = 0.1; // m/s，低速/排队
+    private static final double STOP_SPEED_THRESHOLD = 0.01; // m/s，停车
+
+    /** 按道路、路口计数（车道计数由 LaneIndex 提供） */
+    private final LongIntHashMap roadCounts = new LongIntHashMap(64, 0);
+    private final LongIntHashMap crossCounts = new LongIntHashMap(16, 0);
+
+    /** 与原 Stream 统计一致的补偿求和 */
+    private final CompensatedSum queueTimeSum = new CompensatedSum();
+    private final CompensatedSum delaySum = new CompensatedSum();
+
+    /** 速度（m/s）、延误、排队时间分布 */
+    private final QuantileSketch speedSketch = new QuantileSketch();
+    private final QuantileSketch delaySketch = new QuantileSketch();
+    private final QuantileSketch queueTimeSketch = new QuantileSketch();
+
+    private double speedSum;
+    private double speedMin;
+    private double speedMax;
+    private int lowSpeedCount;
+
+    private double accSum;
+    private double accMin;
+    private double accMax;
+    private int accCount;
+
+    private double jamSpeedSum;
+    private int jamSpeedCount;
+
+    private int roadVehicles;
+    private int crossVehicles;
+
+    private int queueCount;
+    private double queueTimeMin;
+    private double queueTimeMax;
+
+    private int stopVehicles;
+    private long stopSum;
+    private int stopMin;
+    private int stopMax;
+
+    private double delayMin;
+    private double delayMax;
+
+    public StepAccumulator() {
+        reset();
+    }
+
+    /**
+     * 清空累加状态（初始值与原各计算器一致）
+     */
+    public void reset() {
+        roadCounts.clear();
+        crossCounts.clear();
+        queueTimeSum.reset();
+        delaySum.reset();
+        speedSketch.reset();
+        delaySketch.reset();
+        queueTimeSketch.reset();
+        speedSum = 0.0;
+        speedMin = Double.MAX_VALUE;
+        speedMax = Double.MIN_VALUE;
+        lowSpeedCount = 0;
+        accSum = 0.0;
+        accMin = Double.MAX_VALUE;
+        accMax = Double.MIN_VALUE;
+        accCount = 0;
+        jamSpeedSum = 0.0;
+        jamSpeedCount = 0;
+        roadVehicles = 0;
+        crossVehicles = 0;
+        queueCount = 0;
+        queueTimeMin = Double.POSITIVE_INFINITY;
+        queueTimeMax = Double.NEGATIVE_INFINITY;
+        stopVehicles = 0;
+        stopSum = 0;
+        stopMin = Integer.MAX_VALUE;
+        stopMax = Integer.MIN_VALUE;
+        delayMin = Double.POSITIVE_INFINITY;
+        delayMax = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * 累加批次中 [from, to) 的行
+     */
+    public void accumulate(VehicleBatch batch, int from, int to) {
+        int[] flags = batch.getFlags();
+        double[] speed = batch.getSpeed();
+        double[] acceleration = batch.getAcceleration();
+        int[] roadIds = batch.getRoadIds();
+        int[] crossIds = batch.getCrossIds();
+        double[] delay = batch.getDelay();
+        double[] queueTime = batch.getQueueTime();
+        int[] stopCount = batch.getStopCount();
+
+        for (int row = from; row < to; row++) {
+            int flag = flags[row];
+
+            boolean hasSpeed = (flag & VehicleBatch.HAS_SPEED) != 0;
+            double v = speed[row];
+            if (hasSpeed) {
+                speedSum += v;
+                speedMin = Math.min(speedMin, v);
+                speedMax = Math.max(speedMax, v);
+                speedSketch.add(v);
+                if (v < LOW_SPEED_THRESHOLD) {
+                    lowSpeedCount++;
+                }
+                if (v >= 0) {
+                    jamSpeedSum += v;
+                    jamSpeedCount++;
+                }
+            }
+
+            if ((flag & VehicleBatch.HAS_ACCELERATION) != 0) {
+                double acc = acceleration[row];
+                accSum += acc;
+                accMin = Math.min(accMin, acc);
+                accMax = Math.max(accMax, acc);
+                accCount++;
+            }
+
+            // 流量
+            if ((flag & VehicleBatch.HAS_ROAD) != 0) {
+                roadCounts.addTo(roadIds[row], 1);
+                roadVehicles++;
+            }
+            if ((flag & VehicleBatch.HAS_CROSS) != 0) {
+                crossCounts.addTo(crossIds[row], 1);
+                crossVehicles++;
+            }
+
+            // 排队：无速度或低速
+            if (!hasSpeed || v < LOW_SPEED_THRESHOLD) {
+                queueCount++;
+                if ((flag & VehicleBatch.HAS_QUEUE_TIME) != 0) {
+                    double time = queueTime[row];
+                    queueTimeSum.add(time);
+                    queueTimeSketch.add(time);
+                    queueTimeMin = Math.min(queueTimeMin, time);
+                    queueTimeMax = Math.max(queueTimeMax, time);
+                }
+            }
+
+            // 停车
+            if (hasSpeed && v < STOP_SPEED_THRESHOLD) {
+                int stops = (flag & VehicleBatch.HAS_STOP_COUNT) != 0 ? stopCount[row] : 1;
+                stopVehicles++;
+                stopSum += stops;
+                stopMin = Math.min(stopMin, stops);
+                stopMax = Math.max(stopMax, stops);
+            }
+
+            // 延误
+            if ((flag & VehicleBatch.HAS_DELAY) != 0 && delay[row] > 0) {
+                double value = delay[row];
+                delaySum.add(value);
+                delaySketch.add(value);
+                delayMin = Math.min(delayMin, value);
+                delayMax = Math.max(delayMax, value);
+            }
+        }
+    }
+
+    /**
+     * 按行顺序重新计算速度、拥堵速度、加速度的普通求和与排队时间、延误的补偿求和：
+     * 分块求和再合并的舍入与逐行累加不同，并行合并后调用，使均值与逐个计算器的顺序求和逐位一致
+     */
+    public void sumInOrder(VehicleBatch batch, int from, int to) {
+        int[] flags = batch.getFlags();
+        double[] speed = batch.getSpeed();
+        double[] acceleration = batch.getAcceleration();
+        double[] delay = batch.getDelay();
+        double[] queueTime = batch.getQueueTime();
+        double speedTotal = 0.0;
+        double jamSpeedTotal = 0.0;
+        double accTotal = 0.0;
+        queueTimeSum.reset();
+        delaySum.reset();
+        for (int row = from; row < to; row++) {
+            int flag = flags[row];
+            boolean hasSpeed = (flag & VehicleBatch.HAS_SPEED) != 0;
+            double v = speed[row];
+            if (hasSpeed) {
+                speedTotal += v;
+                if (v >= 0) {
+                    jamSpeedTotal += v;
+                }
+            }
+            if ((flag & VehicleBatch.HAS_ACCELERATION) != 0) {
+                accTotal += acceleration[row];
+            }
+            if ((!hasSpeed || v < LOW_SPEED_THRESHOLD) && (flag & VehicleBatch.HAS_QUEUE_TIME) != 0) {
+                queueTimeSum.add(queueTime[row]);
+            }
+            if ((flag & VehicleBatch.HAS_DELAY) != 0 && delay[row] > 0) {
+                delaySum.add(delay[row]);
+            }
+        }
+        speedSum = speedTotal;
+        jamSpeedSum = jamSpeedTotal;
+        accSum = accTotal;
+    }
+
+    /**
+     * 合并另一块的累加结果（调用方按块顺序合并）
+     */
+    public void merge(StepAccumulator other) {
+        other.roadCounts.forEach(roadCounts::addTo);
+        other.crossCounts.forEach(crossCounts::addTo);
+        queueTimeSum.merge(other.queueTimeSum);
+        delaySum.merge(other.delaySum);
+        speedSketch.merge(other.speedSketch);
+        delaySketch.merge(other.delaySketch);
+        queueTimeSketch.merge(other.queueTimeSketch);
+        speedSum += other.speedSum;
+        speedMin = Math.min(speedMin, other.speedMin);
+        speedMax = Math.max(speedMax, other.speedMax);
+        lowSpeedCount += other.lowSpeedCount;
+        accSum += other.accSum;
+        accMin = Math.min(accMin, other.accMin);
+        accMax = Math.max(accMax, other.accMax);
+        accCount += other.accCount;
+        jamSpeedSum += other.jamSpeedSum;
+        jamSpeedCount += other.jamSpeedCount;
+        roadVehicles += other.roadVehicles;
+        crossVehicles += other.crossVehicles;
+        queueCount += other.queueCount;
+        queueTimeMin = Math.min(queueTimeMin, other.queueTimeMin);
+        queueTimeMax = Math.max(queueTimeMax, other.queueTimeMax);
+        stopVehicles += other.stopVehicles;
+        stopSum += other.stopSum;
+        stopMin = Math.min(stopMin, other.stopMin);
+        stopMax = Math.max(stopMax, other.stopMax);
+        delayMin = Math.min(delayMin, other.delayMin);
+        delayMax = Math.max(delayMax, other.delayMax);
+    }
+}
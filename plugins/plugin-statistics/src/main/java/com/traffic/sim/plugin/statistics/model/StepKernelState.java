@@ -0,0 +1,105 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.model.StepFrame;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 融合统计内核的会话状态
+ * 车辆批次、车道索引、ID跟踪器、轨迹状态与累加器跨步复用，稳定运行后每步不再分配内存
+ *
+ * @author traffic-sim
+ */
+@Getter
+public class StepKernelState {
+
+    private final VehicleBatch batch = new VehicleBatch();
+
+    /** 车辆ID -> 紧凑槽位，用于进出统计与按车辆保存的状态 */
+    private final VehicleIdTracker idTracker = new VehicleIdTracker();
+
+    /** 按槽位保存的车辆轨迹状态（停车次数、低速时间、延误） */
+    private final TrajectoryStore trajectories = new TrajectoryStore();
+
+    /** 当前步的车道空间索引（流量与排队统计共用） */
+    private final LaneIndex laneIndex = new LaneIndex();
+
+    /** 当前步的累加结果（并行时为各块按顺序合并后的结果） */
+    private final StepAccumulator accumulator = new StepAccumulator();
+
+    /** 并行累加时各块（第 1 块起）的累加器 */
+    private final List<StepAccumulator> partials = new ArrayList<>();
+
+    /** 已装载的仿真步数（单调递增，用于同一步内去重） */
+    private long loadedSteps;
+
+    /**
+     * 装载当前步车辆：建立列式批次、跟踪车辆进出并更新轨迹状态、建立车道索引
+     * （每步一次，内核与各计算器共用）。引擎未提供的延误、排队时间、停车次数由轨迹状态补齐
+     *
+     * @param stepData 当前仿真步
+     * @param stepSeconds 仿真步长（秒）
+     * @param freeFlowSpeed 自由流速度（m/s）
+     */
+    public void load(SimulationStepData stepData, double stepSeconds, double freeFlowSpeed) {
+        long tick = ++loadedSteps;
+        batch.load(stepData.getVehicles());
+        trackVehicles(tick, stepSeconds, freeFlowSpeed);
+        laneIndex.build(batch);
+    }
+
+    /**
+     * 直接从列式数据帧装载当前步（不经过 Map 与解析器），其余处理与按仿真步数据装载相同
+     */
+    public void load(StepFrame frame, double stepSeconds, double freeFlowSpeed) {
+        long tick = ++loadedSteps;
+        batch.load(frame);
+        trackVehicles(tick, stepSeconds, freeFlowSpeed);
+        laneIndex.build(batch);
+    }
+
+    /**
+     * 获取第 index 块的累加器（第 0 块使用 accumulator），不足时创建
+     */
+    public StepAccumulator partial(int index) {
+        if (index == 0) {
+            return accumulator;
+        }
+        while (partials.size() < index) {
+            partials.add(new StepAccumulator());
+        }
+        return partials.get(index - 1);
+    }
+
+    /**
+     * 进入车辆：当前步出现而上一步没有（跟踪器按ID去重）；离开车辆：上一步在网而当前步没有出现
+     */
+    private void trackVehicles(long tick, double stepSeconds, double freeFlowSpeed) {
+        int size = batch.getSize();
+        int[] flags = batch.getFlags();
+        int[] ids = batch.getIds();
+        double[] speed = batch.getSpeed();
+        int[] slots = batch.getSlots();
+
+        idTracker.beginStep();
+        for (int row = 0; row < size; row++) {
+            if ((flags[row] & VehicleBatch.HAS_ID) == 0) {
+                slots[row] = -1;
+                continue;
+            }
+            int entered = idTracker.getEntered();
+            int slot = idTracker.observe(ids[row]);
+            if (idTracker.getEntered() != entered) {
+                trajectories.enter(slot);
+            }
+            slots[row] = slot;
+            double v = (flags[row] & VehicleBatch.HAS_SPEED) != 0 ? speed[row] : Double.NaN;
+            trajectories.update(slot, tick, v, stepSeconds, freeFlowSpeed);
+            batch.fillMissing(row, trajectories.getFreeFlowDeficit(slot),
+                    trajectories.getLowSpeedTime(slot), trajectories.getStopCount(slot));
+        }
+        idTracker.endStep();
+    }
+}
@@ -0,0 +1,102 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 车辆轨迹状态
+ * 按 VehicleIdTracker 的槽位保存每辆在网车辆的累计状态（停车次数、低速时间、相对自由流速度的时间损失），
+ * 每辆车每步 O(1) 更新；槽位被回收后由下一辆进入的车辆重新初始化
+ *
+ * @author traffic-sim
+ */
+public class TrajectoryStore {
+
+    private static final double STOP_SPEED_THRESHOLD = 0.01; // m/s，停车（与 StopCalculator 一致）
+    private static final double LOW_SPEED_THRESHOLD = 0.1; // m/s，低速/排队（与 QueueCalculator 一致）
+
+    /** 停车次数（由行驶转为停车的次数） */
+    private int[] stopCounts = new int[256];
+
+    /** 低速（排队）累计时间（秒） */
+    private double[] lowSpeedTimes = new double[256];
+
+    /** 相对自由流速度的累计时间损失（秒），即延误 */
+    private double[] freeFlowDeficits = new double[256];
+
+    /** 最后更新的装载序号（同一步重复出现的车辆只更新一次） */
+    private long[] updatedSteps = new long[256];
+
+    /** 上一步是否处于停车状态 */
+    private boolean[] stopped = new boolean[256];
+
+    @Getter
+    private int capacity = 256;
+
+    /**
+     * 车辆进入：初始化槽位
+     */
+    public void enter(int slot) {
+        ensureCapacity(slot + 1);
+        stopCounts[slot] = 0;
+        lowSpeedTimes[slot] = 0.0;
+        freeFlowDeficits[slot] = 0.0;
+        updatedSteps[slot] = Long.MIN_VALUE;
+        stopped[slot] = false;
+    }
+
+    /**
+     * 按当前速度累计一个仿真步的状态
+     *
+     * @param tick 装载序号（每步递增）
+     * @param speed 当前速度（m/s），NaN 表示本步无速度
+     * @param stepSeconds 仿真步长（秒）
+     * @param freeFlowSpeed 自由流速度（m/s）
+     */
+    public void update(int slot, long tick, double speed, double stepSeconds, double freeFlowSpeed) {
+        if (updatedSteps[slot] == tick) {
+            return;
+        }
+        updatedSteps[slot] = tick;
+        if (Double.isNaN(speed)) {
+            return;
+        }
+        boolean isStopped = speed < STOP_SPEED_THRESHOLD;
+        if (isStopped && !stopped[slot]) {
+            stopCounts[slot]++;
+        }
+        stopped[slot] = isStopped;
+        if (speed < LOW_SPEED_THRESHOLD) {
+            lowSpeedTimes[slot] += stepSeconds;
+        }
+        if (speed < freeFlowSpeed) {
+            freeFlowDeficits[slot] += stepSeconds * (1.0 - Math.max(0.0, speed) / freeFlowSpeed);
+        }
+    }
+
+    public int getStopCount(int slot) {
+        return stopCounts[slot];
+    }
+
+    public double getLowSpeedTime(int slot) {
+        return lowSpeedTimes[slot];
+    }
+
+    public double getFreeFlowDeficit(int slot) {
+        return freeFlowDeficits[slot];
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(required, capacity << 1);
+        stopCounts = Arrays.copyOf(stopCounts, newCapacity);
+        lowSpeedTimes = Arrays.copyOf(lowSpeedTimes, newCapacity);
+        freeFlowDeficits = Arrays.copyOf(freeFlowDeficits, newCapacity);
+        updatedSteps = Arrays.copyOf(updatedSteps, newCapacity);
+        stopped = Arrays.copyOf(stopped, newCapacity);
+        capacity = newCapacity;
+    }
+}
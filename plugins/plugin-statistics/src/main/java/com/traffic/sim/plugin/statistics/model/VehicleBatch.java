@@ -0,0 +1,263 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.model.StepFrame;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 车辆批次（列式）
+ * 一个仿真步的车辆数据按列存放在基本类型数组中，供融合统计内核单次扫描；
+ * 数组跨仿真步复用，每个会话一个批次
+ *
+ * @author traffic-sim
+ */
+public class VehicleBatch {
+
+    /** 字段存在标记 */
+    public static final int HAS_ID = 1;
+    public static final int HAS_SPEED = 1 << 1;
+    public static final int HAS_ACCELERATION = 1 << 2;
+    public static final int HAS_ROAD = 1 << 3;
+    public static final int HAS_LANE = 1 << 4;
+    public static final int HAS_CROSS = 1 << 5;
+    public static final int HAS_DELAY = 1 << 6;
+    public static final int HAS_QUEUE_TIME = 1 << 7;
+    public static final int HAS_STOP_COUNT = 1 << 8;
+    public static final int HAS_CELL = 1 << 9;
+    public static final int HAS_POSITION = 1 << 10;
+
+    @Getter
+    private int size;
+    @Getter
+    private int[] flags;
+    @Getter
+    private int[] ids;
+    @Getter
+    private double[] speed;
+    @Getter
+    private double[] acceleration;
+    @Getter
+    private int[] roadIds;
+    @Getter
+    private int[] laneIds;
+    @Getter
+    private int[] crossIds;
+    @Getter
+    private double[] delay;
+    @Getter
+    private double[] queueTime;
+    @Getter
+    private int[] stopCount;
+
+    /** 平面坐标（x、y 同时存在时有效） */
+    @Getter
+    private double[] x;
+    @Getter
+    private double[] y;
+
+    /** 车道内位置（引擎 cell_id，沿行驶方向递增） */
+    @Getter
+    private int[] cells;
+
+    /** 车辆在 VehicleIdTracker 中的槽位（装载时由 StepKernelState 填写，无ID时为 -1） */
+    @Getter
+    private int[] slots;
+
+    public VehicleBatch() {
+        allocate(256);
+    }
+
+    /**
+     * 从解析后的仿真步数据装载（覆盖原有内容）
+     */
+    public void load(List<SimulationStepData.Vehicle> vehicles) {
+        reset(vehicles.size());
+        for (SimulationStepData.Vehicle vehicle : vehicles) {
+            int row = size++;
+            int flag = 0;
+            if (vehicle.getId() != null) {
+                ids[row] = vehicle.getId();
+                flag |= HAS_ID;
+            }
+            if (vehicle.getSpeed() != null) {
+                speed[row] = vehicle.getSpeed();
+                flag |= HAS_SPEED;
+            }
+            if (vehicle.getAcceleration() != null) {
+                acceleration[row] = vehicle.getAcceleration();
+                flag |= HAS_ACCELERATION;
+            }
+            if (vehicle.getRoadId() != null) {
+                roadIds[row] = vehicle.getRoadId();
+                flag |= HAS_ROAD;
+            }
+            if (vehicle.getLaneId() != null) {
+                laneIds[row] = vehicle.getLaneId();
+                flag |= HAS_LANE;
+            }
+            if (vehicle.getX() != null && vehicle.getY() != null) {
+                x[row] = vehicle.getX();
+                y[row] = vehicle.getY();
+                flag |= HAS_POSITION;
+            }
+            Map<String, Object> attributes = vehicle.getAttributes();
+            if (attributes != null) {
+                flag = loadAttributes(row, flag, attributes);
+            }
+            flags[row] = flag;
+        }
+    }
+
+    /**
+     * 读取车辆属性中的路口、延误、排队时间、停车次数与车道位置
+     *
+     * @return 更新后的字段存在标记
+     */
+    private int loadAttributes(int row, int flag, Map<String, Object> attributes) {
+        Object cross = attributes.get("crossId");
+        if (cross == null) {
+            cross = attributes.get("cross_id");
+        }
+        if (cross instanceof Number number) {
+            crossIds[row] = number.intValue();
+            flag |= HAS_CROSS;
+        }
+        if (attributes.get("delay") instanceof Number number) {
+            delay[row] = number.doubleValue();
+            flag |= HAS_DELAY;
+        }
+        if (attributes.get("queueTime") instanceof Number number) {
+            queueTime[row] = number.doubleValue();
+            flag |= HAS_QUEUE_TIME;
+        }
+        if (attributes.get("stopCount") instanceof Number number) {
+            stopCount[row] = number.intValue();
+            flag |= HAS_STOP_COUNT;
+        }
+        if ((flag & HAS_CELL) == 0 && attributes.get("cell_id") instanceof Number number) {
+            cells[row] = number.intValue();
+            flag |= HAS_CELL;
+        }
+        return flag;
+    }
+
+    /**
+     * 从引擎管理模块的列式数据帧直接装载（覆盖原有内容），字段含义与解析 Map 后装载一致：
+     * 速度取 cur_spd/speed，道路取 link_id；路口、延误、排队时间、停车次数来自未识别的原始字段
+     */
+    public void load(StepFrame frame) {
+        int frameSize = frame.getSize();
+        reset(frameSize);
+        int[] frameFlags = frame.getFlags();
+        int[] frameIds = frame.getIds();
+        float[] frameSpeed = frame.getSpeed();
+        float[] frameAcceleration = frame.getAcceleration();
+        int[] linkIds = frame.getLinkIds();
+        int[] frameLaneIds = frame.getLaneIds();
+        int[] cellIds = frame.getCellIds();
+        float[] frameX = frame.getX();
+        float[] frameY = frame.getY();
+        for (int row = 0; row < frameSize; row++) {
+            int source = frameFlags[row];
+            int flag = HAS_ID;
+            ids[row] = frameIds[row];
+            if ((source & (StepFrame.HAS_CUR_SPD | StepFrame.HAS_SPEED)) != 0) {
+                speed[row] = frameSpeed[row];
+                flag |= HAS_SPEED;
+            }
+            if ((source & StepFrame.HAS_LINK) != 0) {
+                roadIds[row] = linkIds[row];
+                flag |= HAS_ROAD;
+            }
+            if ((source & StepFrame.HAS_LANE) != 0) {
+                laneIds[row] = frameLaneIds[row];
+                flag |= HAS_LANE;
+            }
+            if ((source & StepFrame.HAS_CELL) != 0) {
+                cells[row] = cellIds[row];
+                flag |= HAS_CELL;
+            }
+            if ((source & (StepFrame.HAS_X | StepFrame.HAS_Y)) == (StepFrame.HAS_X | StepFrame.HAS_Y)) {
+                x[row] = frameX[row];
+                y[row] = frameY[row];
+                flag |= HAS_POSITION;
+            }
+            Map<String, Object> extras = frame.getExtras(row);
+            if ((source & StepFrame.HAS_ACCELERATION) != 0) {
+                acceleration[row] = frameAcceleration[row];
+                flag |= HAS_ACCELERATION;
+            } else if (extras != null) {
+                Object value = extras.get("acceleration");
+                if (!(value instanceof Number)) {
+                    value = extras.get("acc");
+                }
+                if (value instanceof Number number) {
+                    acceleration[row] = number.doubleValue();
+                    flag |= HAS_ACCELERATION;
+                }
+            }
+            if (extras != null) {
+                flag = loadAttributes(row, flag, extras);
+            }
+            flags[row] = flag;
+        }
+        size = frameSize;
+    }
+
+    /**
+     * 用轨迹状态补齐引擎未提供的延误、排队时间与停车次数
+     */
+    public void fillMissing(int row, double delayValue, double queueTimeValue, int stops) {
+        int flag = flags[row];
+        if ((flag & HAS_DELAY) == 0) {
+            delay[row] = delayValue;
+            flag |= HAS_DELAY;
+        }
+        if ((flag & HAS_QUEUE_TIME) == 0) {
+            queueTime[row] = queueTimeValue;
+            flag |= HAS_QUEUE_TIME;
+        }
+        if ((flag & HAS_STOP_COUNT) == 0) {
+            stopCount[row] = stops;
+            flag |= HAS_STOP_COUNT;
+        }
+        flags[row] = flag;
+    }
+
+    /**
+     * 清空并确保容量
+     */
+    public void reset(int expectedSize) {
+        size = 0;
+        if (expectedSize > flags.length) {
+            allocate(Math.max(expectedSize, flags.length << 1));
+        }
+    }
+
+    public boolean has(int row, int flag) {
+        return (flags[row] & flag) != 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void allocate(int capacity) {
+        flags = new int[capacity];
+        ids = new int[capacity];
+        speed = new double[capacity];
+        acceleration = new double[capacity];
+        roadIds = new int[capacity];
+        laneIds = new int[capacity];
+        crossIds = new int[capacity];
+        delay = new double[capacity];
+        queueTime = new double[capacity];
+        stopCount = new int[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        cells = new int[capacity];
+        slots = new int[capacity];
+    }
+}
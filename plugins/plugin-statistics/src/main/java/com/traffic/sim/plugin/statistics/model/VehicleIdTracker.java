@@ -0,0 +1,152 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import com.traffic.sim.common.util.IntIntHashMap;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 车辆ID跟踪器
+ * 把引擎车辆ID映射为紧凑的槽位号（0..n），槽位在车辆离开后回收复用；
+ * 每个仿真步一个代号，槽位记录最后出现的代号，进入/离开数量在一次扫描中得出，稳定运行后不分配内存。
+ * 槽位号可作为其他按车辆保存的状态（轨迹、停车次数等）的数组下标
+ *
+ * @author traffic-sim
+ */
+public class VehicleIdTracker {
+
+    /** 车辆ID -> 槽位 */
+    private final IntIntHashMap idToSlot = new IntIntHashMap(256, -1);
+
+    /** 槽位 -> 车辆ID */
+    private int[] slotIds = new int[256];
+
+    /** 槽位最后出现的代号 */
+    private int[] slotGenerations = new int[256];
+
+    /** 上一步结束时在网车辆的槽位，本步新进入的槽位追加在后面 */
+    private int[] activeSlots = new int[256];
+    private int activeCount;
+
+    /** 已回收的槽位 */
+    private int[] freeSlots = new int[256];
+    private int freeCount;
+
+    /** 已分配过的槽位上限 */
+    @Getter
+    private int slotCapacity;
+
+    private int generation;
+
+    /** 本步进入的车辆数 */
+    @Getter
+    private int entered;
+
+    /** 本步离开的车辆数（endStep 之后有效） */
+    @Getter
+    private int exited;
+
+    /** 本步离开车辆的槽位（endStep 之后、下一步开始前有效，槽位在下一步才会被复用） */
+    private int[] exitedSlots = new int[64];
+
+    /**
+     * 开始一个仿真步
+     */
+    public void beginStep() {
+        generation++;
+        entered = 0;
+        exited = 0;
+    }
+
+    /**
+     * 记录本步出现的车辆（同一步内重复出现只计一次）
+     *
+     * @param vehicleId 引擎车辆ID
+     * @return 车辆槽位
+     */
+    public int observe(int vehicleId) {
+        int slot = idToSlot.get(vehicleId);
+        if (slot < 0) {
+            slot = allocateSlot();
+            slotIds[slot] = vehicleId;
+            idToSlot.put(vehicleId, slot);
+            appendActive(slot);
+            entered++;
+        }
+        slotGenerations[slot] = generation;
+        return slot;
+    }
+
+    /**
+     * 结束仿真步：本步未出现的车辆视为离开，回收其槽位
+     *
+     * @return 离开的车辆数
+     */
+    public int endStep() {
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int slot = activeSlots[i];
+            if (slotGenerations[slot] == generation) {
+                activeSlots[kept++] = slot;
+            } else {
+                idToSlot.remove(slotIds[slot]);
+                releaseSlot(slot);
+                if (exited == exitedSlots.length) {
+                    exitedSlots = Arrays.copyOf(exitedSlots, exited << 1);
+                }
+                exitedSlots[exited++] = slot;
+            }
+        }
+        activeCount = kept;
+        return exited;
+    }
+
+    /**
+     * 当前在网车辆数
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * 本步第 index 辆离开车辆的槽位（0 <= index < exited）
+     */
+    public int exitedSlot(int index) {
+        return exitedSlots[index];
+    }
+
+    /**
+     * 本步第 index 辆进入车辆的槽位（0 <= index < entered，endStep 之后、下一步开始前有效；
+     * 新进入的槽位追加在在网槽位末尾，且本步都会保留）
+     */
+    public int enteredSlot(int index) {
+        return activeSlots[activeCount - entered + index];
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int slot = slotCapacity++;
+        if (slot == slotIds.length) {
+            int capacity = slotIds.length << 1;
+            slotIds = Arrays.copyOf(slotIds, capacity);
+            slotGenerations = Arrays.copyOf(slotGenerations, capacity);
+        }
+        return slot;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length << 1);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void appendActive(int slot) {
+        if (activeCount == activeSlots.length) {
+            activeSlots = Arrays.copyOf(activeSlots, activeSlots.length << 1);
+        }
+        activeSlots[activeCount++] = slot;
+    }
+}
@@ -1,16 +1,18 @@
 package com.traffic.sim.plugin.statistics.parser;
 
+import com.traffic.sim.common.model.StepFrame;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 仿真数据解析器
- * 将原始Map数据解析为SimulationStepData
+ * 将原始Map数据（旧调用方）或列式数据帧解析为SimulationStepData
  * 
  * @author traffic-sim
  */
@@ -62,6 +64,91 @@ public class SimulationDataParser {
         }
     }
     
+    /**
+     * 从列式数据帧构建仿真步数据（只在会话执行计划包含逐车计算器时使用）
+     * 车辆属性包含引擎原始字段与未识别字段，数据帧归还后仍可安全引用
+     */
+    public SimulationStepData parse(StepFrame frame) {
+        SimulationStepData stepData = new SimulationStepData();
+        stepData.setStep(frame.getStep());
+        stepData.setTimestamp(frame.getTimestamp() != null ? frame.getTimestamp() : System.currentTimeMillis());
+        
+        int size = frame.getSize();
+        List<SimulationStepData.Vehicle> vehicles = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            vehicles.add(parseVehicle(frame, row));
+        }
+        stepData.setVehicles(vehicles);
+        
+        stepData.setSignals(parseSignalList(frame.getSignals()));
+        return stepData;
+    }
+    
+    /**
+     * 从数据帧构建只含信号灯的仿真步数据（车辆列表为空，供只读取信号的计算器使用）
+     */
+    public SimulationStepData parseSignals(StepFrame frame) {
+        SimulationStepData stepData = new SimulationStepData();
+        stepData.setStep(frame.getStep());
+        stepData.setTimestamp(frame.getTimestamp() != null ? frame.getTimestamp() : System.currentTimeMillis());
+        stepData.setSignals(parseSignalList(frame.getSignals()));
+        return stepData;
+    }
+    
+    /**
+     * 从数据帧的一行构建车辆
+     */
+    private SimulationStepData.Vehicle parseVehicle(StepFrame frame, int row) {
+        Map<String, Object> attributes = new HashMap<>();
+        Map<String, Object> extras = frame.getExtras(row);
+        if (extras != null) {
+            attributes.putAll(extras);
+        }
+        attributes.put("id", frame.getIds()[row]);
+        if (frame.has(row, StepFrame.HAS_IN_NETWORK)) {
+            attributes.put("in_network", frame.has(row, StepFrame.IN_NETWORK));
+        }
+        if (frame.has(row, StepFrame.HAS_IN_CROSS)) {
+            attributes.put("in_cross", frame.has(row, StepFrame.IN_CROSS));
+        }
+        if (frame.has(row, StepFrame.HAS_CELL)) {
+            attributes.put("cell_id", frame.getCellIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LAST_SPD)) {
+            attributes.put("last_spd", frame.getLastSpeed()[row]);
+        }
+        if (frame.getRouters()[row] != null) {
+            attributes.put("router", frame.getRouters()[row]);
+        }
+        
+        SimulationStepData.Vehicle vehicle = new SimulationStepData.Vehicle();
+        vehicle.setId(frame.getIds()[row]);
+        if (frame.hasSpeed(row)) {
+            vehicle.setSpeed((double) frame.getSpeed()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_ACCELERATION)) {
+            vehicle.setAcceleration((double) frame.getAcceleration()[row]);
+        } else {
+            Double acceleration = getDouble(attributes, "acceleration");
+            vehicle.setAcceleration(acceleration != null ? acceleration : getDouble(attributes, "acc"));
+        }
+        if (frame.has(row, StepFrame.HAS_X)) {
+            vehicle.setX((double) frame.getX()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_Y)) {
+            vehicle.setY((double) frame.getY()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LINK)) {
+            vehicle.setRoadId(frame.getLinkIds()[row]);
+        }
+        if (frame.has(row, StepFrame.HAS_LANE)) {
+            vehicle.setLaneId(frame.getLaneIds()[row]);
+        }
+        vehicle.setType(getString(attributes, "type"));
+        vehicle.setAttributes(attributes);
+        return vehicle;
+    }
+    
     /**
      * 解析车辆数据
      */
@@ -134,29 +221,76 @@ public class SimulationDataParser {
      */
     @SuppressWarnings("unchecked")
     private List<SimulationStepData.Signal> parseSignals(Map<String, Object> rawData) {
-        List<SimulationStepData.Signal> signals = new ArrayList<>();
-        
         Object signalsObj = rawData.get("signals");
         if (signalsObj instanceof List) {
-            List<Map<String, Object>> signalList = (List<Map<String, Object>>) signalsObj;
-            for (Map<String, Object> signalMap : signalList) {
-                SimulationStepData.Signal signal = new SimulationStepData.Signal();
-                
-                signal.setCrossId(getInteger(signalMap, "crossId"));
-                signal.setState(getString(signalMap, "state"));
-                signal.setPhase(getInteger(signalMap, "phase"));
-                signal.setCycleTime(getLong(signalMap, "cycleTime"));
-                
-                // 保留原始属性
-                signal.setAttributes(signalMap);
-                
-                signals.add(signal);
-            }
+            return parseSignalList((List<Map<String, Object>>) signalsObj);
+        }
+        return new ArrayList<>();
+    }
+    
+    /**
+     * 解析信号灯列表
+     */
+    private List<SimulationStepData.Signal> parseSignalList(List<Map<String, Object>> signalList) {
+        List<SimulationStepData.Signal> signals = new ArrayList<>(signalList.size());
+        for (Map<String, Object> signalMap : signalList) {
+            signals.add(parseSignal(signalMap));
         }
-        
         return signals;
     }
     
+    /**
+     * 解析单个信号灯
+     */
+    private SimulationStepData.Signal parseSignal(Map<String, Object> signalMap) {
+        SimulationStepData.Signal signal = new SimulationStepData.Signal();
+        
+        Integer crossId = getInteger(signalMap, "crossId");
+        signal.setCrossId(crossId != null ? crossId : getInteger(signalMap, "cross_id"));
+        signal.setState(getString(signalMap, "state"));
+        signal.setPhase(getInteger(signalMap, "phase"));
+        signal.setCycleTime(getLong(signalMap, "cycleTime"));
+        if (signalMap.get("phases") instanceof List<?> phases) {
+            parsePhases(signal, phases);
+        }
+        
+        // 保留原始属性
+        signal.setAttributes(signalMap);
+        
+        return signal;
+    }
+    
+    /**
+     * 解析引擎 controller_run 的相位列表（[{id, color: G/Y/R}]）：记录绿灯相位，
+     * 未提供 state 时按相位颜色推断路口状态（有绿灯为 GREEN，否则有黄灯为 YELLOW，否则为 RED）
+     */
+    @SuppressWarnings("unchecked")
+    private void parsePhases(SimulationStepData.Signal signal, List<?> phases) {
+        List<Integer> greenPhases = new ArrayList<>();
+        boolean yellow = false;
+        for (Object item : phases) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> phaseMap = (Map<String, Object>) item;
+            String color = getString(phaseMap, "color");
+            if (color == null || color.isEmpty()) {
+                continue;
+            }
+            char c = Character.toUpperCase(color.charAt(0));
+            Integer id = getInteger(phaseMap, "id");
+            if (c == 'G' && id != null) {
+                greenPhases.add(id);
+            } else if (c == 'Y') {
+                yellow = true;
+            }
+        }
+        signal.setGreenPhases(greenPhases);
+        if (signal.getState() == null) {
+            signal.setState(!greenPhases.isEmpty() ? "GREEN" : yellow ? "YELLOW" : "RED");
+        }
+    }
+    
     /**
      * 从Map中提取Integer值
      */
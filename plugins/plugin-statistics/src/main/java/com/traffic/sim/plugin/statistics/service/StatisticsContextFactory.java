@@ -1,48 +1,214 @@
 package com.traffic.sim.plugin.statistics.service;
 
+import com.traffic.sim.common.model.SimInfo;
+import com.traffic.sim.common.service.SessionService;
+import com.traffic.sim.plugin.statistics.config.StatisticsPluginProperties;
+import com.traffic.sim.plugin.statistics.model.DensityGrid;
+import com.traffic.sim.plugin.statistics.model.FinishedRun;
+import com.traffic.sim.plugin.statistics.model.OdMatrix;
+import com.traffic.sim.plugin.statistics.model.StatisticsBuffer;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 统计上下文工厂
+ * 上下文按仿真会话隔离。仿真结束时释放逐步计算状态，只保留运行摘要、累计分位数与 OD 矩阵供查询；
+ * 引擎连接关闭时释放进行中的上下文；长时间未访问的上下文与超时的结束结果由后台任务清理
  * 
  * @author traffic-sim
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class StatisticsContextFactory {
     
+    private final StatisticsPluginProperties properties;
+    
+    @Autowired(required = false)
+    private SessionService sessionService; // 可选依赖，由 plugin-engine-manager 模块提供（用于记录会话所属用户）
+    
     // 缓存上下文（按会话ID）
     private final ConcurrentMap<String, StatisticsContext> contextCache = new ConcurrentHashMap<>();
     
+    // 已结束会话的统计结果（按会话ID）
+    private final ConcurrentMap<String, FinishedRun> finishedRuns = new ConcurrentHashMap<>();
+    
+    /** 空闲清理调度器 */
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statistics-session-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void init() {
+        long interval = Math.max(1000, properties.getSession().getSweepIntervalMs());
+        sweeper.scheduleWithFixedDelay(this::sweepIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
     /**
      * 创建或获取统计上下文
      */
     public StatisticsContext create(String sessionId) {
-        return contextCache.computeIfAbsent(sessionId, id -> {
-            StatisticsContext context = new StatisticsContext(id);
+        StatisticsContext context = contextCache.computeIfAbsent(sessionId, id -> {
+            StatisticsContext created = new StatisticsContext(id);
+            created.setOwnerId(resolveOwner(id));
             // 设置默认道路容量
-            context.setRoadCapacity(1000.0);
-            return context;
+            created.setRoadCapacity(1000.0);
+            // 按配置的窗口创建滚动流量缓冲区
+            int[] windows = properties.getWindow().getFlowWindows().stream()
+                .filter(w -> w != null)
+                .mapToInt(Integer::intValue)
+                .toArray();
+            created.setBuffer(new StatisticsBuffer(windows));
+            StatisticsPluginProperties.OdConfig od = properties.getOd();
+            if (od.isEnabled()) {
+                created.setOdMatrix(new OdMatrix(od.getMaxPairs(), od.getRelativeAccuracy()));
+            }
+            if (properties.getHeatmap().isEnabled()) {
+                created.setDensityGrid(new DensityGrid(properties.getHeatmap().getCellSize()));
+            }
+            log.debug("Created statistics context for session: {}", id);
+            return created;
         });
+        context.setLastAccessTime(System.currentTimeMillis());
+        return context;
+    }
+    
+    /**
+     * 从会话信息读取所属用户（仿真准备时写入 simInfo.userId）
+     */
+    private String resolveOwner(String sessionId) {
+        if (sessionService == null) {
+            return null;
+        }
+        SimInfo simInfo = sessionService.getSessionInfo(sessionId);
+        Object userId = simInfo != null && simInfo.getSimInfo() != null ? simInfo.getSimInfo().get("userId") : null;
+        return userId != null ? userId.toString() : null;
+    }
+    
+    /**
+     * 获取已有的统计上下文（不创建、不刷新访问时间）
+     */
+    public StatisticsContext find(String sessionId) {
+        return contextCache.get(sessionId);
     }
     
     /**
-     * 移除上下文
+     * 获取已结束会话的统计结果
+     */
+    public FinishedRun findFinished(String sessionId) {
+        return finishedRuns.get(sessionId);
+    }
+    
+    /**
+     * 指定用户保留统计状态的会话ID（进行中与已结束）
+     */
+    public Set<String> sessionIds(String ownerId) {
+        Set<String> sessionIds = new LinkedHashSet<>();
+        contextCache.forEach((sessionId, context) -> {
+            if (ownerId.equals(context.getOwnerId())) {
+                sessionIds.add(sessionId);
+            }
+        });
+        finishedRuns.forEach((sessionId, run) -> {
+            if (ownerId.equals(run.getOwnerId())) {
+                sessionIds.add(sessionId);
+            }
+        });
+        return Collections.unmodifiableSet(sessionIds);
+    }
+    
+    /**
+     * 会话所属用户ID（进行中或已结束），会话不存在或归属未知时返回 null
+     */
+    public String ownerOf(String sessionId) {
+        StatisticsContext context = contextCache.get(sessionId);
+        if (context != null) {
+            return context.getOwnerId();
+        }
+        FinishedRun run = finishedRuns.get(sessionId);
+        return run != null ? run.getOwnerId() : null;
+    }
+    
+    /**
+     * 结束会话：移除上下文（释放逐步计算状态），保留运行摘要、累计分位数与 OD 矩阵直到超时
+     *
+     * @return 保留的结束结果，会话不存在时返回 null
+     */
+    public FinishedRun finish(String sessionId) {
+        StatisticsContext context = contextCache.remove(sessionId);
+        if (context == null) {
+            return null;
+        }
+        FinishedRun run = new FinishedRun(context.getOwnerId(), context.getRunAggregator(), context.getPercentiles(),
+            context.getOdMatrix(), System.currentTimeMillis());
+        finishedRuns.put(sessionId, run);
+        log.info("Finished statistics context for session: {}, keeping run summary", sessionId);
+        return run;
+    }
+    
+    /**
+     * 移除进行中的上下文（已结束会话的结果保留至超时）
      */
     public void remove(String sessionId) {
-        contextCache.remove(sessionId);
+        if (contextCache.remove(sessionId) != null) {
+            log.info("Released statistics context for session: {}", sessionId);
+        }
     }
     
     /**
-     * 清空所有上下文
+     * 清空所有上下文与结束结果
      */
     public void clear() {
         contextCache.clear();
+        finishedRuns.clear();
+    }
+    
+    /**
+     * 当前保留的上下文数量
+     */
+    public int size() {
+        return contextCache.size();
+    }
+    
+    /**
+     * 清理空闲超时的上下文（未正常收到结束消息的会话）与超时的结束结果
+     */
+    void sweepIdle() {
+        try {
+            long deadline = System.currentTimeMillis() - properties.getSession().getIdleTtlMs();
+            contextCache.forEach((sessionId, context) -> {
+                if (context.getLastAccessTime() < deadline && contextCache.remove(sessionId, context)) {
+                    log.info("Evicted idle statistics context for session: {}", sessionId);
+                }
+            });
+            finishedRuns.forEach((sessionId, run) -> {
+                if (run.getFinishedAt() < deadline && finishedRuns.remove(sessionId, run)) {
+                    log.info("Evicted finished statistics for session: {}", sessionId);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error sweeping idle statistics contexts", e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
     }
 }
-
@@ -0,0 +1,81 @@
+package com.traffic.sim.plugin.statistics.service;
+
+import com.traffic.sim.plugin.statistics.config.StatisticsPluginProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/**
+ * 统计并行执行器
+ * 所有会话共享一个 ForkJoinPool；车辆数低于阈值的仿真步不进入线程池，保持单线程执行
+ * 
+ * @author traffic-sim
+ */
+@Slf4j
+@Component
+public class StatisticsExecutor {
+    
+    private final StatisticsPluginProperties.PerformanceConfig config;
+    
+    private final ForkJoinPool pool;
+    
+    public StatisticsExecutor(StatisticsPluginProperties properties) {
+        this.config = properties.getPerformance();
+        int parallelism = config.getParallelism() > 0
+            ? config.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("statistics-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        log.info("Statistics executor initialized: parallelism={}, threshold={}, chunkSize={}",
+            parallelism, config.getParallelThreshold(), config.getChunkSize());
+    }
+    
+    /**
+     * 该规模的仿真步是否并行执行
+     */
+    public boolean isParallel(int vehicleCount) {
+        return config.getParallelThreshold() > 0
+            && vehicleCount >= config.getParallelThreshold()
+            && pool.getParallelism() > 1;
+    }
+    
+    /**
+     * 分块大小（与线程数无关，保证合并结果确定）
+     */
+    public int getChunkSize() {
+        return Math.max(1024, config.getChunkSize());
+    }
+    
+    /**
+     * 并行执行任务，结果按任务顺序返回
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) throws ExecutionException {
+        List<Future<T>> futures = pool.invokeAll(tasks);
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExecutionException(e);
+            }
+        }
+        return results;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
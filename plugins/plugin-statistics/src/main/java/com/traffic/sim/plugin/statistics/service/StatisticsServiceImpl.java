@@ -1,20 +1,41 @@
 package com.traffic.sim.plugin.statistics.service;
 
 import com.traffic.sim.common.model.StatisticsData;
+import com.traffic.sim.common.model.StepFrame;
 import com.traffic.sim.common.service.StatisticsService;
+import com.traffic.sim.plugin.statistics.calculator.CalculatorPlan;
+import com.traffic.sim.plugin.statistics.calculator.FusedStatisticsKernel;
+import com.traffic.sim.plugin.statistics.calculator.MetricGroup;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculator;
 import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculatorRegistry;
+import com.traffic.sim.plugin.statistics.config.StatisticsPluginProperties;
+import com.traffic.sim.plugin.statistics.model.DensityGrid;
+import com.traffic.sim.plugin.statistics.model.FinishedRun;
+import com.traffic.sim.plugin.statistics.model.OdMatrix;
+import com.traffic.sim.plugin.statistics.model.PercentileState;
+import com.traffic.sim.plugin.statistics.model.RunAggregator;
 import com.traffic.sim.plugin.statistics.model.SimulationStepData;
+import com.traffic.sim.plugin.statistics.model.StatisticsBuffer;
 import com.traffic.sim.plugin.statistics.model.StatisticsContext;
 import com.traffic.sim.plugin.statistics.model.StatisticsResult;
+import com.traffic.sim.plugin.statistics.model.StepKernelState;
+import com.traffic.sim.plugin.statistics.model.VehicleIdTracker;
 import com.traffic.sim.plugin.statistics.parser.SimulationDataParser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 /**
  * 统计服务实现
@@ -29,12 +50,23 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final StatisticsCalculatorRegistry calculatorRegistry;
     private final SimulationDataParser dataParser;
     private final StatisticsContextFactory contextFactory;
+    private final FusedStatisticsKernel fusedKernel;
+    private final StatisticsPluginProperties properties;
+    private final StatisticsExecutor executor;
     
-    // 缓存上一步数据（按会话ID）
-    private final Map<String, SimulationStepData> stepCache = new ConcurrentHashMap<>();
+    /** 未选择指标分组的会话使用的计划（全部分组，首次使用时编译） */
+    private volatile CalculatorPlan defaultPlan;
     
     @Override
     public StatisticsData processSimulationStep(Map<String, Object> simData) {
+        if (simData == null) {
+            return createEmptyStatisticsData();
+        }
+        return processSimulationStep(extractSessionId(simData), simData);
+    }
+    
+    @Override
+    public StatisticsData processSimulationStep(String sessionId, Map<String, Object> simData) {
         try {
             // 1. 解析仿真数据
             SimulationStepData currentStep = dataParser.parse(simData);
@@ -43,38 +75,12 @@ public class StatisticsServiceImpl implements StatisticsService {
                 return createEmptyStatisticsData();
             }
             
-            String sessionId = extractSessionId(simData);
-            
-            // 2. 获取上一步数据
-            SimulationStepData previousStep = stepCache.get(sessionId);
-            
-            // 3. 创建统计上下文
+            // 2. 获取会话统计上下文，装载列式批次
             StatisticsContext context = contextFactory.create(sessionId);
+            StatisticsPluginProperties.TrajectoryConfig trajectory = properties.getTrajectory();
+            context.getKernelState().load(currentStep, trajectory.getStepSeconds(), trajectory.getFreeFlowSpeed());
             
-            // 4. 执行所有计算器
-            StatisticsResult result = new StatisticsResult();
-            List<StatisticsCalculator> calculators = calculatorRegistry.getAll();
-            
-            for (StatisticsCalculator calculator : calculators) {
-                try {
-                    StatisticsResult calcResult = calculator.calculate(
-                        currentStep, previousStep, context);
-                    if (calcResult != null && !calcResult.isEmpty()) {
-                        result.merge(calcResult);
-                    }
-                } catch (Exception e) {
-                    log.error("Error in calculator: {}", calculator.getName(), e);
-                }
-            }
-            
-            // 5. 构建统计数据结构
-            StatisticsData statisticsData = buildStatisticsData(
-                currentStep.getStep(), result);
-            
-            // 6. 更新缓存
-            stepCache.put(sessionId, currentStep);
-            
-            return statisticsData;
+            return computeStep(context, currentStep.getStep(), () -> currentStep, () -> currentStep);
         } catch (Exception e) {
             log.error("Error processing simulation step", e);
             return createEmptyStatisticsData();
@@ -82,39 +88,328 @@ public class StatisticsServiceImpl implements StatisticsService {
     }
     
     @Override
-    public StatisticsData aggregateStatistics(List<StatisticsData> stepStats) {
-        if (stepStats == null || stepStats.isEmpty()) {
+    public StatisticsData processSimulationStep(String sessionId, StepFrame frame) {
+        if (frame == null) {
             return createEmptyStatisticsData();
         }
+        try {
+            // 直接从数据帧装载列式批次；只有执行计划包含逐车计算器时才构建仿真步对象
+            StatisticsContext context = contextFactory.create(sessionId);
+            StatisticsPluginProperties.TrajectoryConfig trajectory = properties.getTrajectory();
+            context.getKernelState().load(frame, trajectory.getStepSeconds(), trajectory.getFreeFlowSpeed());
+            
+            return computeStep(context, frame.getStep(),
+                () -> dataParser.parse(frame), () -> dataParser.parseSignals(frame));
+        } catch (Exception e) {
+            log.error("Error processing simulation step", e);
+            return createEmptyStatisticsData();
+        }
+    }
+    
+    /**
+     * 计算已装载的当前步：装载时已更新车辆轨迹状态并建立车道索引（内核与计算器共用），
+     * 会话选择的内置指标由融合内核一次扫描完成，其余计算器按执行计划执行
+     *
+     * @param currentStepSupplier 当前步仿真数据（只在计划包含读取车辆列表的计算器时获取）
+     * @param signalStepSupplier 只含信号的当前步数据（计划中的计算器都不读取车辆列表时使用）
+     */
+    private StatisticsData computeStep(StatisticsContext context, Long step,
+                                       Supplier<SimulationStepData> currentStepSupplier,
+                                       Supplier<SimulationStepData> signalStepSupplier) {
+        StepKernelState kernelState = context.getKernelState();
+        CalculatorPlan plan = resolvePlan(context);
         
-        StatisticsData aggregated = new StatisticsData();
+        // 进出流量每步计入缓冲区（累计总数与滚动窗口），分组选择只决定是否输出
+        VehicleIdTracker idTracker = kernelState.getIdTracker();
+        StatisticsBuffer buffer = context.getBuffer();
+        buffer.record(idTracker.getEntered(), idTracker.getExited());
+        // 会话累计分位数同样不中断：融合内核每步并入草图，逐个计算器执行且未选择分位数分组时在此并入
+        if (!plan.isFused() && !plan.includes(MetricGroup.PERCENTILE)) {
+            context.getPercentiles().record(kernelState.getBatch());
+        }
+        
+        StatisticsResult result = new StatisticsResult();
+        if (plan.isFused()) {
+            try {
+                result.merge(fusedKernel.calculate(kernelState, context, plan));
+            } catch (Exception e) {
+                log.error("Error in fused statistics kernel", e);
+            }
+        }
+        
+        // 执行计划中的其余计算器，结果按注册顺序合并；上一步数据只为这些计算器保留
+        if (!plan.getCalculators().isEmpty()) {
+            SimulationStepData currentStep = plan.isVehiclesRequired()
+                ? currentStepSupplier.get() : signalStepSupplier.get();
+            SimulationStepData previousStep = context.getPreviousStep();
+            for (StatisticsResult calcResult : runCalculators(plan, currentStep, previousStep, context)) {
+                if (!calcResult.isEmpty()) {
+                    result.merge(calcResult);
+                }
+            }
+            context.setPreviousStep(currentStep);
+        }
         
-        // 聚合基础统计
-        int totalVehicles = 0;
-        double totalSpeed = 0.0;
-        double totalCongestion = 0.0;
-        int count = 0;
+        // 增量更新密度网格，按发布间隔输出热力图
+        boolean heatmap = plan.includes(MetricGroup.HEATMAP);
+        if (heatmap) {
+            updateHeatmap(context, step, result);
+        }
+        context.setHeatmapApplied(heatmap);
         
-        for (StatisticsData stats : stepStats) {
-            if (stats == null) {
-                continue;
+        // 结束离开车辆的行程并计入 OD 矩阵
+        OdMatrix odMatrix = context.getOdMatrix();
+        boolean od = plan.includes(MetricGroup.OD) && odMatrix != null && step != null;
+        if (od) {
+            try {
+                // 运行中启用 OD 分组：丢弃停用期间过期的槽位状态，已在网车辆的行程不计入
+                if (!context.isOdApplied() && context.getRunAggregator().getSteps() > 0) {
+                    odMatrix.restart(kernelState.getBatch(), kernelState.getIdTracker());
+                }
+                odMatrix.update(kernelState.getBatch(), kernelState.getIdTracker(), step,
+                    properties.getTrajectory().getStepSeconds());
+            } catch (Exception e) {
+                log.error("Error updating OD matrix", e);
             }
-            
-            if (stats.getVehicleCount() != null) {
-                totalVehicles += stats.getVehicleCount();
+        }
+        context.setOdApplied(od);
+        
+        // 构建统计数据结构并并入运行级聚合
+        StatisticsData statisticsData = buildStatisticsData(step, result);
+        RunAggregator runAggregator = context.getRunAggregator();
+        runAggregator.update(statisticsData);
+        runAggregator.updateTotals(buffer.getTotalInFlow(), buffer.getTotalOutFlow());
+        return statisticsData;
+    }
+    
+    /**
+     * 把当前步车辆位置应用到会话的密度网格，每 publishInterval 次更新输出一次热力图快照
+     */
+    private void updateHeatmap(StatisticsContext context, Long step, StatisticsResult result) {
+        DensityGrid grid = context.getDensityGrid();
+        if (grid == null) {
+            return;
+        }
+        StepKernelState kernelState = context.getKernelState();
+        StatisticsPluginProperties.HeatmapConfig config = properties.getHeatmap();
+        try {
+            // 运行中重新启用热力图分组：停用期间离开的车辆未移除、槽位已被复用，先清空网格
+            if (!context.isHeatmapApplied() && grid.getVehicles() > 0) {
+                grid.reset();
             }
-            if (stats.getAverageSpeed() != null) {
-                totalSpeed += stats.getAverageSpeed();
-                count++;
+            grid.update(kernelState.getBatch(), kernelState.getIdTracker());
+            if (grid.getUpdates() % Math.max(1, config.getPublishInterval()) != 0) {
+                return;
             }
-            if (stats.getCongestionIndex() != null) {
-                totalCongestion += stats.getCongestionIndex();
+            Map<String, Object> heatmap = grid.snapshot(config.getMaxCells());
+            if (heatmap == null) {
+                log.debug("Heatmap for session {} exceeds {} cells, skipped at step {}",
+                    context.getSessionId(), config.getMaxCells(), step);
+                return;
+            }
+            heatmap.put("step", step);
+            result.set("heatmap", heatmap);
+        } catch (Exception e) {
+            log.error("Error updating density grid", e);
+        }
+    }
+    
+    /**
+     * 执行计算器：大规模仿真步中独立计算器并行执行，依赖上下文的计算器在当前线程顺序执行；
+     * 返回结果与计划中的计算器顺序一一对应
+     */
+    private StatisticsResult[] runCalculators(CalculatorPlan plan,
+                                              SimulationStepData currentStep,
+                                              SimulationStepData previousStep,
+                                              StatisticsContext context) {
+        List<StatisticsCalculator> calculators = plan.getCalculators();
+        StatisticsResult[] results = new StatisticsResult[calculators.size()];
+        int independent = plan.getIndependentCount();
+        if (independent > 1 && executor.isParallel(currentStep.getVehicles().size())) {
+            List<Callable<StatisticsResult>> tasks = new ArrayList<>(independent);
+            for (int i = 0; i < independent; i++) {
+                StatisticsCalculator calculator = calculators.get(plan.independentIndex(i));
+                tasks.add(() -> runCalculator(calculator, currentStep, previousStep, context));
+            }
+            try {
+                List<StatisticsResult> parallelResults = executor.invokeAll(tasks);
+                for (int i = 0; i < independent; i++) {
+                    results[plan.independentIndex(i)] = parallelResults.get(i);
+                }
+            } catch (ExecutionException e) {
+                log.warn("Parallel calculators failed, falling back to sequential: {}", e.getMessage());
+                Arrays.fill(results, null);
+            }
+        }
+        for (int i = 0; i < calculators.size(); i++) {
+            if (results[i] == null) {
+                results[i] = runCalculator(calculators.get(i), currentStep, previousStep, context);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 会话的执行计划：会话选择过指标分组时使用其编译结果，否则使用全部分组的默认计划
+     */
+    private CalculatorPlan resolvePlan(StatisticsContext context) {
+        CalculatorPlan plan = context.getPlan();
+        if (plan != null) {
+            return plan;
+        }
+        plan = defaultPlan;
+        if (plan == null) {
+            plan = calculatorRegistry.compile(EnumSet.allOf(MetricGroup.class),
+                properties.getPerformance().isFusedKernel());
+            defaultPlan = plan;
+        }
+        return plan;
+    }
+    
+    private StatisticsResult runCalculator(StatisticsCalculator calculator,
+                                           SimulationStepData currentStep,
+                                           SimulationStepData previousStep,
+                                           StatisticsContext context) {
+        try {
+            StatisticsResult result = calculator.calculate(currentStep, previousStep, context);
+            return result != null ? result : StatisticsResult.empty();
+        } catch (Exception e) {
+            log.error("Error in calculator: {}", calculator.getName(), e);
+            return StatisticsResult.empty();
+        }
+    }
+    
+    @Override
+    public void selectMetrics(String sessionId, Collection<String> metricGroups) {
+        if (sessionId == null) {
+            return;
+        }
+        if (contextFactory.find(sessionId) == null && contextFactory.findFinished(sessionId) != null) {
+            // 会话已结束（观看者在结束后断开），不再为其创建上下文
+            return;
+        }
+        StatisticsContext context = contextFactory.create(sessionId);
+        synchronized (context) {
+            EnumSet<MetricGroup> groups = MetricGroup.parse(metricGroups);
+            context.setPlan(calculatorRegistry.compile(groups, properties.getPerformance().isFusedKernel()));
+            log.info("Statistics metric groups for session {}: {}", sessionId, groups);
+        }
+    }
+    
+    @Override
+    public void finishSession(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        FinishedRun finished = contextFactory.finish(sessionId);
+        // 仍在路网中的车辆的行程在结束时计入 OD 矩阵
+        if (finished != null && finished.getOdMatrix() != null) {
+            finished.getOdMatrix().finish(properties.getTrajectory().getStepSeconds());
+        }
+    }
+    
+    @Override
+    public void releaseSession(String sessionId) {
+        if (sessionId != null) {
+            contextFactory.remove(sessionId);
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getRunSummary(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        // 进行中的会话读取上下文，已结束的会话读取保留的结束结果
+        StatisticsContext context = contextFactory.find(sessionId);
+        FinishedRun finished = context == null ? contextFactory.findFinished(sessionId) : null;
+        if (context == null && finished == null) {
+            return null;
+        }
+        RunAggregator aggregator = context != null ? context.getRunAggregator() : finished.getRunAggregator();
+        PercentileState percentiles = context != null ? context.getPercentiles() : finished.getPercentiles();
+        Map<String, Object> summary = aggregator.summary();
+        // 车辆级累计分位数直接读取会话草图（未选择分位数分组的步同样计入）
+        summary.put("percentiles", percentiles.cumulativeSummary());
+        summary.put("session_id", sessionId);
+        summary.put("finished", finished != null);
+        if (finished != null) {
+            summary.put("finished_at", finished.getFinishedAt());
+        }
+        return summary;
+    }
+    
+    @Override
+    public Map<String, Object> getOdMatrix(String sessionId, long minCount) {
+        if (sessionId == null) {
+            return null;
+        }
+        StatisticsContext context = contextFactory.find(sessionId);
+        FinishedRun finished = context == null ? contextFactory.findFinished(sessionId) : null;
+        OdMatrix odMatrix = context != null ? context.getOdMatrix()
+            : finished != null ? finished.getOdMatrix() : null;
+        if (odMatrix == null) {
+            return null;
+        }
+        Map<String, Object> matrix = odMatrix.snapshot(minCount);
+        matrix.put("session_id", sessionId);
+        matrix.put("finished", finished != null);
+        return matrix;
+    }
+    
+    @Override
+    public Map<String, Object> mergePercentiles(Collection<String> sessionIds) {
+        if (sessionIds == null || sessionIds.isEmpty()) {
+            return null;
+        }
+        // 合并进行中与保留期内已结束会话的累计草图，草图桶计数相加，结果与会话顺序无关
+        PercentileState merged = new PercentileState();
+        List<String> found = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String sessionId : new LinkedHashSet<>(sessionIds)) {
+            StatisticsContext context = sessionId != null ? contextFactory.find(sessionId) : null;
+            FinishedRun finished = context == null && sessionId != null ? contextFactory.findFinished(sessionId) : null;
+            PercentileState percentiles = context != null ? context.getPercentiles()
+                : finished != null ? finished.getPercentiles() : null;
+            if (percentiles == null) {
+                missing.add(sessionId);
+                continue;
             }
+            percentiles.mergeInto(merged);
+            found.add(sessionId);
+        }
+        if (found.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("session_ids", found);
+        result.put("missing_session_ids", missing);
+        result.put("percentiles", merged.cumulativeSummary());
+        return result;
+    }
+    
+    @Override
+    public StatisticsData aggregateStatistics(List<StatisticsData> stepStats) {
+        if (stepStats == null || stepStats.isEmpty()) {
+            return createEmptyStatisticsData();
         }
         
-        aggregated.setVehicleCount(totalVehicles / stepStats.size());
-        aggregated.setAverageSpeed(count > 0 ? totalSpeed / count : 0.0);
-        aggregated.setCongestionIndex(totalCongestion / stepStats.size());
+        // 与会话运行摘要使用同一在线聚合，逐项流式并入
+        RunAggregator aggregator = new RunAggregator();
+        stepStats.forEach(aggregator::update);
+        
+        StatisticsData aggregated = new StatisticsData();
+        Double vehicleCount = aggregator.mean("car_number");
+        aggregated.setVehicleCount(vehicleCount != null ? (int) Math.round(vehicleCount) : 0);
+        aggregated.setAverageSpeed(orZero(aggregator.mean("speed_ave")));
+        aggregated.setCongestionIndex(orZero(aggregator.mean("jam_index")));
+        aggregated.setAverageQueueLength(aggregator.mean("queue_length_ave"));
+        aggregated.setAverageQueueTime(aggregator.mean("queue_time_ave"));
+        aggregated.setAverageDelay(aggregator.mean("delay_ave"));
+        aggregated.setAverageStopCount(aggregator.mean("stop_ave"));
+        aggregated.setAverageRoadFlow(aggregator.mean("flow_RD_ave"));
+        aggregated.setAverageLaneFlow(aggregator.mean("flow_LA_ave"));
+        aggregated.setCustom(aggregator.summary());
         
         return aggregated;
     }
@@ -161,6 +456,12 @@ public class StatisticsServiceImpl implements StatisticsService {
             data.setAverageCrossFlow(getDouble(resultData, "flow_ave"));
             data.setAverageRoadFlow(getDouble(resultData, "flow_RD_ave"));
             data.setAverageLaneFlow(getDouble(resultData, "flow_LA_ave"));
+            data.setRollingFlow(getMap(resultData, "flow_rolling"));
+            data.setQueueDetails(getMap(resultData, "queue_details"));
+            data.setPercentiles(getMap(resultData, "percentiles"));
+            data.setCumulativePercentiles(getMap(resultData, "percentiles_cum"));
+            data.setHeatmap(getMap(resultData, "heatmap"));
+            data.setSignalPhases(getMap(resultData, "signal_phase"));
             
             // 设置自定义字段
             data.setCustom(resultData);
@@ -182,6 +483,10 @@ public class StatisticsServiceImpl implements StatisticsService {
         return data;
     }
     
+    private double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+    
     /**
      * 从Map中提取Integer值
      */
@@ -208,6 +513,15 @@ public class StatisticsServiceImpl implements StatisticsService {
         return null;
     }
     
+    /**
+     * 从Map中提取Map值
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getMap(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+    
     /**
      * 从仿真数据中提取会话ID
      */
@@ -0,0 +1,62 @@
+package com.traffic.sim.plugin.statistics.util;
+
+/**
+ * 补偿求和（Kahan）
+ * 与 DoubleStream.sum()/average() 使用相同的算法，结果与原先基于 Stream 的统计逐位一致；
+ * 可复用，不产生对象
+ *
+ * @author traffic-sim
+ */
+public class CompensatedSum {
+
+    private double sum;
+    private double compensation;
+    private double simpleSum;
+    private long count;
+
+    public void add(double value) {
+        addCompensated(value);
+        simpleSum += value;
+        count++;
+    }
+
+    /**
+     * 合并另一个求和器（与 DoubleSummaryStatistics.combine 相同：先加和，再加负补偿）
+     */
+    public void merge(CompensatedSum other) {
+        addCompensated(other.sum);
+        addCompensated(-other.compensation);
+        simpleSum += other.simpleSum;
+        count += other.count;
+    }
+
+    public double sum() {
+        double tmp = sum - compensation;
+        if (Double.isNaN(tmp) && Double.isInfinite(simpleSum)) {
+            return simpleSum;
+        }
+        return tmp;
+    }
+
+    public double average() {
+        return count > 0 ? sum() / count : 0.0;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void reset() {
+        sum = 0.0;
+        compensation = 0.0;
+        simpleSum = 0.0;
+        count = 0;
+    }
+
+    private void addCompensated(double value) {
+        double tmp = value - compensation;
+        double velvel = sum + tmp;
+        compensation = (velvel - sum) - tmp;
+        sum = velvel;
+    }
+}
@@ -0,0 +1,169 @@
+package com.traffic.sim.plugin.statistics.util;
+
+import java.util.Arrays;
+
+/**
+ * 分位数草图（对数分桶）
+ * 值按 gamma = (1+α)/(1-α) 的幂分桶，估算的分位数相对误差不超过 α；桶数组大小固定（约 1200 个），
+ * 内存与样本数无关。两个草图合并即桶计数相加，结果与插入顺序和分块方式无关，可跨仿真步、跨会话合并。
+ * 小于 {@link #MIN_INDEXABLE} 的值（含 0 与负数）计入低值桶，估算时返回精确最小值
+ *
+ * @author traffic-sim
+ */
+public class QuantileSketch {
+
+    /** 默认相对误差 */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /** 可分桶的最小/最大值，超出上限的值计入最高桶 */
+    public static final double MIN_INDEXABLE = 1e-3;
+    public static final double MAX_INDEXABLE = 1e7;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int indexOffset;
+    private final long[] counts;
+
+    /** 已使用的桶范围（用于快速清空与查询） */
+    private int lowestBucket;
+    private int highestBucket;
+
+    private long lowCount;
+    private long count;
+    private double min;
+    private double max;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.indexOffset = index(MIN_INDEXABLE);
+        this.counts = new long[index(MAX_INDEXABLE) - indexOffset + 1];
+        reset();
+    }
+
+    /**
+     * 记录一个值（NaN 被忽略）
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value < MIN_INDEXABLE) {
+            lowCount++;
+            return;
+        }
+        int bucket = Math.min(index(value) - indexOffset, counts.length - 1);
+        counts[bucket]++;
+        lowestBucket = Math.min(lowestBucket, bucket);
+        highestBucket = Math.max(highestBucket, bucket);
+    }
+
+    /**
+     * 合并另一个草图（相对误差必须相同）
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy: "
+                    + relativeAccuracy + " vs " + other.relativeAccuracy);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        for (int bucket = other.lowestBucket; bucket <= other.highestBucket; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        lowestBucket = Math.min(lowestBucket, other.lowestBucket);
+        highestBucket = Math.max(highestBucket, other.highestBucket);
+        lowCount += other.lowCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param quantile 0..1
+     * @return 分位数估计值，无数据时为 0
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return 0.0;
+        }
+        if (quantile <= 0) {
+            return min;
+        }
+        if (quantile >= 1) {
+            return max;
+        }
+        double rank = quantile * (count - 1);
+        long cumulative = lowCount;
+        if (cumulative > rank) {
+            return min;
+        }
+        for (int bucket = lowestBucket; bucket <= highestBucket; bucket++) {
+            cumulative += counts[bucket];
+            if (cumulative > rank) {
+                double estimate = 2 * Math.pow(gamma, bucket + indexOffset) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return count > 0 ? min : 0.0;
+    }
+
+    public double max() {
+        return count > 0 ? max : 0.0;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * 清空（只清理已使用的桶）
+     */
+    public void reset() {
+        if (lowestBucket <= highestBucket) {
+            Arrays.fill(counts, lowestBucket, highestBucket + 1, 0);
+        }
+        lowestBucket = counts.length;
+        highestBucket = -1;
+        lowCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * 复制当前草图
+     */
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.merge(this);
+        return copy;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+}
@@ -0,0 +1,117 @@
+package com.traffic.sim.plugin.statistics.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 在线统计量（Welford）
+ * 逐个样本更新计数、均值、方差与极值，数值稳定且不保存样本；
+ * 附带分位数草图用于估算中位数与高分位数。两个统计量可按 Chan 的并行公式合并
+ *
+ * @author traffic-sim
+ */
+public class RunningStat {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final QuantileSketch sketch;
+
+    public RunningStat() {
+        this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy 分位数草图的相对误差（越大桶越少、内存越小）
+     */
+    public RunningStat(double relativeAccuracy) {
+        this.sketch = new QuantileSketch(relativeAccuracy);
+    }
+
+    /**
+     * 记录一个样本（NaN 被忽略）
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sketch.add(value);
+    }
+
+    /**
+     * 合并另一个统计量
+     */
+    public void merge(RunningStat other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            count = total;
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * 样本方差（n - 1）
+     */
+    public double variance() {
+        return count > 1 ? m2 / (count - 1) : 0.0;
+    }
+
+    public double stdDev() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        return count > 0 ? min : 0.0;
+    }
+
+    public double max() {
+        return count > 0 ? max : 0.0;
+    }
+
+    public double quantile(double quantile) {
+        return sketch.quantile(quantile);
+    }
+
+    /**
+     * 摘要：{"count", "mean", "std", "min", "max", "p50", "p95"}
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", count);
+        values.put("mean", mean);
+        values.put("std", stdDev());
+        values.put("min", min());
+        values.put("max", max());
+        values.put("p50", sketch.quantile(0.5));
+        values.put("p95", sketch.quantile(0.95));
+        return values;
+    }
+}
@@ -0,0 +1,184 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LaneIndex 测试
+ *
+ * @author traffic-sim
+ */
+class LaneIndexTest {
+
+    private static final double STOP_SPEED = 0.1;
+    private static final double CELL_LENGTH = 1.0;
+    private static final double VEHICLE_LENGTH = 5.0;
+    private static final double MAX_SPACING = 15.0;
+
+    @Test
+    void groupsByRoadAndLaneFromStopLineUpstream() {
+        VehicleBatch batch = batch(
+                vehicle(0, 1, 0, 10, 5.0),
+                vehicle(1, 1, 0, 40, 5.0),
+                vehicle(2, 1, 1, 7, 5.0),
+                vehicle(3, 1, 0, null, 5.0),
+                vehicle(4, 1, 0, 25, 5.0),
+                vehicle(5, null, 0, 30, 5.0),
+                vehicle(6, 2, null, 30, 5.0));
+        LaneIndex index = new LaneIndex();
+        index.build(batch);
+
+        assertEquals(2, index.getGroupCount());
+        assertEquals(5, index.getIndexedVehicles());
+        assertEquals(4, index.getPositionedVehicles());
+
+        int lane = group(index, 1, 0);
+        // 位置大的在下游，无位置的车辆排在最上游
+        assertEquals(List.of(1, 4, 0, 3), rows(index, lane));
+        assertEquals(List.of(2), rows(index, group(index, 1, 1)));
+        assertEquals(Map.of("1_0", 4, "1_1", 1), index.laneFlow());
+    }
+
+    @Test
+    void sortKeyHandlesNegativePositionsAndTies() {
+        VehicleBatch batch = batch(
+                vehicle(0, 3, 0, -5, 0.0),
+                vehicle(1, 3, 0, 0, 0.0),
+                vehicle(2, 3, 0, Integer.MAX_VALUE, 0.0),
+                vehicle(3, 3, 0, -5, 0.0),
+                vehicle(4, 3, 0, Integer.MIN_VALUE + 1, 0.0),
+                vehicle(5, 3, 0, null, 0.0));
+        LaneIndex index = new LaneIndex();
+        index.build(batch);
+
+        // 同一位置按行号排列；最小的有效位置仍排在无位置车辆之前
+        assertEquals(List.of(2, 1, 0, 3, 4, 5), rows(index, 0));
+    }
+
+    @Test
+    void laneKeyDoesNotSignExtendLaneIds() {
+        assertNotEquals(LaneIndex.laneKey(1, -1), LaneIndex.laneKey(0, -1));
+        assertNotEquals(LaneIndex.laneKey(-1, 0), LaneIndex.laneKey(0, -1));
+
+        LaneIndex index = new LaneIndex();
+        index.build(batch(vehicle(0, 1, -1, 3, 1.0), vehicle(1, -1, 2, 3, 1.0)));
+        assertEquals(Map.of("1_-1", 1, "-1_2", 1), index.laneFlow());
+    }
+
+    @Test
+    void queueIsContiguousStoppedPlatoonFromStopLine() {
+        VehicleBatch batch = batch(
+                // 道路 1 车道 0：100、95、88 停止且间距不超过 15 米，70 与 88 间距 18 米，断开
+                vehicle(0, 1, 0, 100, 0.0),
+                vehicle(1, 1, 0, 88, 0.05),
+                vehicle(2, 1, 0, 95, 0.0),
+                vehicle(3, 1, 0, 70, 0.0),
+                // 道路 1 车道 1：60 停止、50 行驶，排队只有停车线处一辆
+                vehicle(4, 1, 1, 60, 0.0),
+                vehicle(5, 1, 1, 50, 8.0),
+                vehicle(6, 1, 1, 45, 0.0),
+                // 道路 2 车道 0：停车线处车辆行驶，没有排队
+                vehicle(7, 2, 0, 80, 3.0),
+                vehicle(8, 2, 0, 70, 0.0),
+                // 道路 3 车道 0：停止车辆没有位置，不计入排队
+                vehicle(9, 3, 0, null, 0.0));
+        LaneIndex index = new LaneIndex();
+        index.build(batch);
+        index.computeQueues(batch, STOP_SPEED, CELL_LENGTH, VEHICLE_LENGTH, MAX_SPACING);
+
+        assertEquals(2, index.getQueuedLanes());
+        assertEquals(5.0, index.getQueueLengthMin());
+        assertEquals(17.0, index.getQueueLengthMax());
+        assertEquals(11.0, index.getQueueLengthAverage());
+
+        Map<String, Object> details = index.queueDetails();
+        assertEquals(Map.of("1_0", 17.0, "1_1", 5.0), details.get("lanes"));
+        assertEquals(Map.of(1, 17.0), details.get("roads"));
+    }
+
+    @Test
+    void noQueueReportsZeroLengths() {
+        VehicleBatch batch = batch(vehicle(0, 1, 0, 10, 4.0), vehicle(1, 1, 0, 5, 0.0));
+        LaneIndex index = new LaneIndex();
+        index.build(batch);
+        index.computeQueues(batch, STOP_SPEED, CELL_LENGTH, VEHICLE_LENGTH, MAX_SPACING);
+
+        assertEquals(0, index.getQueuedLanes());
+        assertEquals(0.0, index.getQueueLengthMin());
+        assertEquals(0.0, index.getQueueLengthMax());
+        assertEquals(0.0, index.getQueueLengthAverage());
+        assertTrue(((Map<?, ?>) index.queueDetails().get("lanes")).isEmpty());
+    }
+
+    @Test
+    void rebuildGrowsAndReplacesPreviousStep() {
+        LaneIndex index = new LaneIndex();
+        List<SimulationStepData.Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // 300 个车道，超过初始的组与行容量
+            vehicles.add(vehicle(i, i % 300, 0, i, 1.0));
+        }
+        VehicleBatch large = new VehicleBatch();
+        large.load(vehicles);
+        index.build(large);
+        assertEquals(300, index.getGroupCount());
+        assertEquals(1000, index.getIndexedVehicles());
+        for (int group = 0; group < index.getGroupCount(); group++) {
+            List<Integer> rows = rows(index, group);
+            for (int i = 1; i < rows.size(); i++) {
+                assertTrue(rows.get(i - 1) > rows.get(i));
+            }
+        }
+
+        index.build(batch(vehicle(0, 7, 1, 1, 0.0)));
+        assertEquals(1, index.getGroupCount());
+        assertEquals(Map.of("7_1", 1), index.laneFlow());
+    }
+
+    private static int group(LaneIndex index, int roadId, int laneId) {
+        long key = LaneIndex.laneKey(roadId, laneId);
+        for (int group = 0; group < index.getGroupCount(); group++) {
+            if (index.groupKey(group) == key) {
+                return group;
+            }
+        }
+        throw new AssertionError("lane not indexed: " + roadId + "_" + laneId);
+    }
+
+    private static List<Integer> rows(LaneIndex index, int group) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < index.groupSize(group); i++) {
+            rows.add(index.row(group, i));
+        }
+        return rows;
+    }
+
+    private static VehicleBatch batch(SimulationStepData.Vehicle... vehicles) {
+        VehicleBatch batch = new VehicleBatch();
+        batch.load(List.of(vehicles));
+        return batch;
+    }
+
+    private static SimulationStepData.Vehicle vehicle(int id, Integer roadId, Integer laneId, Integer cell,
+                                                      double speed) {
+        SimulationStepData.Vehicle vehicle = new SimulationStepData.Vehicle();
+        vehicle.setId(id);
+        vehicle.setRoadId(roadId);
+        vehicle.setLaneId(laneId);
+        vehicle.setSpeed(speed);
+        Map<String, Object> attributes = new HashMap<>();
+        if (cell != null) {
+            attributes.put("cell_id", cell);
+        }
+        vehicle.setAttributes(attributes);
+        return vehicle;
+    }
+}
@@ -0,0 +1,160 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OdMatrix 测试
+ *
+ * @author traffic-sim
+ */
+class OdMatrixTest {
+
+    private static final double STEP_SECONDS = 0.5;
+
+    private final StepKernelState state = new StepKernelState();
+    private final OdMatrix matrix = new OdMatrix(16, 0.01);
+
+    @Test
+    void finishedTripUsesFirstAndLastRoad() {
+        apply(1, vehicle(1, null), vehicle(2, 5));
+        apply(2, vehicle(1, 10), vehicle(2, 5));
+        apply(3, vehicle(1, 20), vehicle(2, 6));
+        // 车辆 1 在第 4 步离开：第 1~3 步在网，行程 3 步；车辆 2 仍在网
+        apply(4, vehicle(2, 6));
+
+        Map<String, Object> snapshot = matrix.snapshot(1);
+        assertEquals(1L, snapshot.get("trips"));
+        assertEquals(0L, snapshot.get("unknown_trips"));
+        assertEquals(List.of(pair(10, 20, 1, 3 * STEP_SECONDS)), pairs(snapshot));
+    }
+
+    @Test
+    void tripWithoutRoadIsUnknown() {
+        apply(1, vehicle(1, null));
+        apply(2);
+
+        Map<String, Object> snapshot = matrix.snapshot(1);
+        assertEquals(1L, snapshot.get("trips"));
+        assertEquals(1L, snapshot.get("unknown_trips"));
+        assertEquals(0, snapshot.get("pairs"));
+    }
+
+    @Test
+    void reusedSlotStartsNewTrip() {
+        apply(1, vehicle(1, 10));
+        apply(2, vehicle(1, 11));
+        apply(3);
+        // 车辆 2 复用车辆 1 回收的槽位，行程从第 4 步、道路 30 开始
+        apply(4, vehicle(2, 30));
+        assertEquals(1, state.getIdTracker().getSlotCapacity());
+        apply(5, vehicle(2, 31));
+        apply(6);
+
+        Map<String, Object> snapshot = matrix.snapshot(1);
+        assertEquals(2L, snapshot.get("trips"));
+        assertEquals(List.of(pair(10, 11, 1, 2 * STEP_SECONDS), pair(30, 31, 1, 2 * STEP_SECONDS)),
+                pairs(snapshot));
+    }
+
+    @Test
+    void restartDropsTripsAlreadyInNetwork() {
+        apply(1, vehicle(1, 10), vehicle(2, 10));
+        // 停用期间车辆 2 离开、车辆 3 复用其槽位，OD 分组在第 3 步重新启用
+        state.load(step(2, vehicle(1, 11)), STEP_SECONDS, 14.0);
+        state.load(step(3, vehicle(1, 11), vehicle(3, 12), vehicle(4, 40)), STEP_SECONDS, 14.0);
+        assertEquals(3, state.getIdTracker().getSlotCapacity());
+        matrix.restart(state.getBatch(), state.getIdTracker());
+        matrix.update(state.getBatch(), state.getIdTracker(), 3, STEP_SECONDS);
+        apply(4, vehicle(4, 41));
+
+        // 车辆 1 的起点未被观测，离开时不计入；车辆 3、4 在重新启用当步进入，行程完整，
+        // 车辆 3 的起点是自己的道路而不是槽位上一个使用者（车辆 2）的道路
+        apply(5);
+        Map<String, Object> snapshot = matrix.snapshot(1);
+        assertEquals(2L, snapshot.get("trips"));
+        assertEquals(List.of(pair(12, 12, 1, STEP_SECONDS), pair(40, 41, 1, 2 * STEP_SECONDS)), pairs(snapshot));
+    }
+
+    @Test
+    void finishClosesTripsStillInNetwork() {
+        apply(1, vehicle(1, 10), vehicle(2, 20));
+        // OD 分组在第 2 步重新启用，车辆 3 当步进入
+        state.load(step(2, vehicle(1, 10), vehicle(2, 20), vehicle(3, 30)), STEP_SECONDS, 14.0);
+        matrix.restart(state.getBatch(), state.getIdTracker());
+        matrix.update(state.getBatch(), state.getIdTracker(), 2, STEP_SECONDS);
+        apply(3, vehicle(1, 10), vehicle(2, 20), vehicle(3, 30), vehicle(4, 40));
+        apply(4, vehicle(4, 50));
+
+        matrix.finish(STEP_SECONDS);
+        Map<String, Object> snapshot = matrix.snapshot(1);
+        // 车辆 1、2 在 restart 之前已在网，不计入；重新启用当步进入的车辆 3 是完整行程；
+        // 车辆 4 在结束时仍在网，按最后出现的道路结束
+        assertEquals(2L, snapshot.get("trips"));
+        assertEquals(1L, snapshot.get("unfinished_trips"));
+        assertEquals(List.of(pair(30, 30, 1, 2 * STEP_SECONDS), pair(40, 50, 1, 2 * STEP_SECONDS)),
+                pairs(snapshot));
+
+        // 结束后再次收尾不会重复计入
+        matrix.finish(STEP_SECONDS);
+        assertEquals(2L, matrix.snapshot(1).get("trips"));
+    }
+
+    @Test
+    void pairsBeyondLimitAreDropped() {
+        OdMatrix limited = new OdMatrix(2, 0.01);
+        List<SimulationStepData.Vehicle> vehicles = new ArrayList<>();
+        for (int id = 0; id < 4; id++) {
+            vehicles.add(vehicle(id, id));
+        }
+        state.load(step(1, vehicles.toArray(new SimulationStepData.Vehicle[0])), STEP_SECONDS, 14.0);
+        limited.update(state.getBatch(), state.getIdTracker(), 1, STEP_SECONDS);
+        state.load(step(2), STEP_SECONDS, 14.0);
+        limited.update(state.getBatch(), state.getIdTracker(), 2, STEP_SECONDS);
+
+        Map<String, Object> snapshot = limited.snapshot(1);
+        assertEquals(4L, snapshot.get("trips"));
+        assertEquals(2L, snapshot.get("dropped_trips"));
+        assertEquals(2, snapshot.get("pairs"));
+        assertTrue(limited.snapshot(2).get("od") instanceof List<?> od && od.isEmpty());
+    }
+
+    private void apply(long step, SimulationStepData.Vehicle... vehicles) {
+        state.load(step(step, vehicles), STEP_SECONDS, 14.0);
+        matrix.update(state.getBatch(), state.getIdTracker(), step, STEP_SECONDS);
+    }
+
+    private static SimulationStepData step(long step, SimulationStepData.Vehicle... vehicles) {
+        SimulationStepData stepData = new SimulationStepData();
+        stepData.setStep(step);
+        stepData.setVehicles(List.of(vehicles));
+        return stepData;
+    }
+
+    private static SimulationStepData.Vehicle vehicle(int id, Integer roadId) {
+        SimulationStepData.Vehicle vehicle = new SimulationStepData.Vehicle();
+        vehicle.setId(id);
+        vehicle.setSpeed(10.0);
+        vehicle.setRoadId(roadId);
+        return vehicle;
+    }
+
+    private static List<Object> pair(int origin, int destination, long count, double travelTime) {
+        return List.of(origin, destination, count, travelTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<List<Object>> pairs(Map<String, Object> snapshot) {
+        List<List<Object>> pairs = new ArrayList<>();
+        for (Map<String, Object> pair : (List<Map<String, Object>>) snapshot.get("od")) {
+            pairs.add(List.of(pair.get("origin"), pair.get("destination"), pair.get("count"), pair.get("mean")));
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,99 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * StatisticsBuffer 测试
+ *
+ * @author traffic-sim
+ */
+class StatisticsBufferTest {
+
+    @Test
+    void windowsAreSortedDedupedAndPositive() {
+        assertArrayEquals(new int[]{3, 10}, new StatisticsBuffer(new int[]{10, 0, 3, -1, 10}).getWindows());
+        assertArrayEquals(StatisticsBuffer.DEFAULT_WINDOWS, new StatisticsBuffer(new int[]{0, -5}).getWindows());
+    }
+
+    @Test
+    void averagesPartialWindowByRecordedSteps() {
+        StatisticsBuffer buffer = new StatisticsBuffer(new int[]{3, 5});
+        assertEquals(0.0, buffer.getAverageInFlow(0));
+
+        buffer.record(4, 1);
+        buffer.record(2, 0);
+        assertEquals(3.0, buffer.getAverageInFlow(0));
+        assertEquals(3.0, buffer.getAverageInFlow(1));
+        assertEquals(0.5, buffer.getAverageOutFlow(1));
+    }
+
+    @Test
+    void evictsStepsThatLeaveEachWindow() {
+        StatisticsBuffer buffer = new StatisticsBuffer(new int[]{3, 5});
+        int[] in = {1, 2, 3, 4, 5, 6, 7};
+        for (int value : in) {
+            buffer.record(value, value * 10);
+        }
+        // 最近 3 步：5、6、7；最近 5 步：3..7
+        assertEquals(6.0, buffer.getAverageInFlow(0));
+        assertEquals(5.0, buffer.getAverageInFlow(1));
+        assertEquals(60.0, buffer.getAverageOutFlow(0));
+        assertEquals(50.0, buffer.getAverageOutFlow(1));
+        assertEquals(28, buffer.getTotalInFlow());
+        assertEquals(280, buffer.getTotalOutFlow());
+        assertEquals(7, buffer.getSteps());
+
+        Map<String, Object> rolling = buffer.getRollingFlow();
+        assertEquals(List.of("3", "5"), new ArrayList<>(rolling.keySet()));
+        assertEquals(Map.of("in", 6.0, "out", 60.0), rolling.get("3"));
+    }
+
+    @Test
+    void matchesReferenceOverManyWraps() {
+        int[] windows = {7, 60, 300};
+        StatisticsBuffer buffer = new StatisticsBuffer(windows);
+        List<int[]> history = new ArrayList<>();
+        Random random = new Random(20240612L);
+        for (int step = 0; step < 2000; step++) {
+            int in = random.nextInt(50);
+            int out = random.nextInt(50);
+            buffer.record(in, out);
+            history.add(new int[]{in, out});
+            for (int w = 0; w < windows.length; w++) {
+                int from = Math.max(0, history.size() - windows[w]);
+                long inSum = 0;
+                long outSum = 0;
+                for (int i = from; i < history.size(); i++) {
+                    inSum += history.get(i)[0];
+                    outSum += history.get(i)[1];
+                }
+                int filled = history.size() - from;
+                assertEquals((double) inSum / filled, buffer.getAverageInFlow(w));
+                assertEquals((double) outSum / filled, buffer.getAverageOutFlow(w));
+            }
+        }
+    }
+
+    @Test
+    void clearRestartsWindowsButKeepsTotals() {
+        StatisticsBuffer buffer = new StatisticsBuffer(new int[]{2});
+        buffer.record(5, 5);
+        buffer.record(7, 1);
+        buffer.clear();
+        assertEquals(0.0, buffer.getAverageInFlow(0));
+        assertEquals(0, buffer.getSteps());
+
+        buffer.record(1, 3);
+        assertEquals(1.0, buffer.getAverageInFlow(0));
+        assertEquals(3.0, buffer.getAverageOutFlow(0));
+        assertEquals(13, buffer.getTotalInFlow());
+    }
+}
@@ -0,0 +1,169 @@
+package com.traffic.sim.plugin.statistics.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * VehicleIdTracker 测试
+ *
+ * @author traffic-sim
+ */
+class VehicleIdTrackerTest {
+
+    @Test
+    void countsEnteredAndExitedVehicles() {
+        VehicleIdTracker tracker = new VehicleIdTracker();
+        step(tracker, 1, 2, 3);
+        assertEquals(3, tracker.getEntered());
+        assertEquals(0, tracker.getExited());
+        assertEquals(3, tracker.getActiveCount());
+
+        step(tracker, 2, 3, 4, 4);
+        // 同一步内重复出现只计一次
+        assertEquals(1, tracker.getEntered());
+        assertEquals(1, tracker.getExited());
+        assertEquals(3, tracker.getActiveCount());
+
+        step(tracker);
+        assertEquals(0, tracker.getEntered());
+        assertEquals(3, tracker.getExited());
+        assertEquals(0, tracker.getActiveCount());
+    }
+
+    @Test
+    void slotIsStableWhileVehicleStays() {
+        VehicleIdTracker tracker = new VehicleIdTracker();
+        tracker.beginStep();
+        int slot = tracker.observe(42);
+        tracker.observe(7);
+        tracker.endStep();
+
+        tracker.beginStep();
+        assertEquals(slot, tracker.observe(42));
+        tracker.endStep();
+        assertEquals(1, tracker.getExited());
+        assertNotEquals(slot, tracker.exitedSlot(0));
+    }
+
+    @Test
+    void exitedSlotIsReusedOnlyFromNextStep() {
+        VehicleIdTracker tracker = new VehicleIdTracker();
+        tracker.beginStep();
+        int first = tracker.observe(1);
+        tracker.endStep();
+
+        // 车辆 1 离开的同一步内进入的车辆 2 不能占用其槽位
+        tracker.beginStep();
+        int second = tracker.observe(2);
+        tracker.endStep();
+        assertEquals(1, tracker.getExited());
+        assertEquals(first, tracker.exitedSlot(0));
+        assertNotEquals(first, second);
+
+        tracker.beginStep();
+        tracker.observe(2);
+        assertEquals(first, tracker.observe(3));
+        tracker.endStep();
+        assertEquals(2, tracker.getSlotCapacity());
+
+        // 离开后再次出现的车辆按新进入计数
+        tracker.beginStep();
+        tracker.observe(2);
+        tracker.observe(3);
+        tracker.observe(1);
+        tracker.endStep();
+        assertEquals(1, tracker.getEntered());
+        assertEquals(3, tracker.getSlotCapacity());
+    }
+
+    @Test
+    void enteredSlotsAreThisStepsNewVehicles() {
+        VehicleIdTracker tracker = new VehicleIdTracker();
+        step(tracker, 1, 2, 3);
+        tracker.beginStep();
+        tracker.observe(3);
+        int four = tracker.observe(4);
+        tracker.observe(1);
+        int five = tracker.observe(5);
+        tracker.endStep();
+
+        assertEquals(2, tracker.getEntered());
+        assertEquals(Set.of(four, five), Set.of(tracker.enteredSlot(0), tracker.enteredSlot(1)));
+    }
+
+    @Test
+    void matchesReferenceUnderChurn() {
+        // 随机进出，槽位数不超过同时在网车辆数的峰值，且在网车辆的槽位互不相同
+        Random random = new Random(20240611L);
+        VehicleIdTracker tracker = new VehicleIdTracker();
+        Map<Integer, Integer> slots = new HashMap<>();
+        int peak = 0;
+        for (int step = 0; step < 500; step++) {
+            Set<Integer> present = new HashSet<>();
+            for (int id : slots.keySet()) {
+                if (random.nextInt(10) != 0) {
+                    present.add(id);
+                }
+            }
+            int arrivals = random.nextInt(40);
+            for (int i = 0; i < arrivals; i++) {
+                present.add(random.nextInt(2000));
+            }
+
+            tracker.beginStep();
+            Map<Integer, Integer> observed = new HashMap<>();
+            for (int id : present) {
+                observed.put(id, tracker.observe(id));
+            }
+            tracker.endStep();
+
+            int entered = 0;
+            for (Map.Entry<Integer, Integer> entry : observed.entrySet()) {
+                Integer previous = slots.get(entry.getKey());
+                if (previous == null) {
+                    entered++;
+                } else {
+                    assertEquals(previous, entry.getValue());
+                }
+            }
+            List<Integer> exitedSlots = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> entry : slots.entrySet()) {
+                if (!present.contains(entry.getKey())) {
+                    exitedSlots.add(entry.getValue());
+                }
+            }
+            assertEquals(entered, tracker.getEntered());
+            assertEquals(exitedSlots.size(), tracker.getExited());
+            Set<Integer> reportedExits = new HashSet<>();
+            for (int i = 0; i < tracker.getExited(); i++) {
+                reportedExits.add(tracker.exitedSlot(i));
+            }
+            assertEquals(new HashSet<>(exitedSlots), reportedExits);
+
+            slots = observed;
+            assertEquals(slots.size(), tracker.getActiveCount());
+            assertEquals(slots.size(), new HashSet<>(slots.values()).size());
+            peak = Math.max(peak, slots.size() + exitedSlots.size());
+            assertTrue(tracker.getSlotCapacity() <= peak);
+        }
+    }
+
+    private static void step(VehicleIdTracker tracker, int... ids) {
+        tracker.beginStep();
+        for (int id : ids) {
+            tracker.observe(id);
+        }
+        tracker.endStep();
+    }
+}
@@ -0,0 +1,231 @@
+package com.traffic.sim.plugin.statistics.service;
+
+import com.traffic.sim.common.model.StatisticsData;
+import com.traffic.sim.plugin.statistics.calculator.FusedStatisticsKernel;
+import com.traffic.sim.plugin.statistics.calculator.QueueLengthEstimator;
+import com.traffic.sim.plugin.statistics.calculator.StatisticsCalculatorRegistry;
+import com.traffic.sim.plugin.statistics.calculator.impl.AccelerationCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.DelayCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.FlowCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.InOutCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.PercentileCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.QueueCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.SignalPhaseCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.SpeedCalculator;
+import com.traffic.sim.plugin.statistics.calculator.impl.StopCalculator;
+import com.traffic.sim.plugin.statistics.config.StatisticsPluginProperties;
+import com.traffic.sim.plugin.statistics.parser.SimulationDataParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 融合内核与逐个计算器的等价性测试：同一组仿真步分别经过 fused=true 与 fused=false 的执行计划，
+ * 每步输出的统计结果必须完全相同（包括空步、缺少速度、只有加速度的车辆与分块并行路径）
+ *
+ * @author traffic-sim
+ */
+class FusedKernelEquivalenceTest {
+
+    /** 测试使用的并行阈值（分块大小最小为 1024，大步至少切成三块） */
+    private static final int PARALLEL_THRESHOLD = 1000;
+
+    private static final String SESSION_ID = "equivalence";
+
+    private Harness fused;
+    private Harness calculators;
+
+    @BeforeEach
+    void setUp() {
+        fused = new Harness(true);
+        calculators = new Harness(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fused.shutdown();
+        calculators.shutdown();
+    }
+
+    @Test
+    void emptyStepsProduceIdenticalResults() {
+        assertSameStep(step(1, List.of()));
+        assertSameStep(step(2, vehicles(new Random(1L), 0, 40)));
+        assertSameStep(step(3, List.of()));
+        assertSameStep(step(4, List.of()));
+    }
+
+    @Test
+    void missingSpeedsAndAccelerationOnlyVehiclesProduceIdenticalResults() {
+        Random random = new Random(7L);
+        for (long step = 1; step <= 30; step++) {
+            List<Map<String, Object>> vehicles = vehicles(random, (int) step, 60);
+            for (int i = 0; i < vehicles.size(); i += 3) {
+                // 只有加速度（无 speed/cur_spd）
+                vehicles.get(i).remove("speed");
+            }
+            for (int i = 1; i < vehicles.size(); i += 5) {
+                // 既无速度也无加速度
+                vehicles.get(i).remove("speed");
+                vehicles.get(i).remove("acc");
+            }
+            assertSameStep(step(step, vehicles));
+        }
+    }
+
+    @Test
+    void parallelChunkedStepsProduceIdenticalResults() {
+        Random random = new Random(42L);
+        for (long step = 1; step <= 12; step++) {
+            // 大小步交替：大步走分块并行路径，小步走单线程路径，车辆ID跨步重叠以产生进出
+            int count = step % 3 == 0 ? 200 : 3500;
+            assertSameStep(step(step, vehicles(random, (int) step * 150, count)));
+        }
+        assertSameStep(step(13, List.of()));
+        assertEquals(runSummary(calculators), runSummary(fused));
+    }
+
+    /**
+     * 运行摘要（去掉墙钟时间字段）
+     */
+    private static Map<String, Object> runSummary(Harness harness) {
+        Map<String, Object> summary = harness.service.getRunSummary(SESSION_ID);
+        assertNotNull(summary);
+        summary.remove("started_at");
+        summary.remove("updated_at");
+        return summary;
+    }
+
+    /**
+     * 同一仿真步送入两个服务，比较输出的结果字段
+     */
+    private void assertSameStep(Map<String, Object> simData) {
+        StatisticsData expected = calculators.service.processSimulationStep(SESSION_ID, copy(simData));
+        StatisticsData actual = fused.service.processSimulationStep(SESSION_ID, copy(simData));
+        assertNotNull(expected.getCustom());
+        assertFalse(expected.getCustom().isEmpty());
+        assertEquals(normalize(expected.getCustom()), normalize(actual.getCustom()), "step " + simData.get("step"));
+    }
+
+    /**
+     * 热力图以基本类型数组输出，转换为列表后按内容比较
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> normalized = new HashMap<>();
+            map.forEach((key, item) -> normalized.put(key, normalize(item)));
+            return normalized;
+        }
+        if (value instanceof int[] ints) {
+            return Arrays.stream(ints).boxed().toList();
+        }
+        if (value instanceof float[] floats) {
+            List<Float> list = new ArrayList<>(floats.length);
+            for (float f : floats) {
+                list.add(f);
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static Map<String, Object> step(long step, List<Map<String, Object>> vehicles) {
+        Map<String, Object> simData = new HashMap<>();
+        simData.put("step", step);
+        simData.put("timestamp", 1_700_000_000_000L + step * 1000);
+        simData.put("vehicles", vehicles);
+        return simData;
+    }
+
+    /**
+     * 生成 ID 连续的车辆：速度含停车与低速，部分车辆位于路口并带有引擎提供的延误与排队时间
+     */
+    private static List<Map<String, Object>> vehicles(Random random, int firstId, int count) {
+        List<Map<String, Object>> vehicles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> vehicle = new HashMap<>();
+            vehicle.put("id", firstId + i);
+            int bucket = random.nextInt(10);
+            double speed = bucket == 0 ? 0.0 : bucket == 1 ? random.nextDouble() * 0.5 : random.nextDouble() * 20;
+            vehicle.put("speed", speed);
+            vehicle.put("acc", random.nextDouble() * 6 - 3);
+            vehicle.put("link_id", random.nextInt(40));
+            vehicle.put("lane_id", random.nextInt(3));
+            vehicle.put("x", random.nextDouble() * 2000);
+            vehicle.put("y", random.nextDouble() * 2000);
+            if (random.nextInt(4) == 0) {
+                vehicle.put("crossId", random.nextInt(8));
+            }
+            if (random.nextInt(6) == 0) {
+                vehicle.put("delay", random.nextDouble() * 30);
+                vehicle.put("queueTime", random.nextDouble() * 20);
+            }
+            vehicles.add(vehicle);
+        }
+        return vehicles;
+    }
+
+    /**
+     * 两个服务各自解析独立的副本（解析器保留车辆 Map 作为属性）
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copy(Map<String, Object> simData) {
+        Map<String, Object> copy = new HashMap<>(simData);
+        List<Map<String, Object>> vehicles = new ArrayList<>();
+        for (Map<String, Object> vehicle : (List<Map<String, Object>>) simData.get("vehicles")) {
+            vehicles.add(new HashMap<>(vehicle));
+        }
+        copy.put("vehicles", vehicles);
+        return copy;
+    }
+
+    /**
+     * 按 Spring 装配方式手工组装的统计服务（计算器按组件扫描的类名顺序注册）
+     */
+    private static final class Harness {
+
+        private final StatisticsExecutor executor;
+        private final StatisticsServiceImpl service;
+
+        Harness(boolean fusedKernel) {
+            StatisticsPluginProperties properties = new StatisticsPluginProperties();
+            properties.getPerformance().setFusedKernel(fusedKernel);
+            properties.getPerformance().setParallelThreshold(PARALLEL_THRESHOLD);
+            properties.getPerformance().setChunkSize(1024);
+            properties.getPerformance().setParallelism(4);
+            properties.getHeatmap().setPublishInterval(1);
+
+            executor = new StatisticsExecutor(properties);
+            QueueLengthEstimator queueLengthEstimator = new QueueLengthEstimator(properties);
+            StatisticsCalculatorRegistry registry = new StatisticsCalculatorRegistry();
+            registry.register(new AccelerationCalculator());
+            registry.register(new DelayCalculator());
+            registry.register(new FlowCalculator());
+            registry.register(new InOutCalculator());
+            registry.register(new PercentileCalculator());
+            registry.register(new QueueCalculator(queueLengthEstimator));
+            registry.register(new SignalPhaseCalculator(properties));
+            registry.register(new SpeedCalculator());
+            registry.register(new StopCalculator());
+
+            service = new StatisticsServiceImpl(registry, new SimulationDataParser(),
+                new StatisticsContextFactory(properties), new FusedStatisticsKernel(executor, queueLengthEstimator),
+                properties, executor);
+        }
+
+        void shutdown() {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.traffic.sim.plugin.statistics.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * QuantileSketch 测试
+ *
+ * @author traffic-sim
+ */
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999};
+
+    @Test
+    void emptySketchReturnsZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertEquals(0, sketch.count());
+        assertEquals(0.0, sketch.quantile(0.5));
+        assertEquals(0.0, sketch.min());
+        assertEquals(0.0, sketch.max());
+    }
+
+    @Test
+    void rejectsInvalidAccuracy() {
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(0));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(1));
+    }
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        for (double accuracy : new double[]{0.01, 0.05}) {
+            Random random = new Random(20240613L);
+            QuantileSketch sketch = new QuantileSketch(accuracy);
+            double[] values = new double[20_000];
+            for (int i = 0; i < values.length; i++) {
+                // 对数正态分布，跨越多个数量级
+                values[i] = Math.exp(random.nextGaussian() * 2);
+                sketch.add(values[i]);
+            }
+            Arrays.sort(values);
+            for (double q : QUANTILES) {
+                double exact = values[(int) Math.floor(q * (values.length - 1))];
+                double estimate = sketch.quantile(q);
+                assertTrue(Math.abs(estimate - exact) <= accuracy * exact * (1 + 1e-9),
+                        "q=" + q + " exact=" + exact + " estimate=" + estimate + " accuracy=" + accuracy);
+            }
+            assertEquals(values[0], sketch.quantile(0));
+            assertEquals(values[values.length - 1], sketch.quantile(1));
+        }
+    }
+
+    @Test
+    void lowValuesReturnExactMinimum() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(-2.0);
+        sketch.add(0.0);
+        sketch.add(0.0);
+        sketch.add(10.0);
+        sketch.add(10.0);
+        sketch.add(Double.NaN);
+
+        // 0 与负数落在低值桶，估算为精确最小值
+        assertEquals(5, sketch.count());
+        assertEquals(-2.0, sketch.quantile(0.5));
+        assertEquals(-2.0, sketch.min());
+        assertEquals(10.0, sketch.quantile(0.99), 10.0 * sketch.getRelativeAccuracy());
+    }
+
+    @Test
+    void valuesAboveRangeFallIntoHighestBucket() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(1.0);
+        for (int i = 0; i < 3; i++) {
+            sketch.add(QuantileSketch.MAX_INDEXABLE * 100);
+        }
+        // 超出上限的值计入最高桶，估计值为上限附近；精确最大值仍保留
+        assertEquals(QuantileSketch.MAX_INDEXABLE, sketch.quantile(0.99),
+                QuantileSketch.MAX_INDEXABLE * sketch.getRelativeAccuracy());
+        assertEquals(QuantileSketch.MAX_INDEXABLE * 100, sketch.quantile(1));
+        assertEquals(4, sketch.count());
+    }
+
+    @Test
+    void mergeEqualsSingleSketchRegardlessOfSplit() {
+        Random random = new Random(20240614L);
+        double[] values = new double[10_000];
+        QuantileSketch whole = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(20) == 0 ? 0.0 : random.nextDouble() * 30;
+            whole.add(values[i]);
+        }
+
+        QuantileSketch merged = new QuantileSketch();
+        QuantileSketch chunk = new QuantileSketch();
+        for (int from = values.length; from > 0; from -= 1024) {
+            // 逆序分块合并，复用同一个块草图
+            chunk.reset();
+            for (int i = Math.max(0, from - 1024); i < from; i++) {
+                chunk.add(values[i]);
+            }
+            merged.merge(chunk);
+        }
+        merged.merge(new QuantileSketch());
+
+        assertEquals(whole.count(), merged.count());
+        assertEquals(whole.min(), merged.min());
+        assertEquals(whole.max(), merged.max());
+        for (double q : QUANTILES) {
+            assertEquals(whole.quantile(q), merged.quantile(q));
+        }
+        for (double q : QUANTILES) {
+            assertEquals(whole.quantile(q), whole.copy().quantile(q));
+        }
+    }
+
+    @Test
+    void mergeRejectsDifferentAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.02)));
+    }
+
+    @Test
+    void resetClearsState() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(i);
+        }
+        sketch.reset();
+        assertEquals(0, sketch.count());
+        assertEquals(0.0, sketch.quantile(0.5));
+
+        sketch.add(5.0);
+        assertEquals(5.0, sketch.quantile(0.5));
+        assertEquals(5.0, sketch.min());
+    }
+}
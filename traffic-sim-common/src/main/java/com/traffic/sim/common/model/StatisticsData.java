@@ -108,6 +108,24 @@ public class StatisticsData implements Serializable {
     /** 平均车道流量 */
     private Double averageLaneFlow;
     
+    /** 滚动流量：窗口大小（仿真步） -> {in: 平均进入, out: 平均离开} */
+    private Map<String, Object> rollingFlow;
+    
+    /** 排队详情：{lanes: {"道路_车道": 排队长度(米)}, roads: {道路ID: 最大车道排队(米)}} */
+    private Map<String, Object> queueDetails;
+    
+    /** 当前步分位数：{speed|delay|queue_time: {p50, p90, p95, p99, count}} */
+    private Map<String, Object> percentiles;
+    
+    /** 会话累计分位数（结构同 percentiles） */
+    private Map<String, Object> cumulativePercentiles;
+    
+    /** 密度热力图（只在发布步有值）：{cell_size, origin_x, origin_y, cols, rows, vehicles, max_occupancy, occupancy[], speed[]} */
+    private Map<String, Object> heatmap;
+    
+    /** 信号相位统计：{intersections, green_utilization, green_ratio, cycle_ave, crosses: {路口ID: {...}}} */
+    private Map<String, Object> signalPhases;
+    
     /** 信号灯状态列表 */
     private List<SignalState> signalStates;
     
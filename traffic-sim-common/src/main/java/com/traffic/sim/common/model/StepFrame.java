@@ -0,0 +1,295 @@
+package com.traffic.sim.common.model;
+
+import com.traffic.sim.common.util.IntIntHashMap;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 列式仿真步数据帧
+ * 按车辆ID原地更新（upsert）的基本类型数组，一个仿真步内同一车辆只占一行；
+ * 由引擎管理模块从对象池中复用，避免每步产生大量短生命周期对象。
+ * 坐标、速度与加速度列为 float（引擎输出不超过单精度的有效位数，二进制协议本身即为 float），大规模帧的内存减半
+ *
+ * @author traffic-sim
+ */
+public class StepFrame {
+
+    /** 字段存在标志位（对应引擎原始字段） */
+    public static final int HAS_LINK = 1;
+    public static final int HAS_LANE = 1 << 1;
+    public static final int HAS_CELL = 1 << 2;
+    public static final int HAS_X = 1 << 3;
+    public static final int HAS_Y = 1 << 4;
+    public static final int HAS_CUR_SPD = 1 << 5;
+    public static final int HAS_LAST_SPD = 1 << 6;
+    public static final int HAS_SPEED = 1 << 7;
+    public static final int HAS_IN_NETWORK = 1 << 8;
+    public static final int HAS_IN_CROSS = 1 << 9;
+    /** 加速度有效 */
+    public static final int HAS_ACCELERATION = 1 << 10;
+    public static final int IN_NETWORK = 1 << 11;
+    public static final int IN_CROSS = 1 << 12;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** 会话ID */
+    @Getter
+    @Setter
+    private String sessionId;
+
+    /** 仿真步数 */
+    @Getter
+    @Setter
+    private Long step;
+
+    /** 时间戳 */
+    @Getter
+    @Setter
+    private Long timestamp;
+
+    /** 车辆数量 */
+    @Getter
+    private int size;
+
+    @Getter
+    private int[] ids;
+    @Getter
+    private float[] x;
+    @Getter
+    private float[] y;
+    /** 当前速度（cur_spd 或 speed），m/s */
+    @Getter
+    private float[] speed;
+    @Getter
+    private float[] lastSpeed;
+    /** 加速度，m/s² */
+    @Getter
+    private float[] acceleration;
+    @Getter
+    private int[] linkIds;
+    @Getter
+    private int[] laneIds;
+    @Getter
+    private int[] cellIds;
+    /** 标志位（HAS_* / IN_*） */
+    @Getter
+    private int[] flags;
+    /** produce_veh 中的路径（多数为 null） */
+    @Getter
+    private String[] routers;
+    /** 未识别的原始字段（多数为 null） */
+    private Object[] extras;
+
+    /** 信号灯数据（controller_run 的 result） */
+    @Getter
+    private final List<Map<String, Object>> signals = new ArrayList<>();
+
+    /** 车辆ID -> 行号 */
+    private final IntIntHashMap index = new IntIntHashMap(INITIAL_CAPACITY, -1);
+
+    public StepFrame() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public StepFrame(int capacity) {
+        allocate(Math.max(capacity, 16));
+    }
+
+    /**
+     * 获取车辆所在行，不存在时新建一行
+     */
+    public int upsert(int vehicleId) {
+        int row = index.get(vehicleId);
+        if (row >= 0) {
+            return row;
+        }
+        if (size == ids.length) {
+            grow(size << 1);
+        }
+        row = size++;
+        ids[row] = vehicleId;
+        clearRow(row);
+        index.put(vehicleId, row);
+        return row;
+    }
+
+    /**
+     * 查找车辆所在行
+     *
+     * @return 行号，不存在返回 -1
+     */
+    public int rowOf(int vehicleId) {
+        return index.get(vehicleId);
+    }
+
+    /**
+     * 清空一行的字段（保留车辆ID）
+     */
+    public void clearRow(int row) {
+        x[row] = 0f;
+        y[row] = 0f;
+        speed[row] = 0f;
+        lastSpeed[row] = 0f;
+        acceleration[row] = 0f;
+        linkIds[row] = 0;
+        laneIds[row] = 0;
+        cellIds[row] = 0;
+        flags[row] = 0;
+        routers[row] = null;
+        extras[row] = null;
+    }
+
+    public boolean has(int row, int flag) {
+        return (flags[row] & flag) != 0;
+    }
+
+    public void mark(int row, int flag) {
+        flags[row] |= flag;
+    }
+
+    public void unmark(int row, int flag) {
+        flags[row] &= ~flag;
+    }
+
+    /**
+     * 是否有速度（cur_spd 或 speed）
+     */
+    public boolean hasSpeed(int row) {
+        return (flags[row] & (HAS_CUR_SPD | HAS_SPEED)) != 0;
+    }
+
+    public void setX(int row, double value) {
+        x[row] = (float) value;
+        flags[row] |= HAS_X;
+    }
+
+    public void setY(int row, double value) {
+        y[row] = (float) value;
+        flags[row] |= HAS_Y;
+    }
+
+    public void setLinkId(int row, int value) {
+        linkIds[row] = value;
+        flags[row] |= HAS_LINK;
+    }
+
+    public void setLaneId(int row, int value) {
+        laneIds[row] = value;
+        flags[row] |= HAS_LANE;
+    }
+
+    public void setCellId(int row, int value) {
+        cellIds[row] = value;
+        flags[row] |= HAS_CELL;
+    }
+
+    /**
+     * 设置当前速度
+     *
+     * @param sourceFlag HAS_CUR_SPD 或 HAS_SPEED，用于还原原始字段名
+     */
+    public void setSpeed(int row, double value, int sourceFlag) {
+        speed[row] = (float) value;
+        // 只保留本次的来源标记，避免同一行同时带有 cur_spd 与 speed
+        flags[row] = (flags[row] & ~(HAS_CUR_SPD | HAS_SPEED)) | sourceFlag;
+    }
+
+    public void setLastSpeed(int row, double value) {
+        lastSpeed[row] = (float) value;
+        flags[row] |= HAS_LAST_SPD;
+    }
+
+    public void setAcceleration(int row, double value) {
+        acceleration[row] = (float) value;
+        flags[row] |= HAS_ACCELERATION;
+    }
+
+    public void setInNetwork(int row, boolean value) {
+        flags[row] = (value ? flags[row] | IN_NETWORK : flags[row] & ~IN_NETWORK) | HAS_IN_NETWORK;
+    }
+
+    public void setInCross(int row, boolean value) {
+        flags[row] = (value ? flags[row] | IN_CROSS : flags[row] & ~IN_CROSS) | HAS_IN_CROSS;
+    }
+
+    public void setRouter(int row, String router) {
+        routers[row] = router;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getExtras(int row) {
+        return (Map<String, Object>) extras[row];
+    }
+
+    /**
+     * 合并未识别的原始字段
+     */
+    public void putExtras(int row, Map<String, Object> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        Map<String, Object> existing = getExtras(row);
+        if (existing == null) {
+            extras[row] = new LinkedHashMap<>(values);
+        } else {
+            existing.putAll(values);
+        }
+    }
+
+    /**
+     * 重置帧以便复用（保留已分配的数组容量）
+     */
+    public void reset() {
+        Arrays.fill(routers, 0, size, null);
+        Arrays.fill(extras, 0, size, null);
+        size = 0;
+        index.clear();
+        signals.clear();
+        sessionId = null;
+        step = null;
+        timestamp = null;
+    }
+
+    /**
+     * 当前数组容量
+     */
+    public int capacity() {
+        return ids.length;
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        speed = new float[capacity];
+        lastSpeed = new float[capacity];
+        acceleration = new float[capacity];
+        linkIds = new int[capacity];
+        laneIds = new int[capacity];
+        cellIds = new int[capacity];
+        flags = new int[capacity];
+        routers = new String[capacity];
+        extras = new Object[capacity];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        lastSpeed = Arrays.copyOf(lastSpeed, capacity);
+        acceleration = Arrays.copyOf(acceleration, capacity);
+        linkIds = Arrays.copyOf(linkIds, capacity);
+        laneIds = Arrays.copyOf(laneIds, capacity);
+        cellIds = Arrays.copyOf(cellIds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        routers = Arrays.copyOf(routers, capacity);
+        extras = Arrays.copyOf(extras, capacity);
+    }
+}
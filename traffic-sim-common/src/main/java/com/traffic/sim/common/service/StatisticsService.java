@@ -1,7 +1,9 @@
 package com.traffic.sim.common.service;
 
 import com.traffic.sim.common.model.StatisticsData;
+import com.traffic.sim.common.model.StepFrame;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -14,13 +16,93 @@ import java.util.Map;
 public interface StatisticsService {
     
     /**
-     * 处理单个仿真步的统计数据
+     * 处理指定会话的单个仿真步（引擎管理模块已解码的列式数据帧，不经过中间 Map）
+     * 数据帧只在调用期间有效，实现不得在返回后继续引用
+     * 
+     * @param sessionId 仿真会话ID（引擎 exe_id）
+     * @param frame 当前仿真步数据帧
+     * @return 处理后的统计数据
+     */
+    StatisticsData processSimulationStep(String sessionId, StepFrame frame);
+    
+    /**
+     * 处理单个仿真步的统计数据（旧调用方使用的 Map 形式）
      * 
      * @param simData 仿真原始数据
      * @return 处理后的统计数据
      */
     StatisticsData processSimulationStep(Map<String, Object> simData);
     
+    /**
+     * 处理指定会话的单个仿真步（旧调用方使用的 Map 形式，累计统计按会话隔离）
+     * 
+     * @param sessionId 仿真会话ID（引擎 exe_id）
+     * @param simData 仿真原始数据
+     * @return 处理后的统计数据
+     */
+    default StatisticsData processSimulationStep(String sessionId, Map<String, Object> simData) {
+        return processSimulationStep(simData);
+    }
+    
+    /**
+     * 选择会话需要的统计指标分组（如 speed、queue、delay），未选择的分组不再计算；
+     * 每次选择替换之前的选择（引擎管理模块传入所有观看者所选分组的并集），已结束的会话忽略
+     * 
+     * @param sessionId 仿真会话ID
+     * @param metricGroups 指标分组，为空时计算全部分组
+     */
+    default void selectMetrics(String sessionId, Collection<String> metricGroups) {
+    }
+    
+    /**
+     * 结束会话（仿真结束时调用）：释放逐步计算状态，保留运行摘要与 OD 矩阵供结束后查询，超时后清理
+     * 
+     * @param sessionId 仿真会话ID
+     */
+    default void finishSession(String sessionId) {
+        releaseSession(sessionId);
+    }
+    
+    /**
+     * 释放会话进行中的统计状态（引擎连接关闭时调用）
+     * 
+     * @param sessionId 仿真会话ID
+     */
+    default void releaseSession(String sessionId) {
+    }
+    
+    /**
+     * 会话当前的运行摘要（在线聚合，不依赖步历史）；仿真结束后在保留期内仍可查询
+     * 
+     * @param sessionId 仿真会话ID
+     * @return 运行摘要，会话不存在或已过保留期时返回 null
+     */
+    default Map<String, Object> getRunSummary(String sessionId) {
+        return null;
+    }
+    
+    /**
+     * 会话当前的 OD 行程时间矩阵（在线更新，不依赖步历史）；仿真结束时仍在路网中的车辆的行程计入矩阵，
+     * 结束后在保留期内仍可查询
+     * 
+     * @param sessionId 仿真会话ID
+     * @param minCount 只返回行程数不少于该值的 OD 对
+     * @return OD 矩阵，会话不存在、已过保留期或未统计 OD 时返回 null
+     */
+    default Map<String, Object> getOdMatrix(String sessionId, long minCount) {
+        return null;
+    }
+    
+    /**
+     * 合并多个会话（进行中或保留期内已结束）的车辆级累计分位数草图，用于批量对比
+     * 
+     * @param sessionIds 仿真会话ID
+     * @return 合并后的分位数摘要，所有会话都不存在时返回 null
+     */
+    default Map<String, Object> mergePercentiles(Collection<String> sessionIds) {
+        return null;
+    }
+    
     /**
      * 聚合多个仿真步的统计数据
      * 
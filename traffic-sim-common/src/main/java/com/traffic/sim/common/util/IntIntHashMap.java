@@ -0,0 +1,215 @@
+package com.traffic.sim.common.util;
+
+import java.util.Arrays;
+
+/**
+ * int -> int 开放寻址哈希表
+ * 线性探测，删除时回移后续元素，不产生装箱对象；非线程安全
+ *
+ * @author traffic-sim
+ */
+public class IntIntHashMap {
+
+    private static final int FREE_KEY = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /** FREE_KEY 本身作为键时单独存放 */
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    /**
+     * @param expectedSize 预期元素数量
+     * @param missingValue 键不存在时返回的值
+     */
+    public IntIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR));
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, FREE_KEY);
+    }
+
+    /**
+     * 获取值，不存在时返回 missingValue
+     */
+    public int get(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : missingValue;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            int current = keys[index];
+            if (current == key) {
+                return values[index];
+            }
+            if (current == FREE_KEY) {
+                return missingValue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 检查键是否存在
+     */
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            int current = keys[index];
+            if (current == key) {
+                return true;
+            }
+            if (current == FREE_KEY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 写入值
+     *
+     * @return 旧值，不存在时返回 missingValue
+     */
+    public int put(int key, int value) {
+        if (key == FREE_KEY) {
+            int previous = hasFreeKey ? freeKeyValue : missingValue;
+            if (!hasFreeKey) {
+                size++;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return previous;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            int current = keys[index];
+            if (current == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            if (current == FREE_KEY) {
+                keys[index] = key;
+                values[index] = value;
+                if (++size > keys.length * LOAD_FACTOR) {
+                    rehash(keys.length << 1);
+                }
+                return missingValue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 删除键
+     *
+     * @return 旧值，不存在时返回 missingValue
+     */
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return missingValue;
+            }
+            hasFreeKey = false;
+            size--;
+            return freeKeyValue;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            int current = keys[index];
+            if (current == key) {
+                int previous = values[index];
+                shiftKeys(index);
+                size--;
+                return previous;
+            }
+            if (current == FREE_KEY) {
+                return missingValue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 清空（保留已分配的容量）
+     */
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * 删除后回移同一探测链上的后续元素，保证查找不中断
+     */
+    private void shiftKeys(int index) {
+        int last;
+        while (true) {
+            last = index;
+            index = (index + 1) & mask;
+            while (true) {
+                int current = keys[index];
+                if (current == FREE_KEY) {
+                    keys[last] = FREE_KEY;
+                    return;
+                }
+                int slot = hash(current) & mask;
+                // 判断 slot 是否在 (last, index] 之外（循环区间）
+                if (last <= index ? (last >= slot || slot > index) : (last >= slot && slot > index)) {
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[last] = keys[index];
+            values[last] = values[index];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[newCapacity];
+        values = new int[newCapacity];
+        mask = newCapacity - 1;
+        Arrays.fill(keys, FREE_KEY);
+        size = hasFreeKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.max(n, 8);
+    }
+}
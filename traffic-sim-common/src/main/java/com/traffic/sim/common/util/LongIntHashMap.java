@@ -0,0 +1,195 @@
+package com.traffic.sim.common.util;
+
+import java.util.Arrays;
+
+/**
+ * long -> int 开放寻址哈希表
+ * 线性探测，不产生装箱对象，适合按组合键（如 道路ID+车道ID）计数；非线程安全
+ *
+ * @author traffic-sim
+ */
+public class LongIntHashMap {
+
+    private static final long FREE_KEY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /** FREE_KEY 本身作为键时单独存放 */
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    /**
+     * 遍历回调
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+    /**
+     * @param expectedSize 预期元素数量
+     * @param missingValue 键不存在时返回的值
+     */
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR));
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, FREE_KEY);
+    }
+
+    /**
+     * 获取值，不存在时返回 missingValue
+     */
+    public int get(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : missingValue;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            long current = keys[index];
+            if (current == key) {
+                return values[index];
+            }
+            if (current == FREE_KEY) {
+                return missingValue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 写入值
+     *
+     * @return 旧值，不存在时返回 missingValue
+     */
+    public int put(long key, int value) {
+        if (key == FREE_KEY) {
+            int previous = hasFreeKey ? freeKeyValue : missingValue;
+            if (!hasFreeKey) {
+                size++;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return previous;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            long current = keys[index];
+            if (current == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            if (current == FREE_KEY) {
+                keys[index] = key;
+                values[index] = value;
+                if (++size > keys.length * LOAD_FACTOR) {
+                    rehash(keys.length << 1);
+                }
+                return missingValue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 累加计数，键不存在时从 0 开始
+     *
+     * @return 累加后的值
+     */
+    public int addTo(long key, int delta) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                freeKeyValue = 0;
+                size++;
+            }
+            freeKeyValue += delta;
+            return freeKeyValue;
+        }
+        int index = hash(key) & mask;
+        while (true) {
+            long current = keys[index];
+            if (current == key) {
+                values[index] += delta;
+                return values[index];
+            }
+            if (current == FREE_KEY) {
+                keys[index] = key;
+                values[index] = delta;
+                if (++size > keys.length * LOAD_FACTOR) {
+                    rehash(keys.length << 1);
+                }
+                return delta;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 遍历所有键值对（顺序不确定）
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasFreeKey) {
+            consumer.accept(FREE_KEY, freeKeyValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 清空（保留已分配的容量）
+     */
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[newCapacity];
+        values = new int[newCapacity];
+        mask = newCapacity - 1;
+        Arrays.fill(keys, FREE_KEY);
+        size = hasFreeKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.max(n, 8);
+    }
+}
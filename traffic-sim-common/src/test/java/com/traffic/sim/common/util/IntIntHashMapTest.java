@@ -0,0 +1,100 @@
+package com.traffic.sim.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * IntIntHashMap 测试
+ *
+ * @author traffic-sim
+ */
+class IntIntHashMapTest {
+
+    @Test
+    void missingKeyReturnsMissingValue() {
+        IntIntHashMap map = new IntIntHashMap(4, -1);
+        assertEquals(-1, map.get(42));
+        assertEquals(-1, map.remove(42));
+        assertFalse(map.containsKey(42));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void putReturnsPreviousValue() {
+        IntIntHashMap map = new IntIntHashMap(4, -1);
+        assertEquals(-1, map.put(7, 1));
+        assertEquals(1, map.put(7, 2));
+        assertEquals(2, map.get(7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void freeKeyIsStoredSeparately() {
+        IntIntHashMap map = new IntIntHashMap(4, -1);
+        assertEquals(-1, map.put(Integer.MIN_VALUE, 5));
+        assertEquals(5, map.get(Integer.MIN_VALUE));
+        assertTrue(map.containsKey(Integer.MIN_VALUE));
+        assertEquals(1, map.size());
+        assertEquals(5, map.remove(Integer.MIN_VALUE));
+        assertFalse(map.containsKey(Integer.MIN_VALUE));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        IntIntHashMap map = new IntIntHashMap(4, -1);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i * 31, i);
+        }
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, map.get(i * 31));
+        }
+        assertEquals(-1, map.get(-31));
+    }
+
+    @Test
+    void removeKeepsProbeChainsIntact() {
+        // 键空间远大于表容量且反复增删，探测链会跨越表尾回绕，删除时的回移必须保持其余键可查
+        Random random = new Random(20240601L);
+        IntIntHashMap map = new IntIntHashMap(8, -1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 200_000; op++) {
+            int key = random.nextInt(48) - 24;
+            if (random.nextInt(3) == 0) {
+                Integer previous = expected.remove(key);
+                assertEquals(previous == null ? -1 : previous, map.remove(key));
+            } else {
+                int value = random.nextInt(1000);
+                Integer previous = expected.put(key, value);
+                assertEquals(previous == null ? -1 : previous, map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -24; key < 24; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+    }
+
+    @Test
+    void clearKeepsMapUsable() {
+        IntIntHashMap map = new IntIntHashMap(4, -1);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        map.put(Integer.MIN_VALUE, 1);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(10));
+        assertEquals(-1, map.get(Integer.MIN_VALUE));
+        map.put(10, 3);
+        assertEquals(3, map.get(10));
+    }
+}
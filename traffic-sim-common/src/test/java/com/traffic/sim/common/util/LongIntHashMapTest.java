@@ -0,0 +1,85 @@
+package com.traffic.sim.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LongIntHashMap 测试
+ *
+ * @author traffic-sim
+ */
+class LongIntHashMapTest {
+
+    @Test
+    void missingKeyReturnsMissingValue() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        assertEquals(-1, map.get(42L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        for (int i = 0; i < 10_000; i++) {
+            // 与网格单元键相同的布局：高 32 位列号、低 32 位行号
+            long key = ((long) (i % 100 - 50) << 32) | ((i / 100 - 50) & 0xffffffffL);
+            assertEquals(-1, map.put(key, i));
+        }
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            long key = ((long) (i % 100 - 50) << 32) | ((i / 100 - 50) & 0xffffffffL);
+            assertEquals(i, map.get(key));
+        }
+    }
+
+    @Test
+    void addToMatchesReferenceMap() {
+        Random random = new Random(7L);
+        LongIntHashMap map = new LongIntHashMap(8, -1);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 100_000; op++) {
+            long key = (random.nextInt(64) - 32) * 0x1_0000_0001L;
+            int delta = random.nextInt(5) - 2;
+            int sum = expected.merge(key, delta, Integer::sum);
+            assertEquals(sum, map.addTo(key, delta));
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Long, Integer> visited = new HashMap<>();
+        map.forEach((key, value) -> visited.put(key, value));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void freeKeyIsStoredSeparately() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        assertEquals(3, map.addTo(Long.MIN_VALUE, 3));
+        assertEquals(5, map.addTo(Long.MIN_VALUE, 2));
+        assertEquals(5, map.put(Long.MIN_VALUE, 9));
+        assertEquals(9, map.get(Long.MIN_VALUE));
+        assertEquals(1, map.size());
+        Map<Long, Integer> visited = new HashMap<>();
+        map.forEach((key, value) -> visited.put(key, value));
+        assertEquals(Map.of(Long.MIN_VALUE, 9), visited);
+    }
+
+    @Test
+    void clearKeepsMapUsable() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        for (long i = 0; i < 100; i++) {
+            map.put(i << 32, (int) i);
+        }
+        map.addTo(Long.MIN_VALUE, 1);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(10L << 32));
+        assertEquals(-1, map.get(Long.MIN_VALUE));
+        map.put(10L << 32, 3);
+        assertEquals(3, map.get(10L << 32));
+    }
+}